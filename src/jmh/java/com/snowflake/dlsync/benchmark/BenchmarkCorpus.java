@@ -0,0 +1,155 @@
+package com.snowflake.dlsync.benchmark;
+
+import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * In memory script corpus for the benchmarks, generated with a fixed seed so every run measures the same scripts.
+ * Roughly a third of the objects are tables with several migration versions, the rest are views and functions that
+ * reference up to four earlier objects, so the scripts form a dependency graph without cycles. The scripts contain
+ * comments, string literals with dotted names and parameter placeholders, like real projects do.
+ */
+public class BenchmarkCorpus {
+    public static final String DATABASE = "BENCH_DB";
+    private static final int SCRIPTS_PER_SCHEMA = 500;
+    private static final int MAX_DEPENDENCIES = 4;
+    private static final int DEPENDENCY_WINDOW = 200;
+    private static final int MAX_VERSIONS = 3;
+
+    private final List<Script> scripts = new ArrayList<>();
+    private final List<String> contents = new ArrayList<>();
+    private final List<String> migrationFiles = new ArrayList<>();
+    private final List<String> referencedNames = new ArrayList<>();
+    private final Properties parameters = new Properties();
+
+    /**
+     * @param scriptCount number of scripts to generate, counting every migration version as a script.
+     */
+    public BenchmarkCorpus(int scriptCount) {
+        Random random = new Random(42);
+        parameters.put("env", "DEV");
+        parameters.put("owner", "DATA_ENGINEERING");
+        parameters.put("warehouse", "BENCH_WH");
+        List<String> objectNames = new ArrayList<>();
+        int objectIndex = 0;
+        while(scripts.size() < scriptCount) {
+            String schema = "SCHEMA_" + (scripts.size() / SCRIPTS_PER_SCHEMA);
+            int kind = random.nextInt(10);
+            if(kind < 3) {
+                String objectName = "TABLE_" + objectIndex;
+                addTable(schema, objectName, Math.min(1 + random.nextInt(MAX_VERSIONS), scriptCount - scripts.size()));
+                objectNames.add(schema + "." + objectName);
+            }
+            else {
+                ScriptObjectType type = kind < 8 ? ScriptObjectType.VIEWS : ScriptObjectType.FUNCTIONS;
+                String objectName = (type == ScriptObjectType.VIEWS ? "VIEW_" : "FUNCTION_") + objectIndex;
+                List<String> dependencies = pickDependencies(random, objectNames);
+                addStateScript(schema, type, objectName, dependencies);
+                objectNames.add(schema + "." + objectName);
+            }
+            objectIndex++;
+        }
+    }
+
+    private List<String> pickDependencies(Random random, List<String> objectNames) {
+        if(objectNames.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int count = 1 + random.nextInt(MAX_DEPENDENCIES);
+        int windowStart = Math.max(0, objectNames.size() - DEPENDENCY_WINDOW);
+        List<String> dependencies = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            dependencies.add(objectNames.get(windowStart + random.nextInt(objectNames.size() - windowStart)));
+        }
+        return dependencies;
+    }
+
+    private void addTable(String schema, String objectName, int versions) {
+        String fullName = DATABASE + "." + schema + "." + objectName;
+        StringBuilder file = new StringBuilder();
+        for(long version = 0; version < versions; version++) {
+            StringBuilder content = new StringBuilder();
+            content.append("---version: ").append(version).append(", author: bench\n");
+            if(version == 0) {
+                content.append("-- owned by ${owner}, see ").append(fullName).append("_ARCHIVE\n");
+                content.append("create or replace table ").append(fullName).append(" (id number, name varchar, env varchar default '${env}', loaded_at timestamp);\n");
+                content.append("---rollback: drop table if exists ").append(fullName).append(";\n");
+            }
+            else {
+                content.append("alter table ").append(fullName).append(" add column col_").append(version).append(" varchar comment 'added for release ").append(version).append(".0';\n");
+                content.append("---rollback: alter table ").append(fullName).append(" drop column col_").append(version).append(";\n");
+            }
+            content.append("---verify: select * from ").append(fullName).append(" limit 1;\n");
+            String migration = content.toString();
+            scripts.add(ScriptFactory.getMigrationScript(DATABASE, schema, ScriptObjectType.TABLES, objectName, migration, version, "bench", null, null));
+            contents.add(migration);
+            referencedNames.add(objectName);
+            file.append(migration).append('\n');
+        }
+        migrationFiles.add(file.toString());
+    }
+
+    private void addStateScript(String schema, ScriptObjectType type, String objectName, List<String> dependencies) {
+        String fullName = DATABASE + "." + schema + "." + objectName;
+        StringBuilder content = new StringBuilder();
+        content.append("/* ").append(type.getSingular().toLowerCase()).append(" maintained by ${owner}.\n   Reads from ")
+                .append(String.join(", ", dependencies)).append(" */\n");
+        if(type == ScriptObjectType.VIEWS) {
+            content.append("create or replace view ").append(fullName).append(" as\n");
+            content.append("select t0.id, t0.name, '${env}' as env, 'BENCH_DB.ARCHIVE.").append(objectName).append("' as source -- lineage hint\n");
+            content.append("from ").append(DATABASE).append('.').append(dependencies.isEmpty() ? schema + ".SEED" : dependencies.get(0)).append(" t0\n");
+            for(int i = 1; i < dependencies.size(); i++) {
+                content.append("left join ").append(dependencies.get(i)).append(" t").append(i).append(" on t").append(i).append(".id = t0.id\n");
+            }
+            content.append("where t0.name <> 'x.y.z';\n");
+        }
+        else {
+            content.append("create or replace function ").append(fullName).append("(id number)\nreturns number\nas\n$$\n");
+            content.append("select count(*) from ").append(DATABASE).append('.').append(dependencies.isEmpty() ? schema + ".SEED" : dependencies.get(0)).append(" t0\n");
+            for(int i = 1; i < dependencies.size(); i++) {
+                content.append("join ").append(dependencies.get(i)).append(" t").append(i).append(" on t").append(i).append(".id = t0.id\n");
+            }
+            content.append("where t0.id = id -- ${warehouse} only\n$$;\n");
+        }
+        String stateContent = content.toString();
+        scripts.add(ScriptFactory.getStateScript(DATABASE, schema, type, objectName, stateContent));
+        contents.add(stateContent);
+        referencedNames.add(dependencies.isEmpty() ? objectName : dependencies.get(0).substring(dependencies.get(0).indexOf('.') + 1));
+    }
+
+    public List<Script> getScripts() {
+        return scripts;
+    }
+
+    /**
+     * @return the original content of each script of {@link #getScripts()}, in the same order.
+     */
+    public List<String> getContents() {
+        return contents;
+    }
+
+    /**
+     * @return the content of each table script file, with all its migration versions.
+     */
+    public List<String> getMigrationFiles() {
+        return migrationFiles;
+    }
+
+    /**
+     * @return for each script of {@link #getScripts()}, the name of an object referenced in its content.
+     */
+    public List<String> getReferencedNames() {
+        return referencedNames;
+    }
+
+    public Properties getParameters() {
+        return parameters;
+    }
+}
@@ -0,0 +1,67 @@
+package com.snowflake.dlsync.benchmark;
+
+import com.snowflake.dlsync.dependency.DependencyExtractor;
+import com.snowflake.dlsync.dependency.DependencyGraph;
+import com.snowflake.dlsync.models.Config;
+import com.snowflake.dlsync.models.Script;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures dependency extraction and sorting over the whole corpus. The referenced identifiers cached on the scripts
+ * are cleared before every extraction, so each invocation tokenizes all scripts again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DependencyBenchmark {
+    @Param({"100", "1000", "10000", "50000"})
+    private int scriptCount;
+
+    private List<Script> scripts;
+    private DependencyExtractor dependencyExtractor;
+    private DependencyGraph dependencyGraph;
+
+    @Setup
+    public void setUp() {
+        scripts = new BenchmarkCorpus(scriptCount).getScripts();
+        dependencyExtractor = new DependencyExtractor();
+        dependencyExtractor.addScripts(scripts);
+        dependencyGraph = new DependencyGraph(new DependencyExtractor(), new Config());
+        dependencyGraph.addNodes(scripts);
+    }
+
+    @Benchmark
+    public void extractScriptDependencies(Blackhole blackhole) {
+        for(Script script: scripts) {
+            script.setReferencedIdentifiers(null);
+            blackhole.consume(dependencyExtractor.extractScriptDependencies(script));
+        }
+    }
+
+    @Benchmark
+    public List<Script> topologicalSort() {
+        return dependencyGraph.topologicalSort();
+    }
+
+    @Benchmark
+    public List<List<Script>> getLevels() {
+        return dependencyGraph.getLevels();
+    }
+
+    /**
+     * Builds a new graph from scripts whose references are already tokenized, then sorts it.
+     */
+    @Benchmark
+    public List<Script> addNodesAndSort() {
+        DependencyGraph graph = new DependencyGraph(new DependencyExtractor(), new Config());
+        graph.addNodes(scripts);
+        return graph.topologicalSort();
+    }
+}
@@ -0,0 +1,61 @@
+package com.snowflake.dlsync.benchmark;
+
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.parser.ParameterInjector;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures injecting the parameters into every script of the corpus, and replacing the values with placeholders again
+ * as create-script and verify do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParameterInjectorBenchmark {
+    @Param({"100", "1000", "10000", "50000"})
+    private int scriptCount;
+
+    private List<Script> scripts;
+    private List<String> contents;
+    private List<String> injectedContents;
+    private ParameterInjector parameterInjector;
+
+    @Setup
+    public void setUp() {
+        BenchmarkCorpus corpus = new BenchmarkCorpus(scriptCount);
+        scripts = corpus.getScripts();
+        contents = corpus.getContents();
+        parameterInjector = new ParameterInjector(corpus.getParameters());
+        injectedContents = new ArrayList<>(contents.size());
+        for(int i = 0; i < scripts.size(); i++) {
+            scripts.get(i).setContent(contents.get(i));
+            parameterInjector.injectParameters(scripts.get(i));
+            injectedContents.add(scripts.get(i).getContent());
+        }
+    }
+
+    @Benchmark
+    public void injectParameters(Blackhole blackhole) {
+        for(int i = 0; i < scripts.size(); i++) {
+            Script script = scripts.get(i);
+            script.setContent(contents.get(i));
+            parameterInjector.injectParameters(script);
+            blackhole.consume(script.getContent());
+        }
+    }
+
+    @Benchmark
+    public void parametrize(Blackhole blackhole) {
+        for(String content: injectedContents) {
+            blackhole.consume(parameterInjector.parametrize(content));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.snowflake.dlsync.benchmark;
+
+import com.snowflake.dlsync.ScriptRepositoryGenerator;
+import com.snowflake.dlsync.dependency.DependencyExtractor;
+import com.snowflake.dlsync.dependency.DependencyGraph;
+import com.snowflake.dlsync.doa.ScriptSource;
+import com.snowflake.dlsync.models.Config;
+import com.snowflake.dlsync.models.Script;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures reading a generated script repository from disk, and reading it and sorting its dependency graph as a
+ * deploy does. The repository is generated once for each object count into a temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScriptSourceBenchmark {
+    @Param({"1000", "10000", "100000"})
+    private int objectCount;
+
+    private Path scriptRoot;
+
+    @Setup
+    public void setUp() throws IOException {
+        scriptRoot = Files.createTempDirectory("dlsync-benchmark");
+        ScriptRepositoryGenerator generator = new ScriptRepositoryGenerator();
+        generator.setObjectCount(objectCount);
+        generator.setDepth(10);
+        generator.setFanInSkew(2);
+        generator.generate(scriptRoot);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(scriptRoot)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public List<Script> readScripts() throws IOException {
+        return new ScriptSource(scriptRoot.toString()).getAllScripts();
+    }
+
+    @Benchmark
+    public List<Script> readAndSort() throws IOException {
+        DependencyGraph dependencyGraph = new DependencyGraph(new DependencyExtractor(), new Config());
+        dependencyGraph.addNodes(new ScriptSource(scriptRoot.toString()).getAllScripts());
+        return dependencyGraph.topologicalSort();
+    }
+}
@@ -0,0 +1,56 @@
+package com.snowflake.dlsync.benchmark;
+
+import com.snowflake.dlsync.parser.SqlTokenizer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the tokenizer over the whole corpus: finding the qualified references of a name, removing comments and
+ * splitting migration files into versions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlTokenizerBenchmark {
+    @Param({"100", "1000", "10000", "50000"})
+    private int scriptCount;
+
+    private List<String> contents;
+    private List<String> referencedNames;
+    private List<String> migrationFiles;
+
+    @Setup
+    public void setUp() {
+        BenchmarkCorpus corpus = new BenchmarkCorpus(scriptCount);
+        contents = corpus.getContents();
+        referencedNames = corpus.getReferencedNames();
+        migrationFiles = corpus.getMigrationFiles();
+    }
+
+    @Benchmark
+    public void getFullIdentifiers(Blackhole blackhole) {
+        for(int i = 0; i < contents.size(); i++) {
+            blackhole.consume(SqlTokenizer.getFullIdentifiers(referencedNames.get(i), contents.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void removeSqlComments(Blackhole blackhole) {
+        for(String content: contents) {
+            blackhole.consume(SqlTokenizer.removeSqlComments(content));
+        }
+    }
+
+    @Benchmark
+    public void parseMigrationScripts(Blackhole blackhole) {
+        for(String migrationFile: migrationFiles) {
+            blackhole.consume(SqlTokenizer.parseMigrationScripts(migrationFile));
+        }
+    }
+}
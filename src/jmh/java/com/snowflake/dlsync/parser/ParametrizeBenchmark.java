@@ -0,0 +1,45 @@
+package com.snowflake.dlsync.parser;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single scan parametrization of {@link ParameterTemplate} with the previous implementation in
+ * {@link LegacyParametrize}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParametrizeBenchmark {
+    @Param({"20", "200"})
+    private int parameterCount;
+
+    @Param({"5000"})
+    private int objectCount;
+
+    private Properties parameters;
+    private String ddl;
+    private ParameterTemplate template;
+
+    @Setup
+    public void setUp() {
+        parameters = LegacyParametrize.generateParameters(parameterCount);
+        ddl = LegacyParametrize.generateDdl(parameterCount, objectCount);
+        template = new ParameterTemplate(parameters);
+    }
+
+    @Benchmark
+    public String legacy() {
+        return LegacyParametrize.parametrize(parameters, ddl);
+    }
+
+    @Benchmark
+    public String singleScan() {
+        return template.parametrize(ddl);
+    }
+}
@@ -1,18 +1,32 @@
 package com.snowflake.dlsync;
 
 import com.snowflake.dlsync.dependency.DependencyGraph;
+import com.snowflake.dlsync.doa.AsyncQueryTracker;
+import com.snowflake.dlsync.doa.DeploymentPlan;
 import com.snowflake.dlsync.doa.ScriptRepo;
+import com.snowflake.dlsync.doa.ScriptSnapshot;
 import com.snowflake.dlsync.doa.ScriptSource;
+import com.snowflake.dlsync.metrics.Metrics;
 import com.snowflake.dlsync.models.*;
 import com.snowflake.dlsync.parser.ParameterInjector;
+import com.snowflake.dlsync.parser.SqlTokenizer;
 import com.snowflake.dlsync.parser.TestQueryGenerator;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -22,6 +36,11 @@ public class ChangeManager {
     private ScriptRepo scriptRepo;
     private DependencyGraph dependencyGraph;
     private ParameterInjector parameterInjector;
+    private Metrics metrics = new Metrics();
+    private String metricsReport;
+
+    private static final long RESUME_MIN_IDLE_MINUTES = 15;
+    private static final long RESUME_MAX_AGE_MINUTES = 24 * 60;
 
     public ChangeManager(Config config, ScriptSource scriptSource, ScriptRepo scriptRepo, DependencyGraph dependencyGraph, ParameterInjector parameterInjector) {
         this.config= config;
@@ -31,6 +50,17 @@ public class ChangeManager {
         this.parameterInjector = parameterInjector;
     }
 
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param metricsReport file the json report of the run metrics is written to when the run ends, or null.
+     */
+    public void setMetricsReport(String metricsReport) {
+        this.metricsReport = metricsReport;
+    }
+
     private void validateScript(Script script) {
         if(script instanceof MigrationScript && scriptRepo.isScriptVersionDeployed(script)) {
             log.error("Migration type script changed. Script for the object {} has changed from previous deployments.", script.getId());
@@ -38,33 +68,224 @@ public class ChangeManager {
         }
     }
     public void deploy(boolean onlyHashes) throws SQLException, IOException, NoSuchAlgorithmException {
-        log.info("Started Deploying {}", onlyHashes?"Only Hashes":"scripts");
-        startSync(ChangeType.DEPLOY);
+        deploy(onlyHashes, false, false, false, null);
+    }
+
+    public void deploy(boolean onlyHashes, boolean impact, boolean dryRun) throws SQLException, IOException, NoSuchAlgorithmException {
+        deploy(onlyHashes, impact, dryRun, false, null);
+    }
+
+    /**
+     * @param onlyHashes only record the hashes of the changed scripts without running them.
+     * @param impact also deploy the state scripts that directly or transitively depend on the changed scripts.
+     * @param dryRun only print the scripts that would be deployed, in deployment order.
+     * @param resume continue an unfinished deploy, skipping the scripts it already deployed.
+     * @param resumeSyncId change sync id of the deploy to continue, or null for the last unfinished deploy.
+     */
+    public void deploy(boolean onlyHashes, boolean impact, boolean dryRun, boolean resume, Long resumeSyncId) throws SQLException, IOException, NoSuchAlgorithmException {
+        log.info("Started Deploying {}{}", onlyHashes?"Only Hashes":"scripts", dryRun ? " as dry run" : "");
+        Map<String, String> completedScripts = resume ? resumeSync(ChangeType.DEPLOY, dryRun, resumeSyncId) : null;
+        if(completedScripts == null) {
+            completedScripts = Collections.emptyMap();
+            if(!dryRun) {
+                startSync(ChangeType.DEPLOY);
+            }
+        }
         scriptRepo.loadScriptHash();
-        List<Script> changedScripts = scriptSource.getAllScripts()
+        List<Script> sourceScripts = getSourceScripts();
+        Set<Script> completed = getCompletedScripts(sourceScripts, completedScripts);
+        List<Script> changedScripts = sourceScripts.stream()
+                .filter(script -> scriptRepo.isScriptChanged(script) || completed.contains(script))
+                .collect(Collectors.toList());
+        if(onlyHashes) {
+            changedScripts.removeAll(completed);
+            if(dryRun) {
+                printDeploymentPlan(changedScripts, changedScripts);
+                return;
+            }
+            deployHashes(changedScripts);
+            return;
+        }
+        addDeployNodes(sourceScripts, changedScripts, impact, completed);
+        if(dryRun) {
+            printDeploymentPlan(dependencyGraph.topologicalSort(), changedScripts);
+            return;
+        }
+        if(config.getAsyncQueries() > 0) {
+            deployInWavesAsync(ChangeType.DEPLOY, dependencyGraph.getLevels(), this::prepareScript);
+            return;
+        }
+        DeployTask task = script -> deployScript(script, onlyHashes);
+        if(getWorkerCount() > 1) {
+            deployInWaves(ChangeType.DEPLOY, dependencyGraph.getLevels(), task);
+            return;
+        }
+        deploySequentially(ChangeType.DEPLOY, dependencyGraph.topologicalSort(), task);
+    }
+
+    /**
+     * Computes the deployment the same way as {@link #deploy(boolean, boolean, boolean)} and writes it to a plan file
+     * instead of running it. The plan holds the parameter injected scripts in dependency levels and the watermark of
+     * the script history it was computed against.
+     */
+    public void plan(String planFile, boolean impact) throws SQLException, IOException {
+        log.info("Started planning deployment to {}", planFile);
+        startSync(ChangeType.PLAN);
+        String historyWatermark = scriptRepo.getScriptHistoryWatermark();
+        scriptRepo.loadScriptHash();
+        List<Script> sourceScripts = getSourceScripts();
+        List<Script> changedScripts = getChangedScripts(sourceScripts);
+        addDeployNodes(sourceScripts, changedScripts, impact, Collections.emptySet());
+        List<List<Script>> levels = dependencyGraph.getLevels();
+        Map<Script, List<Script>> dependencies = new HashMap<>();
+        Map<String, String> deployedHashes = new HashMap<>();
+        for(List<Script> level: levels) {
+            for(Script script: level) {
+                injectParameters(script);
+                validateScript(script);
+                dependencies.put(script, dependencyGraph.getDependencies(script));
+                String deployedHash = scriptRepo.getScriptHash(script.getId());
+                if(deployedHash != null) {
+                    deployedHashes.put(script.getId(), deployedHash);
+                }
+            }
+        }
+        DeploymentPlan plan = new DeploymentPlan(historyWatermark, System.currentTimeMillis(), levels, dependencies, deployedHashes);
+        plan.write(Path.of(planFile));
+        endSyncSuccess(ChangeType.PLAN, (long)plan.getScripts().size());
+    }
+
+    /**
+     * Runs a deployment plan created by {@link #plan(String, boolean)} without reading the script files. The plan is
+     * rejected if the script history changed since it was created.
+     */
+    public void apply(String planFile) throws SQLException, IOException {
+        DeploymentPlan plan = DeploymentPlan.read(Path.of(planFile));
+        log.info("Started applying deployment plan {} created at {}", planFile, Instant.ofEpochMilli(plan.getCreatedAt()));
+        startSync(ChangeType.APPLY);
+        String historyWatermark = scriptRepo.getScriptHistoryWatermark();
+        if(!historyWatermark.equals(plan.getHistoryWatermark())) {
+            log.error("Script history watermark changed from {} to {} since the plan was created.", plan.getHistoryWatermark(), historyWatermark);
+            throw new RuntimeException("Script history changed since the deployment plan was created, create a new plan.");
+        }
+        scriptRepo.putScriptHashes(plan.getDeployedHashes());
+        dependencyGraph.addNodes(plan.getScripts(), plan.getDependencies());
+        if(config.getAsyncQueries() > 0) {
+            deployInWavesAsync(ChangeType.APPLY, plan.getLevels(), script -> {});
+            return;
+        }
+        DeployTask task = script -> scriptRepo.createScriptObject(script, false);
+        if(getWorkerCount() > 1) {
+            deployInWaves(ChangeType.APPLY, plan.getLevels(), task);
+            return;
+        }
+        deploySequentially(ChangeType.APPLY, plan.getScripts(), task);
+    }
+
+    private List<Script> getSourceScripts() throws IOException {
+        return scriptSource.getAllScripts()
                 .stream()
                 .filter(script -> !config.isScriptExcluded(script))
+                .collect(Collectors.toList());
+    }
+
+    private List<Script> getChangedScripts(List<Script> sourceScripts) {
+        return sourceScripts.stream()
                 .filter(script -> scriptRepo.isScriptChanged(script))
                 .collect(Collectors.toList());
-        dependencyGraph.addNodes(changedScripts);
-        List<Script> sequencedScript = dependencyGraph.topologicalSort();
+    }
+
+    /**
+     * Adds the changed scripts to the dependency graph, and with impact also all state scripts depending on them.
+     * @param completedScripts scripts already deployed by the resumed deploy. They are part of the impact but are not
+     *                         added to the graph.
+     */
+    private void addDeployNodes(List<Script> sourceScripts, List<Script> changedScripts, boolean impact, Set<Script> completedScripts) {
+        if(impact) {
+            dependencyGraph.addNodes(sourceScripts);
+            Set<Script> impactedScripts = dependencyGraph.getImpactClosure(changedScripts);
+            log.info("{} changed scripts impact {} dependent scripts.", changedScripts.size(), impactedScripts.size() - changedScripts.size());
+            impactedScripts.removeAll(completedScripts);
+            dependencyGraph.retainNodes(impactedScripts);
+        }
+        else {
+            dependencyGraph.addNodes(changedScripts.stream()
+                    .filter(script -> !completedScripts.contains(script))
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Continues an unfinished change sync of the given type instead of starting a new one. Without an id, only the
+     * latest unfinished change sync is continued, and only if it has been idle long enough to not be running anymore
+     * and is not too old to be resumed safely.
+     * @param resumeSyncId id of the change sync to continue, or null for the latest one.
+     * @return hashes of the scripts the unfinished change sync already deployed by script id, or null if there is no
+     * unfinished change sync.
+     */
+    private Map<String, String> resumeSync(ChangeType changeType, boolean dryRun, Long resumeSyncId) throws SQLException {
+        ChangeSync unfinishedSync = scriptRepo.findUnfinishedChangeSync(changeType, resumeSyncId);
+        if(unfinishedSync == null) {
+            if(resumeSyncId != null) {
+                throw new RuntimeException("No unfinished " + changeType + " with id " + resumeSyncId + " found to resume.");
+            }
+            log.info("No unfinished {} found to resume, starting a new one.", changeType);
+            return null;
+        }
+        Long unfinishedSyncId = unfinishedSync.getId();
+        long ageMinutes = unfinishedSync.getAgeSeconds() / 60;
+        long idleMinutes = unfinishedSync.getIdleSeconds() / 60;
+        if(resumeSyncId == null && idleMinutes < RESUME_MIN_IDLE_MINUTES) {
+            log.error("Unfinished {} {} had its last script event {} minutes ago and may still be running.", changeType, unfinishedSyncId, idleMinutes);
+            throw new RuntimeException("The unfinished " + changeType + " " + unfinishedSyncId + " may still be running, resume it with --resume " + unfinishedSyncId + " once it stopped.");
+        }
+        if(resumeSyncId == null && ageMinutes > RESUME_MAX_AGE_MINUTES) {
+            log.error("Unfinished {} {} started {} minutes ago.", changeType, unfinishedSyncId, ageMinutes);
+            throw new RuntimeException("The unfinished " + changeType + " " + unfinishedSyncId + " is too old to resume, resume it with --resume " + unfinishedSyncId + " or deploy without --resume.");
+        }
+        Map<String, String> completedScripts = scriptRepo.getDeployedScripts(unfinishedSyncId);
+        log.info("Resuming {} {} started {} minutes ago and idle for {} minutes, which already deployed {} scripts.", changeType, unfinishedSyncId, ageMinutes, idleMinutes, completedScripts.size());
+        if(!dryRun) {
+            scriptRepo.resumeChangeSync(unfinishedSyncId, changeType);
+        }
+        return completedScripts;
+    }
+
+    /**
+     * @return the source scripts deployed by the resumed change sync that did not change since.
+     */
+    private Set<Script> getCompletedScripts(List<Script> sourceScripts, Map<String, String> completedScripts) {
+        if(completedScripts.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return sourceScripts.stream()
+                .filter(script -> script.getHash().equals(completedScripts.get(script.getId())))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Deploys the scripts one after the other. When a script fails and continueOnFailure is set, only the scripts
+     * depending on it are skipped.
+     */
+    private void deploySequentially(ChangeType changeType, List<Script> sequencedScript, DeployTask task) throws SQLException {
         log.info("Deploying {} change scripts to db.", sequencedScript.size());
         
         int size = sequencedScript.size();
         int index = 1;
-        int failedCount = 0; 
         List<String> failedScripts = new ArrayList<>(); 
+        Set<Script> skippedScripts = new LinkedHashSet<>();
         
         for(Script script: sequencedScript) {
+            if(skippedScripts.contains(script)) {
+                log.warn("{} of {}: Skipping object {} depending on a failed script.", index++, size, script);
+                continue;
+            }
             log.info("{} of {}: Deploying object: {}", index++, size, script);
             
             try {  
-                parameterInjector.injectParameters(script);
-                validateScript(script);
-                scriptRepo.createScriptObject(script, onlyHashes);
+                task.deploy(script);
             }
             catch (Exception e) {
-                failedCount++;
                 failedScripts.add(script.getId()); 
                 log.error("Failed to deploy script {}: {}", script.getId(), e.getMessage());
                 
@@ -72,18 +293,365 @@ public class ChangeManager {
                     // throw the error as normal
                     throw e;
                 }
-                // Continue-on-failure: log error but continue loop, useful for bigger projects
+                // Continue-on-failure: log error and skip the scripts depending on the failed one, useful for bigger projects
+                skippedScripts.addAll(dependencyGraph.getDownstreamScripts(script));
+            }
+        }
+        endDeploy(changeType, failedScripts, skippedScripts, size);
+    }
+
+    private void printDeploymentPlan(List<Script> scripts, List<Script> changedScripts) {
+        Set<Script> changed = new HashSet<>(changedScripts);
+        System.out.println("Deployment plan with " + scripts.size() + " scripts:");
+        int index = 1;
+        for(Script script: scripts) {
+            System.out.println(index++ + ". " + script.getId() + (changed.contains(script) ? " (changed)" : " (impacted)"));
+        }
+    }
+
+    private void deployScript(Script script, boolean onlyHashes) throws SQLException {
+        prepareScript(script);
+        scriptRepo.createScriptObject(script, onlyHashes);
+    }
+
+    private void prepareScript(Script script) {
+        injectParameters(script);
+        validateScript(script);
+    }
+
+    private void injectParameters(Script script) {
+        metrics.time(Metrics.PARAMETER_INJECTION, script, () -> parameterInjector.injectParameters(script));
+    }
+
+    /**
+     * Records the hashes of the changed scripts without running them. Nothing is executed, so the scripts are not
+     * sorted by their dependencies and all of them are written with one bulk statement.
+     */
+    private void deployHashes(List<Script> scripts) throws SQLException {
+        log.info("Deploying hashes of {} change scripts to db.", scripts.size());
+        List<String> failedScripts = new ArrayList<>();
+        List<Script> validScripts = new ArrayList<>(scripts.size());
+        for(Script script: scripts) {
+            try {
+                prepareScript(script);
+                validScripts.add(script);
+            }
+            catch (RuntimeException e) {
+                failedScripts.add(script.getId());
+                log.error("Failed to deploy script {}: {}", script.getId(), e.getMessage());
+                if (!config.isContinueOnFailure()) {
+                    throw e;
+                }
+            }
+        }
+        scriptRepo.updateScriptHashes(validScripts);
+        endDeploy(ChangeType.DEPLOY, failedScripts, Collections.emptySet(), scripts.size());
+    }
+
+    /**
+     * Deploys the scripts level by level. All scripts of a level are deployed at the same time on a bounded worker pool,
+     * and the next level starts only after the current one is done. When a script fails and continueOnFailure is set,
+     * only the scripts depending on it are skipped.
+     */
+    private void deployInWaves(ChangeType changeType, List<List<Script>> levels, DeployTask task) throws SQLException {
+        int size = levels.stream().mapToInt(List::size).sum();
+        log.info("Deploying {} change scripts to db in {} waves using {} workers.", size, levels.size(), getWorkerCount());
+        AtomicInteger index = new AtomicInteger(1);
+        List<String> failedScripts = new ArrayList<>();
+        Set<Script> skippedScripts = new LinkedHashSet<>();
+        ExecutorService executor = newWorkerPool("deploy");
+        try {
+            for(int wave = 0; wave < levels.size(); wave++) {
+                List<Script> waveScripts = levels.get(wave).stream()
+                        .filter(script -> !skippedScripts.contains(script))
+                        .collect(Collectors.toList());
+                log.info("Deploying wave {} of {} with {} scripts.", wave + 1, levels.size(), waveScripts.size());
+                Map<Script, Future<?>> deployments = new LinkedHashMap<>();
+                for(Script script: waveScripts) {
+                    deployments.put(script, executor.submit(() -> {
+                        try {
+                            log.info("{} of {}: Deploying object: {}", index.getAndIncrement(), size, script);
+                            task.deploy(script);
+                            return null;
+                        } finally {
+                            scriptRepo.releaseSession();
+                        }
+                    }));
+                }
+                Throwable firstError = null;
+                for(Map.Entry<Script, Future<?>> deployment: deployments.entrySet()) {
+                    Script script = deployment.getKey();
+                    try {
+                        deployment.getValue().get();
+                    } catch (ExecutionException e) {
+                        failedScripts.add(script.getId());
+                        log.error("Failed to deploy script {}: {}", script.getId(), e.getCause().getMessage());
+                        firstError = firstError == null ? e.getCause() : firstError;
+                        skippedScripts.addAll(dependencyGraph.getDownstreamScripts(script));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Deployment interrupted.", e);
+                    }
+                }
+                scriptRepo.flushScriptHistory();
+                if(firstError != null && !config.isContinueOnFailure()) {
+                    throwDeployError(firstError);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        endDeploy(changeType, failedScripts, skippedScripts, size);
+    }
+
+    /**
+     * Deploys the scripts level by level like {@link #deployInWaves}, but from the main thread only: scripts are
+     * submitted with the snowflake async query api and polled until they finish, with up to asyncQueries scripts in
+     * flight. Migrations that are not DDL are still run with a blocking query, in one transaction with their history.
+     * The queries in flight are awaited first, so no DDL commits on the session while that transaction is open. For the
+     * same reason the history of async scripts is buffered and written at the end of each wave.
+     */
+    private void deployInWavesAsync(ChangeType changeType, List<List<Script>> levels, Consumer<Script> prepare) throws SQLException {
+        int size = levels.stream().mapToInt(List::size).sum();
+        int maxInFlight = config.getAsyncQueries();
+        log.info("Deploying {} change scripts to db in {} waves with up to {} async queries.", size, levels.size(), maxInFlight);
+        int index = 1;
+        List<String> failedScripts = new ArrayList<>();
+        Set<Script> skippedScripts = new LinkedHashSet<>();
+        AsyncQueryTracker<Script> tracker = new AsyncQueryTracker<>();
+        try {
+            for(int wave = 0; wave < levels.size(); wave++) {
+                Deque<Script> waveScripts = levels.get(wave).stream()
+                        .filter(script -> !skippedScripts.contains(script))
+                        .collect(Collectors.toCollection(ArrayDeque::new));
+                log.info("Deploying wave {} of {} with {} scripts.", wave + 1, levels.size(), waveScripts.size());
+                Throwable firstError = null;
+                while(!waveScripts.isEmpty() || !tracker.isEmpty()) {
+                    while(!waveScripts.isEmpty() && tracker.size() < maxInFlight) {
+                        Script script = waveScripts.poll();
+                        boolean async = isAsyncScript(script);
+                        while(!async && !tracker.isEmpty()) {
+                            Throwable error = completeAsyncScripts(tracker.awaitAny(), failedScripts, skippedScripts);
+                            firstError = firstError == null ? error : firstError;
+                        }
+                        if(firstError != null && !config.isContinueOnFailure()) {
+                            waveScripts.clear();
+                            break;
+                        }
+                        log.info("{} of {}: Deploying object: {}", index++, size, script);
+                        try {
+                            prepare.accept(script);
+                            if(async) {
+                                String queryId = tracker.track(script, scriptRepo.submitScriptObject(script));
+                                log.info("Submitted object {} with query {}", script, queryId);
+                            }
+                            else {
+                                scriptRepo.createScriptObject(script, false);
+                            }
+                        } catch (SQLException | RuntimeException e) {
+                            failedScripts.add(script.getId());
+                            log.error("Failed to deploy script {}: {}", script.getId(), e.getMessage());
+                            firstError = firstError == null ? e : firstError;
+                            skippedScripts.addAll(dependencyGraph.getDownstreamScripts(script));
+                        }
+                        if(firstError != null && !config.isContinueOnFailure()) {
+                            waveScripts.clear();
+                        }
+                    }
+                    if(!tracker.isEmpty()) {
+                        Throwable error = completeAsyncScripts(tracker.awaitAny(), failedScripts, skippedScripts);
+                        firstError = firstError == null ? error : firstError;
+                    }
+                    if(firstError != null && !config.isContinueOnFailure()) {
+                        waveScripts.clear();
+                    }
+                }
+                scriptRepo.flushScriptHistory();
+                if(firstError != null && !config.isContinueOnFailure()) {
+                    throwDeployError(firstError);
+                }
+            }
+        } finally {
+            tracker.clear();
+            flushAsyncScriptHistory();
+        }
+        endDeploy(changeType, failedScripts, skippedScripts, size);
+    }
+
+    /**
+     * Writes the history of the async scripts that finished before the deploy stopped with an error, so their objects
+     * are not deployed again by the next run.
+     */
+    private void flushAsyncScriptHistory() {
+        try {
+            scriptRepo.flushScriptHistory();
+        } catch (SQLException e) {
+            log.error("Failed to write the history of the finished async scripts: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Records the outcome of finished async scripts and skips the scripts depending on the failed ones. The history of
+     * the scripts is buffered and written at the end of the wave, when no async query is in flight.
+     * @return the error of the first failed script, or null if all of them succeeded.
+     */
+    private Throwable completeAsyncScripts(List<AsyncQueryTracker.Completion<Script>> completions, List<String> failedScripts, Set<Script> skippedScripts) {
+        Throwable firstError = null;
+        for(AsyncQueryTracker.Completion<Script> completion: completions) {
+            Script script = completion.getItem();
+            scriptRepo.completeAsyncScriptObject(script, completion.getQueryId(), completion.getErrorMessage());
+            if(!completion.isSuccess()) {
+                failedScripts.add(script.getId());
+                firstError = firstError == null ? new SQLException(completion.getErrorMessage()) : firstError;
+                skippedScripts.addAll(dependencyGraph.getDownstreamScripts(script));
+            }
+        }
+        return firstError;
+    }
+
+    /**
+     * State scripts and DDL migrations commit on their own, so they can run asynchronously and have their history
+     * written after they finish.
+     */
+    private static boolean isAsyncScript(Script script) {
+        if(!(script instanceof MigrationScript)) {
+            return true;
+        }
+        String keyword = SqlTokenizer.getFirstKeyword(script.getContent());
+        return "CREATE".equals(keyword) || "ALTER".equals(keyword);
+    }
+
+    private static void throwDeployError(Throwable error) throws SQLException {
+        if(error instanceof SQLException) {
+            throw (SQLException) error;
+        }
+        if(error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        throw new RuntimeException(error);
+    }
+
+    /**
+     * Number of workers that can run at the same time. One pooled session always stays with the main thread.
+     */
+    private int getWorkerCount() {
+        return Math.max(1, Math.min(config.getParallelism(), scriptRepo.getMaxSessions() - 1));
+    }
+
+    private ExecutorService newWorkerPool(String name) {
+        AtomicInteger threadCount = new AtomicInteger(1);
+        return Executors.newFixedThreadPool(getWorkerCount(), runnable -> new Thread(runnable, "dlsync-" + name + "-" + threadCount.getAndIncrement()));
+    }
+
+    /**
+     * Runs the task for every item on the worker pool and returns the results in the order of the items.
+     * Each worker returns its session to the pool after every item.
+     */
+    private <T, R> List<R> runOnWorkers(String name, List<T> items, WorkerTask<T, R> task) throws SQLException, IOException {
+        List<R> results = new ArrayList<>(items.size());
+        if(getWorkerCount() <= 1 || items.size() <= 1) {
+            for(T item: items) {
+                results.add(task.run(item));
+            }
+            return results;
+        }
+        ExecutorService executor = newWorkerPool(name);
+        try {
+            List<Future<R>> futures = new ArrayList<>(items.size());
+            for(T item: items) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        return task.run(item);
+                    } finally {
+                        scriptRepo.releaseSession();
+                    }
+                }));
+            }
+            for(Future<R> future: futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(name + " interrupted.", e);
+        } finally {
+            executor.shutdownNow();
         }
-        if (failedCount > 0) {
-            String errorMsg = String.format("Deployment completed with %d failures", failedCount);
+    }
+
+    /**
+     * Reads the state scripts of all schemas. Each schema is read with a single GET_DDL of the schema. Object types
+     * that are not part of the schema ddl, objects the schema ddl is missing, and all types of a schema whose ddl can
+     * not be read, are read object by object on the worker pool.
+     */
+    private List<Script> getStateScriptsInDatabase(List<String> schemaNames) throws SQLException, IOException {
+        List<List<Script>> bulkScripts = runOnWorkers("verify", schemaNames, schema -> {
+            try {
+                return scriptRepo.getBulkStateScriptsInSchema(schema);
+            } catch (SQLException | RuntimeException e) {
+                log.warn("Unable to read ddl of schema {}, reading its objects one by one: {}", schema, e.getMessage());
+                return null;
+            }
+        });
+        Map<String, List<Script>> schemaBulkScripts = new HashMap<>();
+        for(int i = 0; i < schemaNames.size(); i++) {
+            if(bulkScripts.get(i) != null) {
+                schemaBulkScripts.put(schemaNames.get(i), bulkScripts.get(i));
+            }
+        }
+        List<List<DbObject>> schemaObjects = runOnWorkers("verify", schemaNames, schema -> {
+            boolean bulkFailed = !schemaBulkScripts.containsKey(schema);
+            List<DbObject> dbObjects = new ArrayList<>();
+            if(!bulkFailed) {
+                dbObjects.addAll(scriptRepo.getObjectsMissingInBulk(schema, schemaBulkScripts.get(schema)));
+            }
+            for(ScriptObjectType type: ScriptObjectType.values()) {
+                if(!type.isMigration() && (bulkFailed || !ScriptRepo.BULK_DDL_TYPES.contains(type))) {
+                    dbObjects.addAll(scriptRepo.getObjectsInSchema(schema, type));
+                }
+            }
+            return dbObjects;
+        });
+        List<DbObject> dbObjects = schemaObjects.stream().flatMap(List::stream).collect(Collectors.toList());
+        log.info("Read ddl of {} schemas in bulk, reading {} objects one by one.", schemaBulkScripts.size(), dbObjects.size());
+        List<Script> scripts = new ArrayList<>();
+        bulkScripts.stream().filter(Objects::nonNull).forEach(scripts::addAll);
+        runOnWorkers("verify", dbObjects, scriptRepo::getObjectScript).stream().filter(Objects::nonNull).forEach(scripts::add);
+        return scripts;
+    }
+
+    private interface WorkerTask<T, R> {
+        R run(T item) throws SQLException, IOException;
+    }
+
+    private interface DeployTask {
+        void deploy(Script script) throws SQLException;
+    }
+
+    private void endDeploy(ChangeType changeType, List<String> failedScripts, Set<Script> skippedScripts, int size) throws SQLException {
+        if(!skippedScripts.isEmpty()) {
+            log.error("Skipped {} scripts depending on failed scripts: {}", skippedScripts.size(), skippedScripts);
+        }
+        if (failedScripts.size() > 0) {
+            String errorMsg = String.format("Deployment completed with %d failures", failedScripts.size());
             log.error(errorMsg);
             log.error("Failed scripts: {}", String.join(", ", failedScripts));
-            endSyncError(ChangeType.DEPLOY, errorMsg);
+            endSyncError(changeType, errorMsg);
             throw new RuntimeException(errorMsg);
         }
         else {
-            endSyncSuccess(ChangeType.DEPLOY, (long)sequencedScript.size());
+            endSyncSuccess(changeType, (long)size);
         }
     }
 
@@ -116,7 +684,7 @@ public class ChangeManager {
             }
             else {
                 log.info("{} of {}: Rolling-back object: {}", index++, size, script);
-                parameterInjector.injectParameters(script);
+                injectParameters(script);
                 scriptRepo.createScriptObject(script, false);
             }
 
@@ -134,27 +702,35 @@ public class ChangeManager {
                 .collect(Collectors.toSet());
 
         List<String> schemaNames = scriptRepo.getAllSchemasInDatabase(scriptRepo.getDatabaseName());
-        for(String schema: schemaNames) {
-            List<Script> stateScripts = scriptRepo.getStateScriptsInSchema(schema)
-                    .stream()
-                    .filter(script -> !config.isScriptExcluded(script))
-                    .collect(Collectors.toList());
-
+        ScriptReconciler reconciler = new ScriptReconciler(sourceScripts, scriptRepo::compareScript);
+        Map<String, List<Script>> schemaStateScripts = getStateScriptsInDatabase(schemaNames)
+                .stream()
+                .filter(script -> !config.isScriptExcluded(script))
+                .collect(Collectors.groupingBy(Script::getSchemaName, LinkedHashMap::new, Collectors.toList()));
+        runOnWorkers("verify", new ArrayList<>(schemaStateScripts.values()), stateScripts -> {
             for(Script script: stateScripts) {
                 parameterInjector.parametrizeScript(script, true);
-                Script sourceScript = sourceScripts.stream().filter(s -> s.equals(script)).findFirst().orElse(null);
-                if(sourceScript == null) {
-                    log.error("Script [{}] is not found in source.", script);
-                    failedCount++;
-                    continue;
-                }
-                if (!scriptRepo.compareScript(script, sourceScript)) {
-                    failedCount++;
-                    log.error("Script verification failed for {}. The source script is different from db object [{}] ", script, script.getContent());
-                } else {
-                    log.info("Verified Script {} is correct.", script);
-                }
+                reconciler.reconcile(script);
             }
+            return null;
+        });
+        String databaseName = parameterInjector.parametrizeName(scriptRepo.getDatabaseName()).toUpperCase();
+        List<Script> missingInDatabase = reconciler.getMissingInDatabase(script -> !script.getObjectType().isMigration() && script.getDatabaseName().equals(databaseName));
+        for(Script script: reconciler.getMissingInSource()) {
+            log.error("Script [{}] is not found in source.", script);
+        }
+        for(Script script: missingInDatabase) {
+            log.error("Script [{}] is not found in database.", script);
+        }
+        for(Script script: reconciler.getDrifted()) {
+            log.error("Script verification failed for {}. The source script is different from db object [{}] ", script, script.getContent());
+        }
+        for(Script script: reconciler.getVerified()) {
+            log.info("Verified Script {} is correct.", script);
+        }
+        failedCount += reconciler.getMissingInSource().size() + reconciler.getDrifted().size();
+        if(config.isFailOnMissingInDatabase()) {
+            failedCount += missingInDatabase.size();
         }
 
         Map<String, List<MigrationScript>> groupedMigrationScripts = sourceScripts.stream()
@@ -162,18 +738,24 @@ public class ChangeManager {
                 .map(script -> (MigrationScript)script)
                 .collect(Collectors.groupingBy(Script::getObjectName));
 
+        List<MigrationScript> lastMigrations = new ArrayList<>();
         for(String objectName: groupedMigrationScripts.keySet()) {
             List<MigrationScript> sameObjectMigrations = groupedMigrationScripts.get(objectName);
             Optional<MigrationScript> lastMigration = sameObjectMigrations.stream().sorted(Comparator.comparing(MigrationScript::getVersion).reversed()).findFirst();
             if (lastMigration.isPresent()) {
                 MigrationScript migrationScript = lastMigration.get();
                 parameterInjector.injectParametersAll(migrationScript);
-                if (!scriptRepo.executeVerify(migrationScript)) {
-                    failedCount++;
-                    log.error("Script verification failed for {}. The verify script [{}] failed to execute.", migrationScript, migrationScript.getVerify());
-                } else {
-                    log.info("Verified Script {} is correct.", migrationScript);
-                }
+                lastMigrations.add(migrationScript);
+            }
+        }
+        List<Boolean> verified = runOnWorkers("verify", lastMigrations, scriptRepo::executeVerify);
+        for(int i = 0; i < lastMigrations.size(); i++) {
+            MigrationScript migrationScript = lastMigrations.get(i);
+            if (!verified.get(i)) {
+                failedCount++;
+                log.error("Script verification failed for {}. The verify script [{}] failed to execute.", migrationScript, migrationScript.getVerify());
+            } else {
+                log.info("Verified Script {} is correct.", migrationScript);
             }
         }
 
@@ -202,34 +784,40 @@ public class ChangeManager {
         else {
             schemaNames = scriptRepo.getAllSchemasInDatabase(scriptRepo.getDatabaseName());
         }
-        int count = 0;
-        for(String schema: schemaNames) {
+        List<Integer> counts = runOnWorkers("create-script", schemaNames, schema -> {
             List<Script> scripts = scriptRepo.getAllScriptsInSchema(schema);
+            Map<Script, String> configScripts = new LinkedHashMap<>();
             for(Script script: scripts) {
-                count++;
-                if(configTables.contains(script.getFullObjectName())) {
-                    scriptRepo.addConfig(script);
+                if(script.getObjectType() == ScriptObjectType.TABLES && configTables.contains(script.getFullObjectName())) {
+                    configScripts.put(script, script.getFullObjectName());
                 }
                 parameterInjector.parametrizeScript(script, false);
             }
             scriptSource.createScriptFiles(scripts);
-        }
-        endSyncSuccess(ChangeType.CREATE_SCRIPT, (long)count);
+            for(Map.Entry<Script, String> configScript: configScripts.entrySet()) {
+                try (Writer writer = scriptSource.appendScriptFile(configScript.getKey())) {
+                    scriptRepo.exportConfig(configScript.getValue(), writer, parameterInjector::parametrize);
+                }
+            }
+            return scripts.size();
+        });
+        long count = counts.stream().mapToLong(Integer::longValue).sum();
+        endSyncSuccess(ChangeType.CREATE_SCRIPT, count);
 
     }
 
     public void createLineage() throws IOException, SQLException {
         log.info("Started Lineage graph.");
         startSync(ChangeType.CREATE_LINEAGE);
-        List<Script> scripts = scriptSource.getAllScripts();
-        dependencyGraph.addNodes(scripts);
+        ScriptSnapshot snapshot = scriptSource.getSnapshot();
+        dependencyGraph.addNodes(snapshot.getScripts());
         List<ScriptDependency> manualDependencies = config.getDependencyOverride()
                 .stream()
                 .flatMap(dependencyOverride -> {
-                    Script script = scripts.stream().filter(s -> s.getFullObjectName().equals(dependencyOverride.getScript())).findFirst().get();
+                    Script script = snapshot.getByFullObjectName(dependencyOverride.getScript()).stream().findFirst().get();
                     List<Script> dependencies = dependencyOverride.getDependencies()
                             .stream()
-                            .map(dependencyName -> scripts.stream().filter(s -> s.getFullObjectName().equals(dependencyName)).findFirst().get())
+                            .map(dependencyName -> snapshot.getByFullObjectName(dependencyName).stream().findFirst().get())
                             .collect(Collectors.toList());
                     return dependencies.stream().map(dependency -> new ScriptDependency(script, dependency));
                 })
@@ -248,13 +836,13 @@ public class ChangeManager {
                 .filter(script -> !config.isScriptExcluded(script))
                 .filter(script -> !script.getObjectType().isMigration())
                 .collect(Collectors.toList());
-        scripts.forEach(script -> parameterInjector.injectParameters(script));
+        scripts.forEach(this::injectParameters);
 
         List<TestScript> testScripts = scriptSource.getTestScripts(scripts);
         int size = testScripts.size();
-        int index = 1;
-        for(TestScript script: testScripts) {
-            log.info("{} of {}: testing object: {}", index++, size, script);
+        AtomicInteger index = new AtomicInteger(1);
+        runOnWorkers("test", testScripts, script -> {
+            log.info("{} of {}: testing object: {}", index.getAndIncrement(), size, script);
 //            TestQueryGenerator testQueryGenerator = new TestQueryGenerator(script);
             log.debug("Testing query: [{}]", script.getTestQuery());
             List<TestResult> testResults = scriptRepo.runTest(script);
@@ -265,8 +853,8 @@ public class ChangeManager {
             else {
                 log.info("Test passed for script: {}", script);
             }
-
-        }
+            return testResults;
+        });
         endSyncSuccess(ChangeType.TEST, (long)size);
     }
 
@@ -275,11 +863,35 @@ public class ChangeManager {
     }
 
     public void endSyncError(ChangeType changeType, String message) throws SQLException {
-        scriptRepo.updateChangeSync(changeType, Status.ERROR, message, null);
+        try {
+            scriptRepo.flushScriptHistory();
+        } catch (SQLException e) {
+            log.error("Buffered script history could not be written: {}", e.getMessage());
+        }
+        scriptRepo.updateChangeSync(changeType, Status.ERROR, message, null, reportMetrics(changeType, Status.ERROR));
     }
 
     public void endSyncSuccess(ChangeType changeType, Long changeCount) throws SQLException {
-        scriptRepo.updateChangeSync(changeType, Status.SUCCESS, "Successfully completed " + changeType.toString() , changeCount);
+        scriptRepo.flushScriptHistory();
+        scriptRepo.updateChangeSync(changeType, Status.SUCCESS, "Successfully completed " + changeType.toString() , changeCount, reportMetrics(changeType, Status.SUCCESS));
+    }
+
+    /**
+     * Logs the metrics of the run and writes them to the metrics report file if one is set.
+     * @return summary of the metrics to store with the change sync.
+     */
+    private String reportMetrics(ChangeType changeType, Status status) {
+        String summary = metrics.toSummary();
+        log.info("{} metrics: {}", changeType, summary);
+        if(metricsReport != null) {
+            try {
+                Files.writeString(Path.of(metricsReport), metrics.toJson(changeType, status));
+                log.info("Metrics report written to {}", metricsReport);
+            } catch (IOException e) {
+                log.error("Error while writing metrics report to {}: {}", metricsReport, e.getMessage());
+            }
+        }
+        return summary;
     }
 
 
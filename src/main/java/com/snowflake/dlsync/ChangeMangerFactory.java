@@ -2,11 +2,14 @@ package com.snowflake.dlsync;
 
 import com.snowflake.dlsync.dependency.DependencyExtractor;
 import com.snowflake.dlsync.dependency.DependencyGraph;
+import com.snowflake.dlsync.doa.ScriptCache;
 import com.snowflake.dlsync.doa.ScriptRepo;
 import com.snowflake.dlsync.doa.ScriptSource;
+import com.snowflake.dlsync.metrics.Metrics;
 import com.snowflake.dlsync.parser.ParameterInjector;
 
 import java.io.IOException;
+import java.nio.file.Path;
 
 public class ChangeMangerFactory {
     public static ChangeManager createChangeManger() throws IOException {
@@ -21,11 +24,21 @@ public class ChangeMangerFactory {
 
     public static ChangeManager createChangeManger(ConfigManager configManager) throws IOException {
         configManager.init();
-        ScriptSource scriptSource = new ScriptSource(configManager.getScriptRoot());
-        ScriptRepo scriptRepo = new ScriptRepo(configManager.getConfig().getConnection());
+        Metrics metrics = new Metrics();
+        ScriptSource scriptSource = new ScriptSource(configManager.getScriptRoot(), configManager.getConfig().isScriptCacheEnabled());
+        scriptSource.setMetrics(metrics);
+        ScriptRepo scriptRepo = new ScriptRepo(configManager.getConfig().getConnection(), configManager.getConfig().getConnectionPoolSize(), configManager.getConfig().getWarmConnections());
+        scriptRepo.setHistoryFlushInterval(configManager.getConfig().getHistoryFlushInterval());
+        scriptRepo.setMetrics(metrics);
+        if(configManager.getConfig().isHistorySnapshotEnabled()) {
+            scriptRepo.enableHistorySnapshot(Path.of(configManager.getScriptRoot(), ScriptCache.CACHE_DIRECTORY));
+        }
         ParameterInjector parameterInjector = new ParameterInjector(configManager.getScriptParameters());
         DependencyExtractor dependencyExtractor = new DependencyExtractor();
         DependencyGraph dependencyGraph = new DependencyGraph(dependencyExtractor, configManager.getConfig());
-        return new ChangeManager(configManager.getConfig(), scriptSource, scriptRepo, dependencyGraph, parameterInjector);
+        dependencyGraph.setMetrics(metrics);
+        ChangeManager changeManager = new ChangeManager(configManager.getConfig(), scriptSource, scriptRepo, dependencyGraph, parameterInjector);
+        changeManager.setMetrics(metrics);
+        return changeManager;
     }
 }
@@ -1,10 +1,13 @@
 package com.snowflake.dlsync;
 
+import com.snowflake.dlsync.dependency.CyclicDependencyException;
 import com.snowflake.dlsync.models.ChangeType;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.cli.*;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.util.Arrays;
@@ -12,25 +15,45 @@ import java.util.List;
 
 @Slf4j
 public class Main {
+    public static final String DEFAULT_PLAN_FILE = "dlsync.plan";
 
     public static void main(String[] args) throws SQLException {
         log.info("DlSync change Manager started with args: {}", Arrays.toString(args));
         ChangeManager changeManager = null;
         ChangeType changeType = null;
         boolean onlyHashes = false;
+        boolean impact = false;
+        boolean dryRun = false;
+        boolean resume = false;
         List<String> schemas = null;
+        String cycleReport = null;
         try {
             changeType = getChangeType(args);
             CommandLine commandLine = buildCommandOptions(args);
             onlyHashes = commandLine.hasOption("only-hashes");
+            impact = commandLine.hasOption("impact");
+            dryRun = commandLine.hasOption("dry-run");
+            resume = commandLine.hasOption("resume");
+            Long resumeSyncId = commandLine.getOptionValue("resume") != null ? Long.valueOf(commandLine.getOptionValue("resume")) : null;
             String scriptRoot = commandLine.getOptionValue("script-root");
             String profile = commandLine.getOptionValue("profile");
             String targetSchemas = commandLine.getOptionValue("target-schemas");
+            cycleReport = commandLine.getOptionValue("cycle-report");
+            String planFile = getPlanFile(commandLine);
             changeManager = ChangeMangerFactory.createChangeManger(scriptRoot, profile);
+            changeManager.setMetricsReport(commandLine.getOptionValue("metrics-report"));
             switch (changeType) {
                 case DEPLOY:
-                    changeManager.deploy(onlyHashes);
-                    log.info("DLsync Changes deployed successfully.");
+                    changeManager.deploy(onlyHashes, impact, dryRun, resume, resumeSyncId);
+                    log.info(dryRun ? "DLsync deployment plan printed." : "DLsync Changes deployed successfully.");
+                    break;
+                case PLAN:
+                    changeManager.plan(planFile, impact);
+                    log.info("DLsync deployment plan written to {}.", planFile);
+                    break;
+                case APPLY:
+                    changeManager.apply(planFile);
+                    log.info("DLsync deployment plan applied successfully.");
                     break;
                 case ROLLBACK:
                     changeManager.rollback();
@@ -79,6 +102,11 @@ public class Main {
             log.error("Error: {} ", e);
             changeManager.endSyncError(changeType, e.getMessage());
             System.exit(5);
+        } catch (CyclicDependencyException e) {
+            log.error("Error: {}", e.getMessage());
+            writeCycleReport(cycleReport, e);
+            changeManager.endSyncError(changeType, e.getMessage());
+            System.exit(6);
         }
         catch (Exception e) {
             e.printStackTrace();
@@ -94,21 +122,57 @@ public class Main {
             String[] argsWithoutCommand = Arrays.copyOfRange(args, 1, args.length);
             Option onlyHashes = new Option("o", "only-hashes", false, "Deploy only hashes to database");
             options.addOption(onlyHashes);
+            Option impact = new Option("i", "impact", false, "Also deploy the scripts depending on the changed scripts");
+            options.addOption(impact);
+            Option dryRun = new Option("d", "dry-run", false, "Only print the scripts that would be deployed");
+            options.addOption(dryRun);
+            Option resume = new Option("r", "resume", true, "Continue an unfinished deploy, given by its change sync id or the last one if it is idle");
+            resume.setOptionalArg(true);
+            options.addOption(resume);
             Option scriptRoot = new Option("s", "script-root", true, "Script root directory");
             options.addOption(scriptRoot);
             Option profile = new Option("p", "profile", true, "Profile to use");
             options.addOption(profile);
             Option targetSchemas = new Option("t", "target-schemas", true, "Comma separated list of schemas to use");
             options.addOption(targetSchemas);
+            Option cycleReport = new Option("c", "cycle-report", true, "File to write detected dependency cycles to as json");
+            options.addOption(cycleReport);
+            Option planFile = new Option("f", "plan-file", true, "Deployment plan file to write with plan or to run with apply");
+            options.addOption(planFile);
+            Option metricsReport = new Option("m", "metrics-report", true, "File to write the metrics of the run to as json");
+            options.addOption(metricsReport);
             CommandLine commandLine = new DefaultParser().parse(options, argsWithoutCommand);
             return commandLine;
         } catch (ParseException e) {
-            new HelpFormatter().printHelp("dlsync [deploy|rollback|verify|create-script|create-lineage] [options]", "options:", options, "");
+            new HelpFormatter().printHelp("dlsync [deploy|plan|apply|rollback|verify|create-script|create-lineage] [options]", "options:", options, "");
             throw e;
         }
 
     }
 
+    /**
+     * The plan file is given with --plan-file, or as the first argument after the command as in {@code apply plan.bin}.
+     */
+    public static String getPlanFile(CommandLine commandLine) {
+        if(commandLine.hasOption("plan-file")) {
+            return commandLine.getOptionValue("plan-file");
+        }
+        List<String> arguments = commandLine.getArgList();
+        return arguments.isEmpty() ? DEFAULT_PLAN_FILE : arguments.get(0);
+    }
+
+    private static void writeCycleReport(String cycleReport, CyclicDependencyException e) {
+        if(cycleReport == null) {
+            return;
+        }
+        try {
+            Files.writeString(Path.of(cycleReport), e.toJson());
+            log.info("Dependency cycles written to {}", cycleReport);
+        } catch (IOException ioException) {
+            log.error("Error while writing dependency cycles to {}: {}", cycleReport, ioException.getMessage());
+        }
+    }
+
     public static ChangeType getChangeType(String[] args) {
         return args.length >= 1 ? ChangeType.valueOf(args[0].toUpperCase()) : ChangeType.VERIFY;
     }
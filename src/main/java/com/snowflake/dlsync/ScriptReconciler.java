@@ -0,0 +1,98 @@
+package com.snowflake.dlsync;
+
+import com.snowflake.dlsync.models.Script;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Matches the scripts read from the database against the source scripts in a single pass. Source scripts are indexed
+ * by object type and id, so every database script is matched with one lookup. Database scripts of different schemas
+ * can be reconciled from several threads at the same time.
+ */
+public class ScriptReconciler {
+    private final Map<String, Script> sourceScripts = new HashMap<>();
+    private final BiPredicate<Script, Script> comparator;
+    private final Set<String> matchedKeys = ConcurrentHashMap.newKeySet();
+    private final Queue<Script> verified = new ConcurrentLinkedQueue<>();
+    private final Queue<Script> drifted = new ConcurrentLinkedQueue<>();
+    private final Queue<Script> missingInSource = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param sourceScripts scripts read from the script root.
+     * @param comparator returns true if the database script, the first argument, matches the source script.
+     */
+    public ScriptReconciler(Collection<? extends Script> sourceScripts, BiPredicate<Script, Script> comparator) {
+        for(Script script: sourceScripts) {
+            this.sourceScripts.putIfAbsent(keyOf(script), script);
+        }
+        this.comparator = comparator;
+    }
+
+    private static String keyOf(Script script) {
+        return script.getObjectType().name() + ":" + script.getId();
+    }
+
+    /**
+     * Matches a database script with its source script.
+     * @return true if the source script exists and matches the database script.
+     */
+    public boolean reconcile(Script dbScript) {
+        String key = keyOf(dbScript);
+        Script sourceScript = sourceScripts.get(key);
+        if(sourceScript == null) {
+            missingInSource.add(dbScript);
+            return false;
+        }
+        matchedKeys.add(key);
+        if(comparator.test(dbScript, sourceScript)) {
+            verified.add(dbScript);
+            return true;
+        }
+        drifted.add(dbScript);
+        return false;
+    }
+
+    /**
+     * @return database scripts that match their source script.
+     */
+    public List<Script> getVerified() {
+        return sorted(verified);
+    }
+
+    /**
+     * @return database scripts whose content is different from their source script.
+     */
+    public List<Script> getDrifted() {
+        return sorted(drifted);
+    }
+
+    /**
+     * @return database scripts without a source script.
+     */
+    public List<Script> getMissingInSource() {
+        return sorted(missingInSource);
+    }
+
+    /**
+     * @param filter selects the source scripts expected in the database.
+     * @return source scripts accepted by the filter that were not matched by any database script.
+     */
+    public List<Script> getMissingInDatabase(Predicate<Script> filter) {
+        return sorted(sourceScripts.entrySet().stream()
+                .filter(entry -> !matchedKeys.contains(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .filter(filter)
+                .collect(Collectors.toList()));
+    }
+
+    private static List<Script> sorted(Collection<Script> scripts) {
+        List<Script> sortedScripts = new ArrayList<>(scripts);
+        sortedScripts.sort(Comparator.comparing(Script::getId));
+        return sortedScripts;
+    }
+}
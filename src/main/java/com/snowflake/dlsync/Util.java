@@ -5,9 +5,14 @@ import net.snowflake.client.jdbc.internal.org.bouncycastle.util.encoders.Hex;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 
 @Slf4j
 public class Util {
+    private static final long ID_EPOCH_MILLIS = 1704067200000L;
+    private static final int ID_RANDOM_BITS = 22;
+    private static final SecureRandom ID_RANDOM = new SecureRandom();
+
     public static String getMd5Hash(String content) {
         try {
             return Hex.toHexString(MessageDigest.getInstance("MD5").digest(content.getBytes()));
@@ -16,4 +21,17 @@ public class Util {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Generates a time ordered id without a round trip to the database: the milliseconds since 2024-01-01 in the high
+     * bits and 22 random bits in the low bits. Ids generated in different milliseconds are ordered by time, and two
+     * ids generated in the same millisecond collide with a probability of one in four million.
+     */
+    public static long newTimeOrderedId() {
+        return newTimeOrderedId(System.currentTimeMillis());
+    }
+
+    static long newTimeOrderedId(long currentTimeMillis) {
+        return ((currentTimeMillis - ID_EPOCH_MILLIS) << ID_RANDOM_BITS) | ID_RANDOM.nextInt(1 << ID_RANDOM_BITS);
+    }
 }
@@ -0,0 +1,68 @@
+package com.snowflake.dlsync.dependency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.snowflake.dlsync.models.Script;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Thrown when the scripts can not be sorted because some of them depend on each other. Every cycle is reported as an
+ * ordered path, where each script depends on the next one and the last script depends on the first one.
+ */
+public class CyclicDependencyException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private final List<List<Script>> cycles;
+
+    public CyclicDependencyException(List<List<Script>> cycles) {
+        super(buildMessage(cycles));
+        this.cycles = Collections.unmodifiableList(cycles);
+    }
+
+    private static String buildMessage(List<List<Script>> cycles) {
+        return "Cyclic dependency detected in " + cycles.size() + " cycles: " + cycles.stream()
+                .map(CyclicDependencyException::toPath)
+                .collect(Collectors.joining("; "));
+    }
+
+    /**
+     * @return the cycle as a path of script ids that starts and ends with the same script.
+     */
+    public static String toPath(List<Script> cycle) {
+        return cycle.stream().map(Script::getId).collect(Collectors.joining(" -> ")) + " -> " + cycle.get(0).getId();
+    }
+
+    public List<List<Script>> getCycles() {
+        return cycles;
+    }
+
+    /**
+     * @return the cycles as json, for example {@code {"cycleCount":1,"cycles":[{"size":2,"path":["A","B","A"],"objectTypes":["VIEWS","VIEWS"]}]}}.
+     */
+    public String toJson() {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode report = mapper.createObjectNode();
+        report.put("cycleCount", cycles.size());
+        ArrayNode cycleNodes = report.putArray("cycles");
+        for(List<Script> cycle: cycles) {
+            ObjectNode cycleNode = cycleNodes.addObject();
+            cycleNode.put("size", cycle.size());
+            ArrayNode path = cycleNode.putArray("path");
+            ArrayNode objectTypes = cycleNode.putArray("objectTypes");
+            for(Script script: cycle) {
+                path.add(script.getId());
+                objectTypes.add(script.getObjectType().toString());
+            }
+            path.add(cycle.get(0).getId());
+        }
+        try {
+            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(report);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
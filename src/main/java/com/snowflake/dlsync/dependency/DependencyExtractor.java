@@ -7,8 +7,10 @@ import com.snowflake.dlsync.parser.SqlTokenizer;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -27,6 +29,7 @@ public class DependencyExtractor {
     private static final String DEPENDENCY_START_REGEX = "([()\\[\\],\\.\\s\\\"])";
     private static final String DEPENDENCY_END_REGEX = "([()\\[\\],\\.\\s\\'\\\";])";
     private List<Script> scripts = new ArrayList<>();
+    private Map<String, List<Script>> scriptIndex;
     public DependencyExtractor() {
         log.debug("Dependency extractor started.");
     }
@@ -100,18 +103,31 @@ public class DependencyExtractor {
 
     public void addScripts(List<? extends Script> scripts) {
         this.scripts.addAll(scripts);
+        scriptIndex = null;
+    }
+
+    /**
+     * Index of the known scripts by their full object name, rebuilt on first use after scripts are added.
+     */
+    private Map<String, List<Script>> getScriptIndex() {
+        if(scriptIndex == null) {
+            scriptIndex = scripts.stream().collect(Collectors.groupingBy(Script::getFullObjectName));
+        }
+        return scriptIndex;
     }
 
     public Set<Script> extractScriptDependencies(Script script) {
+        Map<String, List<Script>> index = getScriptIndex();
         Set<Script> dependencies = new HashSet<>();
-        dependencies = scripts.parallelStream()
-                .filter(s -> !s.getFullObjectName().equals(script.getFullObjectName()))
-                .filter(s -> isDependencyOf(s, script))
-                .collect(Collectors.toSet());
+        for(String objectName: getReferencedObjectNames(script)) {
+            if(!objectName.equals(script.getFullObjectName())) {
+                dependencies.addAll(index.getOrDefault(objectName, Collections.emptyList()));
+            }
+        }
         if(script instanceof MigrationScript) {
             MigrationScript migrationScript = (MigrationScript)script;
-            Set<Script> versionDependencies  = scripts.stream()
-                    .filter(s -> s.getFullObjectName().equals(script.getFullObjectName()) && s.getObjectType().equals(script.getObjectType()))
+            Set<Script> versionDependencies  = index.getOrDefault(script.getFullObjectName(), Collections.emptyList()).stream()
+                    .filter(s -> s.getObjectType().equals(script.getObjectType()))
                     .map(s -> (MigrationScript) s)
                     .filter(s -> s.getVersion() <  migrationScript.getVersion()).collect(Collectors.toSet());
             dependencies.addAll(versionDependencies);
@@ -121,21 +137,14 @@ public class DependencyExtractor {
         return dependencies;
     }
 
-    private boolean isDependencyOf(Script dependency, Script target) {
-        if(dependency.getObjectName().equals(target.getObjectName())) {
-            log.debug("Found same object name with different schema: {}, {}", dependency, target);
-        }
-        Set<String> fullIdentifiers = SqlTokenizer.getFullIdentifiers(dependency.getObjectName(), target.getContent());
-        if(fullIdentifiers.isEmpty()) {
-            return false;
+    private Set<String> getReferencedObjectNames(Script script) {
+        if(script.getReferencedIdentifiers() == null) {
+            script.setReferencedIdentifiers(SqlTokenizer.getAllFullIdentifiers(script.getContent()));
         }
-        for(String identifier: fullIdentifiers) {
-            String fullObjectName = constructFullObjectName(target, identifier);
-            if (fullObjectName.equals(dependency.getFullObjectName())) {
-                return true;
-            }
-        }
-        return false;
+        return script.getReferencedIdentifiers().stream()
+                .filter(identifier -> identifier.split("\\.").length <= 3)
+                .map(identifier -> constructFullObjectName(script, identifier))
+                .collect(Collectors.toSet());
     }
 
 }
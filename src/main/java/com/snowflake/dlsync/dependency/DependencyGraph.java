@@ -1,7 +1,9 @@
 package com.snowflake.dlsync.dependency;
 
+import com.snowflake.dlsync.metrics.Metrics;
 import com.snowflake.dlsync.models.Config;
 import com.snowflake.dlsync.models.DependencyOverride;
+import com.snowflake.dlsync.models.MigrationScript;
 import com.snowflake.dlsync.models.Script;
 import com.snowflake.dlsync.models.ScriptDependency;
 import lombok.extern.slf4j.Slf4j;
@@ -9,92 +11,508 @@ import lombok.extern.slf4j.Slf4j;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Dependency graph of scripts. Every script gets a dense int id in the order it is added, and the edges from each
+ * script to the scripts depending on it are stored as compressed sparse row arrays: the dependents of script {@code i}
+ * are {@code edgeTargets[edgeOffsets[i]]} up to {@code edgeTargets[edgeOffsets[i + 1] - 1]}, in ascending id order.
+ * The arrays are built on the first query after nodes are added, and all traversals run over them with int arrays.
+ */
 @Slf4j
 public class DependencyGraph {
+    private static final int[] NO_DEPENDENCIES = new int[0];
+
     private DependencyExtractor dependencyExtractor;
     private Config config;
-    private Map<Script, Set<Script>> dagGraph;
-    private Map<Script, Integer> inDegree;
-    private Stack<Script> zeroInDegreeScripts = new Stack<>();
+    private final List<Script> scripts = new ArrayList<>();
+    private final Map<Script, Integer> scriptIds = new HashMap<>();
+    private final List<int[]> dependencyIds = new ArrayList<>();
+    private int[] edgeOffsets;
+    private int[] edgeTargets;
+    private int[] inDegree;
+    private Metrics metrics = new Metrics();
+
     public DependencyGraph(DependencyExtractor dependencyExtractor, Config config) {
         this.dependencyExtractor = dependencyExtractor;
         this.config = config;
-        dagGraph = new HashMap<>();
-        inDegree = new HashMap<>();
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
     }
 
     public void addNodes(List<? extends Script> nodes) {
         log.info("Building dependency graph of {} scripts.", nodes.size());
+        metrics.time(Metrics.DEPENDENCY_EXTRACTION, () -> extractNodes(nodes));
+    }
+
+    private void extractNodes(List<? extends Script> nodes) {
         dependencyExtractor.addScripts(nodes);
+        for(Script script: nodes) {
+            if(!scriptIds.containsKey(script)) {
+                scriptIds.put(script, scripts.size());
+                scripts.add(script);
+                dependencyIds.add(NO_DEPENDENCIES);
+            }
+        }
         for(Script script: nodes) {
             Set<Script> scriptDependencies = dependencyExtractor.extractScriptDependencies(script);
-            List<Script> manualOverride = getDependencyOverride(script, nodes);
-            scriptDependencies.addAll(manualOverride);
+            scriptDependencies.addAll(getDependencyOverride(script, nodes));
+            int[] ids = new int[scriptDependencies.size()];
+            int count = 0;
             for(Script dependency: scriptDependencies) {
-                dagGraph.computeIfAbsent(dependency, k -> new HashSet<>()).add(script);
+                Integer dependencyId = scriptIds.get(dependency);
+                if(dependencyId == null) {
+                    log.debug("Ignoring dependency {} of {} which is not part of the graph.", dependency, script);
+                    continue;
+                }
+                ids[count++] = dependencyId;
             }
+            metrics.add(Metrics.DEPENDENCIES, count);
+            dependencyIds.set(scriptIds.get(script), Arrays.copyOf(ids, count));
+        }
+        edgeOffsets = null;
+        log.debug("Dependency graph has {} scripts.", scripts.size());
+    }
 
-            inDegree.put(script, scriptDependencies.size());
-            if(scriptDependencies.size() == 0) {
-                zeroInDegreeScripts.push(script);
+    /**
+     * Adds scripts whose dependencies are already resolved, as read from a deployment plan. No dependencies are
+     * extracted from the content of the scripts and no overrides are applied.
+     * @param nodeDependencies for each script, the indexes in nodes of the scripts it depends on.
+     */
+    public void addNodes(List<? extends Script> nodes, List<int[]> nodeDependencies) {
+        for(Script script: nodes) {
+            if(!scriptIds.containsKey(script)) {
+                scriptIds.put(script, scripts.size());
+                scripts.add(script);
+                dependencyIds.add(NO_DEPENDENCIES);
+            }
+        }
+        for(int index = 0; index < nodes.size(); index++) {
+            int[] dependencies = nodeDependencies.get(index);
+            int[] ids = new int[dependencies.length];
+            for(int i = 0; i < dependencies.length; i++) {
+                ids[i] = scriptIds.get(nodes.get(dependencies[i]));
             }
+            dependencyIds.set(scriptIds.get(nodes.get(index)), ids);
+        }
+        edgeOffsets = null;
+    }
+
+    /**
+     * @return the scripts of the graph the given script depends on.
+     */
+    public List<Script> getDependencies(Script script) {
+        Integer scriptId = scriptIds.get(script);
+        if(scriptId == null) {
+            return new ArrayList<>();
         }
-        log.debug("Using the following dependency graph: {}", dagGraph);
+        int[] dependencies = dependencyIds.get(scriptId);
+        return toScripts(dependencies, 0, dependencies.length);
+    }
+
+    /**
+     * Builds the compressed sparse row arrays of the dependents of each script if nodes were added since the last build.
+     */
+    private void build() {
+        if(edgeOffsets != null) {
+            return;
+        }
+        int size = scripts.size();
+        int[] offsets = new int[size + 1];
+        int[] degrees = new int[size];
+        for(int node = 0; node < size; node++) {
+            int[] dependencies = dependencyIds.get(node);
+            degrees[node] = dependencies.length;
+            for(int dependency: dependencies) {
+                offsets[dependency + 1]++;
+            }
+        }
+        for(int node = 0; node < size; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+        int[] targets = new int[offsets[size]];
+        int[] next = Arrays.copyOf(offsets, size);
+        for(int node = 0; node < size; node++) {
+            for(int dependency: dependencyIds.get(node)) {
+                targets[next[dependency]++] = node;
+            }
+        }
+        edgeTargets = targets;
+        inDegree = degrees;
+        edgeOffsets = offsets;
     }
 
     public List<Script> topologicalSort() {
         log.info("Sorting scripts based on dependency ...");
-        List<Script> sortedScript = new ArrayList<>(inDegree.size());
-        while(!zeroInDegreeScripts.isEmpty()) {
-            Script currentScript = zeroInDegreeScripts.pop();
-            sortedScript.add(currentScript);
-            log.debug("{} script edges {} ", currentScript, dagGraph.get(currentScript));
-            if(dagGraph.get(currentScript) == null) {
+        return metrics.time(Metrics.DEPENDENCY_SORT, this::sortScripts);
+    }
+
+    private List<Script> sortScripts() {
+        build();
+        int[] remainingDegree = inDegree.clone();
+        int[] queue = new int[scripts.size()];
+        int sortedSize = sort(remainingDegree, queue);
+        validateSortedSize(sortedSize, remainingDegree);
+        List<Script> sortedScript = toScripts(queue, 0, sortedSize);
+        log.info("Sorted {} scripts.", sortedScript.size());
+        log.debug("Sorted scripts: {}", sortedScript);
+        return sortedScript;
+    }
+
+    /**
+     * Sorts the scripts with Kahn's algorithm, in insertion order among independent scripts.
+     * @param remainingDegree in-degree of each script, left above zero for the scripts that could not be sorted.
+     * @param queue receives the ids of the sorted scripts.
+     * @return number of sorted scripts.
+     */
+    private int sort(int[] remainingDegree, int[] queue) {
+        int tail = 0;
+        for(int node = 0; node < scripts.size(); node++) {
+            if(remainingDegree[node] == 0) {
+                queue[tail++] = node;
+            }
+        }
+        for(int head = 0; head < tail; head++) {
+            int node = queue[head];
+            for(int edge = edgeOffsets[node]; edge < edgeOffsets[node + 1]; edge++) {
+                if(--remainingDegree[edgeTargets[edge]] == 0) {
+                    queue[tail++] = edgeTargets[edge];
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Groups the scripts into deployment levels. Every script in a level only depends on scripts from earlier levels,
+     * so the scripts inside one level can be deployed at the same time.
+     */
+    public List<List<Script>> getLevels() {
+        log.info("Grouping scripts into levels based on dependency ...");
+        return metrics.time(Metrics.DEPENDENCY_SORT, this::groupLevels);
+    }
+
+    private List<List<Script>> groupLevels() {
+        build();
+        int size = scripts.size();
+        int[] remainingDegree = inDegree.clone();
+        int[] queue = new int[size];
+        int tail = 0;
+        for(int node = 0; node < size; node++) {
+            if(remainingDegree[node] == 0) {
+                queue[tail++] = node;
+            }
+        }
+        List<List<Script>> levels = new ArrayList<>();
+        int levelStart = 0;
+        while(levelStart < tail) {
+            int levelEnd = tail;
+            for(int head = levelStart; head < levelEnd; head++) {
+                int node = queue[head];
+                for(int edge = edgeOffsets[node]; edge < edgeOffsets[node + 1]; edge++) {
+                    if(--remainingDegree[edgeTargets[edge]] == 0) {
+                        queue[tail++] = edgeTargets[edge];
+                    }
+                }
+            }
+            levels.add(toScripts(queue, levelStart, levelEnd));
+            levelStart = levelEnd;
+        }
+        validateSortedSize(tail, remainingDegree);
+        log.info("Grouped {} scripts into {} levels.", tail, levels.size());
+        return levels;
+    }
+
+    /**
+     * Returns every script that directly or transitively depends on the given script.
+     */
+    public Set<Script> getDownstreamScripts(Script script) {
+        Set<Script> downstream = new LinkedHashSet<>();
+        Integer scriptId = scriptIds.get(script);
+        if(scriptId == null) {
+            return downstream;
+        }
+        build();
+        boolean[] visited = new boolean[scripts.size()];
+        int[] pending = new int[scripts.size()];
+        int top = 0;
+        visited[scriptId] = true;
+        pending[top++] = scriptId;
+        while(top > 0) {
+            int node = pending[--top];
+            for(int edge = edgeOffsets[node]; edge < edgeOffsets[node + 1]; edge++) {
+                int dependent = edgeTargets[edge];
+                if(!visited[dependent]) {
+                    visited[dependent] = true;
+                    pending[top++] = dependent;
+                    downstream.add(scripts.get(dependent));
+                }
+            }
+        }
+        return downstream;
+    }
+
+    /**
+     * Returns the changed scripts and every state script that directly or transitively depends on them, in the order
+     * they were added. Migration scripts that did not change are never deployed again, so the closure does not continue
+     * through them.
+     */
+    public Set<Script> getImpactClosure(Collection<? extends Script> changedScripts) {
+        build();
+        BitSet closure = new BitSet(scripts.size());
+        int[] pending = new int[scripts.size()];
+        int top = 0;
+        for(Script script: changedScripts) {
+            Integer scriptId = scriptIds.get(script);
+            if(scriptId != null && !closure.get(scriptId)) {
+                closure.set(scriptId);
+                pending[top++] = scriptId;
+            }
+        }
+        while(top > 0) {
+            int node = pending[--top];
+            for(int edge = edgeOffsets[node]; edge < edgeOffsets[node + 1]; edge++) {
+                int dependent = edgeTargets[edge];
+                if(!closure.get(dependent) && !(scripts.get(dependent) instanceof MigrationScript)) {
+                    closure.set(dependent);
+                    pending[top++] = dependent;
+                }
+            }
+        }
+        Set<Script> impactedScripts = new LinkedHashSet<>();
+        for(int node = closure.nextSetBit(0); node >= 0; node = closure.nextSetBit(node + 1)) {
+            impactedScripts.add(scripts.get(node));
+        }
+        return impactedScripts;
+    }
+
+    /**
+     * Removes all scripts except the given ones from the graph, keeping the dependencies between the remaining scripts.
+     */
+    public void retainNodes(Collection<? extends Script> retainedScripts) {
+        Set<Script> retained = new HashSet<>(retainedScripts);
+        int[] newIds = new int[scripts.size()];
+        List<Script> keptScripts = new ArrayList<>(retained.size());
+        for(int node = 0; node < scripts.size(); node++) {
+            newIds[node] = retained.contains(scripts.get(node)) ? keptScripts.size() : -1;
+            if(newIds[node] >= 0) {
+                keptScripts.add(scripts.get(node));
+            }
+        }
+        List<int[]> keptDependencyIds = new ArrayList<>(keptScripts.size());
+        for(int node = 0; node < scripts.size(); node++) {
+            if(newIds[node] < 0) {
+                continue;
+            }
+            int[] dependencies = dependencyIds.get(node);
+            int[] ids = new int[dependencies.length];
+            int count = 0;
+            for(int dependency: dependencies) {
+                if(newIds[dependency] >= 0) {
+                    ids[count++] = newIds[dependency];
+                }
+            }
+            keptDependencyIds.add(Arrays.copyOf(ids, count));
+        }
+        scripts.clear();
+        scripts.addAll(keptScripts);
+        scriptIds.clear();
+        for(int node = 0; node < scripts.size(); node++) {
+            scriptIds.put(scripts.get(node), node);
+        }
+        dependencyIds.clear();
+        dependencyIds.addAll(keptDependencyIds);
+        edgeOffsets = null;
+    }
+
+    private List<Script> toScripts(int[] ids, int from, int to) {
+        List<Script> result = new ArrayList<>(to - from);
+        for(int i = from; i < to; i++) {
+            result.add(scripts.get(ids[i]));
+        }
+        return result;
+    }
+
+    private void validateSortedSize(int sortedSize, int[] remainingDegree) {
+        if(scripts.size() != sortedSize) {
+            log.error("DAG graph Error, input script size({}) is different than sequenced script size({})", scripts.size(), sortedSize);
+            List<List<Script>> cycles = findCycles(remainingDegree);
+            for(List<Script> cycle: cycles) {
+                log.error("Cyclic dependency: {}", CyclicDependencyException.toPath(cycle));
+            }
+            throw new CyclicDependencyException(cycles);
+        }
+    }
+
+    /**
+     * Finds the dependency cycles of the graph.
+     * @return one cycle for every strongly connected component, each as an ordered path where every script depends on
+     * the next one and the last script depends on the first one.
+     */
+    public List<List<Script>> findCycles() {
+        build();
+        int[] remainingDegree = inDegree.clone();
+        sort(remainingDegree, new int[scripts.size()]);
+        return findCycles(remainingDegree);
+    }
+
+    /**
+     * Runs an iterative Tarjan strongly connected components search over the scripts left unsorted by a topological
+     * sort, the ones with a remaining in-degree, and extracts one cycle of every component.
+     */
+    private List<List<Script>> findCycles(int[] remainingDegree) {
+        int size = scripts.size();
+        int[] index = new int[size];
+        int[] low = new int[size];
+        int[] edgePosition = new int[size];
+        int[] callStack = new int[size];
+        int[] componentStack = new int[size];
+        boolean[] onStack = new boolean[size];
+        int[] component = new int[size];
+        Arrays.fill(index, -1);
+        Arrays.fill(component, -1);
+        int counter = 0;
+        int componentTop = 0;
+        int componentCount = 0;
+        List<Integer> cycleStarts = new ArrayList<>();
+        for(int root = 0; root < size; root++) {
+            if(remainingDegree[root] == 0 || index[root] >= 0) {
                 continue;
             }
-            for(Script edge: dagGraph.get(currentScript)) {
-                int before = inDegree.get(edge);
-                inDegree.put(edge, inDegree.get(edge) - 1);
-                if (inDegree.get(edge) == 0) {
-                    zeroInDegreeScripts.push(edge);
+            int callTop = 0;
+            callStack[0] = root;
+            index[root] = low[root] = counter++;
+            edgePosition[root] = edgeOffsets[root];
+            componentStack[componentTop++] = root;
+            onStack[root] = true;
+            while(callTop >= 0) {
+                int node = callStack[callTop];
+                if(edgePosition[node] < edgeOffsets[node + 1]) {
+                    int dependent = edgeTargets[edgePosition[node]++];
+                    if(remainingDegree[dependent] == 0) {
+                        continue;
+                    }
+                    if(index[dependent] < 0) {
+                        index[dependent] = low[dependent] = counter++;
+                        edgePosition[dependent] = edgeOffsets[dependent];
+                        componentStack[componentTop++] = dependent;
+                        onStack[dependent] = true;
+                        callStack[++callTop] = dependent;
+                    }
+                    else if(onStack[dependent]) {
+                        low[node] = Math.min(low[node], index[dependent]);
+                    }
+                    continue;
+                }
+                if(low[node] == index[node]) {
+                    int start = node;
+                    int componentSize = 0;
+                    int member;
+                    do {
+                        member = componentStack[--componentTop];
+                        onStack[member] = false;
+                        component[member] = componentCount;
+                        start = Math.min(start, member);
+                        componentSize++;
+                    } while(member != node);
+                    if(componentSize > 1 || hasDependency(node, node)) {
+                        cycleStarts.add(start);
+                    }
+                    componentCount++;
+                }
+                callTop--;
+                if(callTop >= 0) {
+                    int caller = callStack[callTop];
+                    low[caller] = Math.min(low[caller], low[node]);
                 }
             }
         }
-        if(inDegree.size() != sortedScript.size()) {
-            log.error("DAG graph Error, input script size({}) is different than sequenced script size({})", inDegree.size(), sortedScript.size());
-            for(Script script: inDegree.keySet()) {
-                if(!sortedScript.contains(script)) {
-                    log.warn("Dependencies for {} are: {}", script, dependencyExtractor.extractScriptDependencies(script));
+        Collections.sort(cycleStarts);
+        List<List<Script>> cycles = new ArrayList<>(cycleStarts.size());
+        int[] parent = new int[size];
+        Arrays.fill(parent, -1);
+        for(int start: cycleStarts) {
+            cycles.add(extractCycle(start, component, parent, callStack));
+        }
+        return cycles;
+    }
+
+    private boolean hasDependency(int node, int dependency) {
+        for(int id: dependencyIds.get(node)) {
+            if(id == dependency) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the shortest cycle through the start script with a breadth first search over the dependencies of the
+     * scripts in the same component.
+     */
+    private List<Script> extractCycle(int start, int[] component, int[] parent, int[] queue) {
+        int tail = 0;
+        queue[tail++] = start;
+        int last = -1;
+        for(int head = 0; head < tail && last < 0; head++) {
+            int node = queue[head];
+            for(int dependency: dependencyIds.get(node)) {
+                if(dependency == start) {
+                    last = node;
+                    break;
+                }
+                if(component[dependency] == component[start] && parent[dependency] < 0 && dependency != start) {
+                    parent[dependency] = node;
+                    queue[tail++] = dependency;
                 }
             }
-            throw new RuntimeException("Sorting Error, Cyclic dependency detected. sorted script size is missing some scripts.");
         }
-        log.info("Sorted scripts: {}", sortedScript);
-        return sortedScript;
+        LinkedList<Script> cycle = new LinkedList<>();
+        for(int node = last; node != start; node = parent[node]) {
+            cycle.addFirst(scripts.get(node));
+        }
+        cycle.addFirst(scripts.get(start));
+        for(int i = 0; i < tail; i++) {
+            parent[queue[i]] = -1;
+        }
+        return new ArrayList<>(cycle);
     }
 
     public void printDependencyGraph() {
-        for(Script node: dagGraph.keySet()) {
-            System.out.println("Script: " + node.getFullObjectName() + " depends on -> " + dagGraph.get(node).stream().map(s -> s.getFullObjectName()).collect(Collectors.toList()));
+        build();
+        for(int node = 0; node < scripts.size(); node++) {
+            if(edgeOffsets[node] == edgeOffsets[node + 1]) {
+                continue;
+            }
+            System.out.println("Script: " + scripts.get(node).getFullObjectName() + " depends on -> " + toScripts(edgeTargets, edgeOffsets[node], edgeOffsets[node + 1]).stream().map(s -> s.getFullObjectName()).collect(Collectors.toList()));
         }
     }
 
     public List<ScriptDependency> getDependencyList() {
+        build();
         Set<ScriptDependency> dependencyList = new HashSet<>();
-        for(Script dependency: dagGraph.keySet()) {
-            for(Script node: dagGraph.get(dependency)) {
+        for(int dependencyId = 0; dependencyId < scripts.size(); dependencyId++) {
+            Script dependency = scripts.get(dependencyId);
+            for(int edge = edgeOffsets[dependencyId]; edge < edgeOffsets[dependencyId + 1]; edge++) {
+                Script node = scripts.get(edgeTargets[edge]);
                 //Remove self dependency for migration scripts
                 if(node.getFullObjectName().equals(dependency.getFullObjectName())) {
                     continue;
                 }
-                ScriptDependency scriptDependency = new ScriptDependency(node, dependency);
-                dependencyList.add(scriptDependency);
+                dependencyList.add(new ScriptDependency(node, dependency));
             }
         }
         return new ArrayList<>(dependencyList);
     }
 
     public Map<Script, Set<Script>> getDagGraph() {
+        build();
+        Map<Script, Set<Script>> dagGraph = new LinkedHashMap<>();
+        for(int node = 0; node < scripts.size(); node++) {
+            if(edgeOffsets[node] < edgeOffsets[node + 1]) {
+                dagGraph.put(scripts.get(node), new LinkedHashSet<>(toScripts(edgeTargets, edgeOffsets[node], edgeOffsets[node + 1])));
+            }
+        }
         return dagGraph;
     }
 
@@ -111,12 +529,18 @@ public class DependencyGraph {
                 .filter(dependencyOverride -> dependencyOverride.getScript().equals(script.getFullObjectName()))
                 .flatMap(dependencyOverride -> dependencyOverride.getDependencies().stream())
                 .map(dependencyName -> findScriptByName(nodes, dependencyName))
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
 
         return scriptsDependencyOverrides;
     }
 
     private Script findScriptByName(List<? extends Script> allScripts, String fullObjectName) {
-        return allScripts.parallelStream().filter(script -> script.getFullObjectName().equals(fullObjectName)).findFirst().get();
+        Optional<? extends Script> dependency = allScripts.stream().filter(script -> script.getFullObjectName().equals(fullObjectName)).findFirst();
+        if(dependency.isEmpty()) {
+            log.warn("Dependency override {} is not found in the deployed scripts, ignoring it.", fullObjectName);
+            return null;
+        }
+        return dependency.get();
     }
 }
@@ -0,0 +1,156 @@
+package com.snowflake.dlsync.doa;
+
+import lombok.extern.slf4j.Slf4j;
+import net.snowflake.client.jdbc.QueryStatusV2;
+import net.snowflake.client.jdbc.SnowflakeResultSet;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Tracks queries submitted with the snowflake async query api. Submitted queries keep running in snowflake on their own,
+ * so a single thread can keep many of them in flight and poll their status by query id. Polling backs off exponentially
+ * while no query finishes, up to a few seconds between polls.
+ * @param <T> item each query is submitted for.
+ */
+@Slf4j
+public class AsyncQueryTracker<T> {
+    private static final long MIN_POLL_MILLIS = 50;
+    private static final long MAX_POLL_MILLIS = 5000;
+
+    private final Map<T, ResultSet> pending = new LinkedHashMap<>();
+    private final Map<T, String> queryIds = new HashMap<>();
+    private final long minPollMillis;
+    private final long maxPollMillis;
+
+    public AsyncQueryTracker() {
+        this(MIN_POLL_MILLIS, MAX_POLL_MILLIS);
+    }
+
+    AsyncQueryTracker(long minPollMillis, long maxPollMillis) {
+        this.minPollMillis = minPollMillis;
+        this.maxPollMillis = maxPollMillis;
+    }
+
+    /**
+     * @param asyncResult result set returned by the async submission of the query.
+     * @return query id of the submitted query.
+     */
+    public String track(T item, ResultSet asyncResult) throws SQLException {
+        String queryId = asyncResult.unwrap(SnowflakeResultSet.class).getQueryID();
+        pending.put(item, asyncResult);
+        queryIds.put(item, queryId);
+        log.debug("Tracking async query {} for {}", queryId, item);
+        return queryId;
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Waits until at least one of the tracked queries is finished.
+     * @return the finished queries, in the order they were tracked. Finished queries are no longer tracked.
+     */
+    public List<Completion<T>> awaitAny() throws SQLException {
+        long pollMillis = minPollMillis;
+        while(!pending.isEmpty()) {
+            List<Completion<T>> completions = poll();
+            if(!completions.isEmpty()) {
+                return completions;
+            }
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for async queries.", e);
+            }
+            pollMillis = Math.min(pollMillis * 2, maxPollMillis);
+        }
+        return new ArrayList<>();
+    }
+
+    private List<Completion<T>> poll() throws SQLException {
+        List<Completion<T>> completions = new ArrayList<>();
+        Iterator<Map.Entry<T, ResultSet>> iterator = pending.entrySet().iterator();
+        while(iterator.hasNext()) {
+            Map.Entry<T, ResultSet> entry = iterator.next();
+            QueryStatusV2 status = entry.getValue().unwrap(SnowflakeResultSet.class).getStatusV2();
+            if(status.isEmpty() || status.isStillRunning()) {
+                continue;
+            }
+            String errorMessage = status.isSuccess() ? null : getErrorMessage(status);
+            completions.add(new Completion<>(entry.getKey(), queryIds.remove(entry.getKey()), errorMessage));
+            iterator.remove();
+            close(entry.getValue());
+        }
+        return completions;
+    }
+
+    private static String getErrorMessage(QueryStatusV2 status) {
+        String errorMessage = status.getErrorMessage();
+        if(errorMessage == null || errorMessage.isBlank()) {
+            return "Query finished with status " + status.getName();
+        }
+        return errorMessage;
+    }
+
+    /**
+     * Cancels waiting for the tracked queries. The queries themselves keep running in snowflake.
+     */
+    public void clear() {
+        pending.values().forEach(AsyncQueryTracker::close);
+        pending.clear();
+        queryIds.clear();
+    }
+
+    private static void close(ResultSet resultSet) {
+        try {
+            if(resultSet.getStatement() != null) {
+                resultSet.getStatement().close();
+            }
+            resultSet.close();
+        } catch (SQLException e) {
+            log.debug("Error while closing async query result: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * A finished query.
+     */
+    public static class Completion<T> {
+        private final T item;
+        private final String queryId;
+        private final String errorMessage;
+
+        private Completion(T item, String queryId, String errorMessage) {
+            this.item = item;
+            this.queryId = queryId;
+            this.errorMessage = errorMessage;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public String getQueryId() {
+            return queryId;
+        }
+
+        /**
+         * @return error of the query, or null if the query succeeded.
+         */
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        public boolean isSuccess() {
+            return errorMessage == null;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.snowflake.dlsync.doa;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.UnaryOperator;
+
+/**
+ * Writes the rows of a config table as migration scripts while they are read. Every migration inserts up to a fixed
+ * number of rows with a single multi-row INSERT, so only one chunk of rows is held in memory and every statement stays
+ * small enough to be deployed.
+ */
+@Slf4j
+public class ConfigTableExporter {
+    public static final int DEFAULT_CHUNK_ROWS = 1000;
+    public static final int DEFAULT_CHUNK_CHARS = 512 * 1024;
+    private static final String AUTHOR = "DlSync";
+
+    private final String fullObjectName;
+    private final Writer writer;
+    private final UnaryOperator<String> chunkMapper;
+    private final int chunkRows;
+    private final int chunkChars;
+    private final StringBuilder chunk = new StringBuilder();
+
+    /**
+     * @param chunkMapper applied to each migration before it is written, e.g. to parametrize it.
+     */
+    public ConfigTableExporter(String fullObjectName, Writer writer, UnaryOperator<String> chunkMapper) {
+        this(fullObjectName, writer, chunkMapper, DEFAULT_CHUNK_ROWS, DEFAULT_CHUNK_CHARS);
+    }
+
+    public ConfigTableExporter(String fullObjectName, Writer writer, UnaryOperator<String> chunkMapper, int chunkRows, int chunkChars) {
+        this.fullObjectName = fullObjectName;
+        this.writer = writer;
+        this.chunkMapper = chunkMapper;
+        this.chunkRows = chunkRows;
+        this.chunkChars = chunkChars;
+    }
+
+    /**
+     * Writes all rows of the result set as migrations with versions starting from 1. Only the first migration rolls back
+     * by deleting all rows of the table. Nothing is written for an empty table.
+     * @return number of rows written.
+     */
+    public long export(ResultSet resultSet) throws SQLException, IOException {
+        int columnCount = resultSet.getMetaData().getColumnCount();
+        long rowCount = 0;
+        long version = 1;
+        int rowsInChunk = 0;
+        while(resultSet.next()) {
+            if(rowsInChunk == 0) {
+                startChunk(version);
+            }
+            else {
+                chunk.append(",\n");
+            }
+            appendRow(resultSet, columnCount);
+            rowCount++;
+            if(++rowsInChunk == chunkRows || chunk.length() >= chunkChars) {
+                writeChunk(version++);
+                rowsInChunk = 0;
+            }
+        }
+        if(rowsInChunk > 0) {
+            writeChunk(version++);
+        }
+        writer.flush();
+        log.info("Exported {} rows of {} as {} migrations.", rowCount, fullObjectName, version - 1);
+        return rowCount;
+    }
+
+    private void startChunk(long version) {
+        chunk.setLength(0);
+        chunk.append("\n\n---version: ").append(version).append(", author: ").append(AUTHOR).append('\n');
+        chunk.append("INSERT INTO ").append(fullObjectName).append(" VALUES\n");
+    }
+
+    private void appendRow(ResultSet resultSet, int columnCount) throws SQLException {
+        chunk.append('(');
+        for(int i = 1; i <= columnCount; i++) {
+            if(i > 1) {
+                chunk.append(", ");
+            }
+            Object value = resultSet.getObject(i);
+            if(value == null) {
+                chunk.append("null");
+                continue;
+            }
+            String text = value.toString();
+            chunk.append('\'');
+            for(int j = 0; j < text.length(); j++) {
+                char ch = text.charAt(j);
+                if(ch == '\'') {
+                    chunk.append('\'');
+                }
+                chunk.append(ch);
+            }
+            chunk.append('\'');
+        }
+        chunk.append(')');
+    }
+
+    private void writeChunk(long version) throws IOException {
+        chunk.append(';');
+        if(version == 1) {
+            chunk.append("\n---rollback: DELETE FROM ").append(fullObjectName).append(';');
+        }
+        chunk.append("\n---verify: SELECT COUNT(*) FROM ").append(fullObjectName).append(';');
+        writer.write(chunkMapper.apply(chunk.toString()));
+        chunk.setLength(0);
+    }
+}
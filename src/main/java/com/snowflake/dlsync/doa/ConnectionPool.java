@@ -0,0 +1,158 @@
+package com.snowflake.dlsync.doa;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Fixed size pool of snowflake sessions. Sessions are opened and initialized up front and are checked for health
+ * before they are handed out again after being idle for a while.
+ */
+@Slf4j
+public class ConnectionPool implements AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 10;
+    private static final long VALIDATION_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final String[][] SESSION_CONTEXT = {{"role", "ROLE"}, {"warehouse", "WAREHOUSE"}, {"db", "DATABASE"}, {"schema", "SCHEMA"}};
+
+    private final String jdbcUrl;
+    private final Properties connectionProperties;
+    private final int size;
+    private final BlockingQueue<Connection> idleConnections;
+    private final Map<Connection, Long> lastUsed = new ConcurrentHashMap<>();
+    private final Set<Connection> allConnections = ConcurrentHashMap.newKeySet();
+
+    public ConnectionPool(String jdbcUrl, Properties connectionProperties, int size) {
+        this.jdbcUrl = jdbcUrl;
+        this.connectionProperties = connectionProperties;
+        this.size = Math.max(size, 1);
+        this.idleConnections = new LinkedBlockingQueue<>(this.size);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Opens all sessions of the pool at the same time and sets their role, warehouse, database and schema.
+     */
+    public void warmUp() throws SQLException {
+        warmUp(size);
+    }
+
+    /**
+     * Opens the given number of sessions up front, the remaining sessions of the pool are opened when acquired.
+     */
+    public void warmUp(int count) throws SQLException {
+        count = Math.max(1, Math.min(count, size));
+        log.info("Opening {} of {} connections to snowflake.", count, size);
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        try {
+            List<Future<Connection>> openedConnections = new ArrayList<>();
+            for(int i = 0; i < count; i++) {
+                openedConnections.add(executor.submit(this::openConnection));
+            }
+            for(Future<Connection> openedConnection: openedConnections) {
+                release(openedConnection.get());
+            }
+        } catch (ExecutionException e) {
+            close();
+            if(e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while opening connections.", e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Takes a session out of the pool, waiting until one is released if all of them are in use.
+     */
+    public Connection acquire() throws SQLException {
+        try {
+            Connection connection = idleConnections.poll();
+            if(connection == null && allConnections.size() < size) {
+                synchronized (this) {
+                    if(allConnections.size() < size) {
+                        return openConnection();
+                    }
+                }
+            }
+            if(connection == null) {
+                log.debug("All {} connections are in use, waiting for a free connection.", size);
+                connection = idleConnections.take();
+            }
+            return ensureHealthy(connection);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection.", e);
+        }
+    }
+
+    public void release(Connection connection) {
+        if(connection == null) {
+            return;
+        }
+        lastUsed.put(connection, System.currentTimeMillis());
+        if(!idleConnections.offer(connection)) {
+            log.warn("Connection pool is full, closing released connection.");
+            discard(connection);
+        }
+    }
+
+    private Connection ensureHealthy(Connection connection) throws SQLException {
+        long idleMillis = System.currentTimeMillis() - lastUsed.getOrDefault(connection, 0L);
+        boolean healthy = !connection.isClosed() && (idleMillis < VALIDATION_IDLE_MILLIS || connection.isValid(VALIDATION_TIMEOUT_SECONDS));
+        if(healthy) {
+            return connection;
+        }
+        log.warn("Replacing unhealthy connection after being idle for {} seconds.", idleMillis / 1000);
+        discard(connection);
+        return openConnection();
+    }
+
+    private Connection openConnection() throws SQLException {
+        log.debug("Connection opened with properties: {}", connectionProperties);
+        Connection connection = DriverManager.getConnection(jdbcUrl, connectionProperties);
+        allConnections.add(connection);
+        try (Statement statement = connection.createStatement()) {
+            for(String[] context: SESSION_CONTEXT) {
+                String value = connectionProperties.getProperty(context[0]);
+                if(value != null && !value.isBlank()) {
+                    statement.execute(String.format("USE %s %s;", context[1], value));
+                }
+            }
+        } catch (SQLException e) {
+            discard(connection);
+            throw e;
+        }
+        return connection;
+    }
+
+    private void discard(Connection connection) {
+        allConnections.remove(connection);
+        lastUsed.remove(connection);
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("Error while closing connection: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        idleConnections.clear();
+        for(Connection connection: new ArrayList<>(allConnections)) {
+            discard(connection);
+        }
+    }
+}
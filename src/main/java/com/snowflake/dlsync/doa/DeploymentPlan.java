@@ -0,0 +1,207 @@
+package com.snowflake.dlsync.doa;
+
+import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.models.MigrationScript;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Precomputed deployment: the scripts to deploy with their parameters already injected, grouped into dependency levels,
+ * together with the dependencies between them and the watermark of the script history the plan was computed against.
+ * The plan is stored as a compressed binary file, so it can be created in one job and applied in another one without
+ * reading or parsing the script files again.
+ */
+@Slf4j
+public class DeploymentPlan {
+    private static final int MAGIC = 0x444C5350;
+    private static final int FORMAT_VERSION = 1;
+    private static final byte STATE_SCRIPT = 'S';
+    private static final byte MIGRATION_SCRIPT = 'M';
+
+    private final String historyWatermark;
+    private final long createdAt;
+    private final List<List<Script>> levels;
+    private final Map<String, String> deployedHashes;
+    private final List<Script> scripts = new ArrayList<>();
+    private final List<int[]> dependencies = new ArrayList<>();
+
+    /**
+     * @param levels scripts to deploy grouped by dependency level, with their parameters injected.
+     * @param dependencies dependencies of each script, all of them in earlier levels.
+     * @param deployedHashes hashes from the script history of the scripts that were deployed before, by script id.
+     */
+    public DeploymentPlan(String historyWatermark, long createdAt, List<List<Script>> levels, Map<Script, List<Script>> dependencies, Map<String, String> deployedHashes) {
+        this.historyWatermark = historyWatermark;
+        this.createdAt = createdAt;
+        this.levels = levels;
+        this.deployedHashes = deployedHashes;
+        Map<Script, Integer> indexes = new HashMap<>();
+        for(List<Script> level: levels) {
+            for(Script script: level) {
+                indexes.put(script, scripts.size());
+                scripts.add(script);
+            }
+        }
+        for(Script script: scripts) {
+            List<Script> scriptDependencies = dependencies.getOrDefault(script, Collections.emptyList());
+            int[] ids = new int[scriptDependencies.size()];
+            for(int i = 0; i < ids.length; i++) {
+                ids[i] = indexes.get(scriptDependencies.get(i));
+            }
+            this.dependencies.add(ids);
+        }
+    }
+
+    private DeploymentPlan(String historyWatermark, long createdAt, List<Script> scripts, int[] scriptLevels, List<int[]> dependencies, Map<String, String> deployedHashes) {
+        this.historyWatermark = historyWatermark;
+        this.createdAt = createdAt;
+        this.deployedHashes = deployedHashes;
+        this.scripts.addAll(scripts);
+        this.dependencies.addAll(dependencies);
+        this.levels = new ArrayList<>();
+        for(int i = 0; i < scripts.size(); i++) {
+            while(levels.size() <= scriptLevels[i]) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(scriptLevels[i]).add(scripts.get(i));
+        }
+    }
+
+    public String getHistoryWatermark() {
+        return historyWatermark;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public List<List<Script>> getLevels() {
+        return levels;
+    }
+
+    /**
+     * @return all scripts of the plan in deployment order.
+     */
+    public List<Script> getScripts() {
+        return scripts;
+    }
+
+    /**
+     * @return for each script of {@link #getScripts()}, the indexes of the scripts it depends on.
+     */
+    public List<int[]> getDependencies() {
+        return dependencies;
+    }
+
+    public Map<String, String> getDeployedHashes() {
+        return deployedHashes;
+    }
+
+    public void write(Path planFile) throws IOException {
+        Path parent = planFile.toAbsolutePath().getParent();
+        if(parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(planFile))))) {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(createdAt);
+            ScriptCache.writeString(output, historyWatermark);
+            output.writeInt(scripts.size());
+            int index = 0;
+            for(int level = 0; level < levels.size(); level++) {
+                for(Script script: levels.get(level)) {
+                    writeScript(output, script);
+                    ScriptCache.writeString(output, deployedHashes.get(script.getId()));
+                    output.writeInt(level);
+                    int[] scriptDependencies = dependencies.get(index++);
+                    output.writeInt(scriptDependencies.length);
+                    for(int dependency: scriptDependencies) {
+                        output.writeInt(dependency);
+                    }
+                }
+            }
+        }
+        log.info("Deployment plan with {} scripts in {} levels written to {}", scripts.size(), levels.size(), planFile);
+    }
+
+    public static DeploymentPlan read(Path planFile) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(planFile))))) {
+            if(input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported deployment plan file " + planFile);
+            }
+            long createdAt = input.readLong();
+            String historyWatermark = ScriptCache.readString(input);
+            int size = input.readInt();
+            List<Script> scripts = new ArrayList<>(size);
+            int[] levels = new int[size];
+            List<int[]> dependencies = new ArrayList<>(size);
+            Map<String, String> deployedHashes = new HashMap<>();
+            for(int i = 0; i < size; i++) {
+                Script script = readScript(input);
+                String deployedHash = ScriptCache.readString(input);
+                if(deployedHash != null) {
+                    deployedHashes.put(script.getId(), deployedHash);
+                }
+                scripts.add(script);
+                levels[i] = input.readInt();
+                int[] scriptDependencies = new int[input.readInt()];
+                for(int j = 0; j < scriptDependencies.length; j++) {
+                    scriptDependencies[j] = input.readInt();
+                }
+                dependencies.add(scriptDependencies);
+            }
+            log.info("Read deployment plan with {} scripts from {}", size, planFile);
+            return new DeploymentPlan(historyWatermark, createdAt, scripts, levels, dependencies, deployedHashes);
+        }
+    }
+
+    private static void writeScript(DataOutputStream output, Script script) throws IOException {
+        boolean migration = script instanceof MigrationScript;
+        output.writeByte(migration ? MIGRATION_SCRIPT : STATE_SCRIPT);
+        ScriptCache.writeString(output, script.getDatabaseName());
+        ScriptCache.writeString(output, script.getSchemaName());
+        ScriptCache.writeString(output, script.getObjectName());
+        ScriptCache.writeString(output, script.getObjectType().name());
+        ScriptCache.writeString(output, script.getContent());
+        ScriptCache.writeString(output, script.getHash());
+        if(migration) {
+            MigrationScript migrationScript = (MigrationScript) script;
+            output.writeLong(migrationScript.getVersion());
+            ScriptCache.writeString(output, migrationScript.getAuthor());
+            ScriptCache.writeString(output, migrationScript.getRollback());
+            ScriptCache.writeString(output, migrationScript.getVerify());
+        }
+    }
+
+    private static Script readScript(DataInputStream input) throws IOException {
+        byte kind = input.readByte();
+        String databaseName = ScriptCache.readString(input);
+        String schemaName = ScriptCache.readString(input);
+        String objectName = ScriptCache.readString(input);
+        ScriptObjectType objectType = ScriptObjectType.valueOf(ScriptCache.readString(input));
+        String content = ScriptCache.readString(input);
+        String hash = ScriptCache.readString(input);
+        Script script;
+        if(kind == MIGRATION_SCRIPT) {
+            long version = input.readLong();
+            String author = ScriptCache.readString(input);
+            String rollback = ScriptCache.readString(input);
+            String verify = ScriptCache.readString(input);
+            script = ScriptFactory.getMigrationScript(databaseName, schemaName, objectType, objectName, content, version, author, rollback, verify);
+        }
+        else {
+            script = ScriptFactory.getStateScript(databaseName, schemaName, objectType, objectName, content);
+        }
+        script.setHash(hash);
+        return script;
+    }
+}
@@ -0,0 +1,139 @@
+package com.snowflake.dlsync.doa;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Local copy of the script and deployed hashes of the script history, with the latest UPDATED_TS it has seen as
+ * watermark. The snapshot is refreshed by reading only the history rows updated since the watermark. Removed rows are
+ * detected with the HASH_AGG of all SCRIPT_IDs the history had when the snapshot was saved. It is stored in a compact
+ * binary file next to the script cache, one file per database and schema of the history.
+ */
+@Slf4j
+public class HistorySnapshot {
+    private static final int MAGIC = 0x444C5348;
+    private static final int FORMAT_VERSION = 2;
+
+    private final Path snapshotFile;
+    private final Map<String, String[]> hashes = new HashMap<>();
+    private String watermark;
+    private String scriptIdHash;
+
+    public HistorySnapshot(Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+        load();
+    }
+
+    /**
+     * @return the latest UPDATED_TS of the history rows in the snapshot, or null if the snapshot is empty.
+     */
+    public String getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * @return HASH_AGG of the SCRIPT_IDs of the history when the snapshot was last refreshed, or null if unknown.
+     */
+    public String getScriptIdHash() {
+        return scriptIdHash;
+    }
+
+    public void setScriptIdHash(String scriptIdHash) {
+        this.scriptIdHash = scriptIdHash;
+    }
+
+    public int size() {
+        return hashes.size();
+    }
+
+    public boolean contains(String scriptId) {
+        return hashes.containsKey(scriptId);
+    }
+
+    /**
+     * Adds or replaces a history row.
+     * @param updatedTs UPDATED_TS of the row, formatted so that later timestamps compare greater.
+     */
+    public void put(String scriptId, String scriptHash, String deployedHash, String updatedTs) {
+        hashes.put(scriptId, new String[]{scriptHash, deployedHash});
+        if(updatedTs != null && (watermark == null || updatedTs.compareTo(watermark) > 0)) {
+            watermark = updatedTs;
+        }
+    }
+
+    public void clear() {
+        hashes.clear();
+        watermark = null;
+        scriptIdHash = null;
+    }
+
+    public Map<String, String> getScriptHashes() {
+        return getHashes(0);
+    }
+
+    public Map<String, String> getDeployedHashes() {
+        return getHashes(1);
+    }
+
+    private Map<String, String> getHashes(int column) {
+        Map<String, String> result = new HashMap<>(hashes.size() * 2);
+        for(Map.Entry<String, String[]> entry: hashes.entrySet()) {
+            result.put(entry.getKey(), entry.getValue()[column]);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the snapshot to disk. Failing to write the snapshot only logs a warning.
+     */
+    public void save() {
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            Path tempFile = Files.createTempFile(snapshotFile.getParent(), snapshotFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                ScriptCache.writeString(output, watermark);
+                ScriptCache.writeString(output, scriptIdHash);
+                output.writeInt(hashes.size());
+                for(Map.Entry<String, String[]> entry: hashes.entrySet()) {
+                    ScriptCache.writeString(output, entry.getKey());
+                    ScriptCache.writeString(output, entry.getValue()[0]);
+                    ScriptCache.writeString(output, entry.getValue()[1]);
+                }
+            }
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Saved script history snapshot with {} rows to {}", hashes.size(), snapshotFile);
+        } catch (IOException e) {
+            log.warn("Error while saving script history snapshot {}: {}", snapshotFile, e.getMessage());
+        }
+    }
+
+    private void load() {
+        if(!Files.exists(snapshotFile)) {
+            return;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if(input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                log.info("Ignoring script history snapshot {} written by another version.", snapshotFile);
+                return;
+            }
+            watermark = ScriptCache.readString(input);
+            scriptIdHash = ScriptCache.readString(input);
+            int size = input.readInt();
+            for(int i = 0; i < size; i++) {
+                String scriptId = ScriptCache.readString(input);
+                hashes.put(scriptId, new String[]{ScriptCache.readString(input), ScriptCache.readString(input)});
+            }
+            log.debug("Loaded script history snapshot with {} rows from {}", hashes.size(), snapshotFile);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring corrupted script history snapshot {}: {}", snapshotFile, e.getMessage());
+            clear();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.snowflake.dlsync.doa;
+
+import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.models.MigrationScript;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local cache of parsed script files. Each file is stored with the md5 hash of its content, the scripts parsed from it
+ * and the identifiers referenced by each script. A file whose content hash is unchanged is not parsed again.
+ * The cache is kept in a compact binary file under the script root.
+ */
+@Slf4j
+public class ScriptCache {
+    public static final String CACHE_DIRECTORY = ".dlsync-cache";
+    private static final String CACHE_FILE = "scripts.bin";
+    private static final int MAGIC = 0x444C5343;
+    private static final int FORMAT_VERSION = 1;
+    private static final byte STATE_SCRIPT = 'S';
+    private static final byte MIGRATION_SCRIPT = 'M';
+
+    private final Path cacheFile;
+    private final Map<String, CacheEntry> entries = new ConcurrentHashMap<>();
+    private volatile boolean changed = false;
+
+    public ScriptCache(String scriptRoot) {
+        this.cacheFile = Path.of(scriptRoot, CACHE_DIRECTORY, CACHE_FILE);
+        load();
+    }
+
+    /**
+     * @return the scripts parsed from the file, or null if the file is not cached with the same content hash.
+     */
+    public Set<Script> get(String path, String md5) {
+        CacheEntry entry = entries.get(path);
+        if(entry == null || !entry.md5.equals(md5)) {
+            return null;
+        }
+        Set<Script> scripts = new HashSet<>();
+        for(CachedScript cachedScript: entry.scripts) {
+            scripts.add(cachedScript.toScript(path));
+        }
+        return scripts;
+    }
+
+    public void put(String path, String md5, Set<Script> scripts) {
+        List<CachedScript> cachedScripts = new ArrayList<>(scripts.size());
+        for(Script script: scripts) {
+            cachedScripts.add(new CachedScript(script));
+        }
+        entries.put(path, new CacheEntry(md5, cachedScripts));
+        changed = true;
+    }
+
+    /**
+     * Writes the cache to disk, dropping the files that are no longer in the script tree.
+     * Failing to write the cache only logs a warning.
+     * @param currentPaths paths of all script files currently in the script tree.
+     */
+    public void save(Set<String> currentPaths) {
+        if(entries.keySet().retainAll(currentPaths)) {
+            changed = true;
+        }
+        if(!changed) {
+            return;
+        }
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            Path tempFile = Files.createTempFile(cacheFile.getParent(), CACHE_FILE, ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                write(output);
+            }
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            changed = false;
+            log.debug("Saved script cache with {} files to {}", entries.size(), cacheFile);
+        } catch (IOException e) {
+            log.warn("Error while saving script cache {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    private void load() {
+        if(!Files.exists(cacheFile)) {
+            return;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if(input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                log.info("Ignoring script cache {} written by another version.", cacheFile);
+                return;
+            }
+            int size = input.readInt();
+            for(int i = 0; i < size; i++) {
+                String path = readString(input);
+                String md5 = readString(input);
+                int scriptCount = input.readInt();
+                List<CachedScript> scripts = new ArrayList<>(scriptCount);
+                for(int j = 0; j < scriptCount; j++) {
+                    scripts.add(readScript(input));
+                }
+                entries.put(path, new CacheEntry(md5, scripts));
+            }
+            log.debug("Loaded script cache with {} files from {}", entries.size(), cacheFile);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring corrupted script cache {}: {}", cacheFile, e.getMessage());
+            entries.clear();
+        }
+    }
+
+    private void write(DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+        output.writeInt(entries.size());
+        for(Map.Entry<String, CacheEntry> entry: new TreeMap<>(entries).entrySet()) {
+            writeString(output, entry.getKey());
+            writeString(output, entry.getValue().md5);
+            output.writeInt(entry.getValue().scripts.size());
+            for(CachedScript script: entry.getValue().scripts) {
+                writeScript(output, script);
+            }
+        }
+    }
+
+    private void writeScript(DataOutputStream output, CachedScript script) throws IOException {
+        output.writeByte(script.version != null ? MIGRATION_SCRIPT : STATE_SCRIPT);
+        writeString(output, script.databaseName);
+        writeString(output, script.schemaName);
+        writeString(output, script.objectName);
+        writeString(output, script.objectType.name());
+        writeString(output, script.content);
+        if(script.version != null) {
+            output.writeLong(script.version);
+            writeString(output, script.author);
+            writeString(output, script.rollback);
+            writeString(output, script.verify);
+        }
+        output.writeInt(script.referencedIdentifiers == null ? -1 : script.referencedIdentifiers.size());
+        if(script.referencedIdentifiers != null) {
+            for(String identifier: script.referencedIdentifiers) {
+                writeString(output, identifier);
+            }
+        }
+    }
+
+    private CachedScript readScript(DataInputStream input) throws IOException {
+        CachedScript script = new CachedScript();
+        byte kind = input.readByte();
+        script.databaseName = readString(input);
+        script.schemaName = readString(input);
+        script.objectName = readString(input);
+        script.objectType = ScriptObjectType.valueOf(readString(input));
+        script.content = readString(input);
+        if(kind == MIGRATION_SCRIPT) {
+            script.version = input.readLong();
+            script.author = readString(input);
+            script.rollback = readString(input);
+            script.verify = readString(input);
+        }
+        int identifierCount = input.readInt();
+        if(identifierCount >= 0) {
+            Set<String> identifiers = new HashSet<>(identifierCount * 2);
+            for(int i = 0; i < identifierCount; i++) {
+                identifiers.add(readString(input));
+            }
+            script.referencedIdentifiers = Collections.unmodifiableSet(identifiers);
+        }
+        return script;
+    }
+
+    static void writeString(DataOutputStream output, String value) throws IOException {
+        if(value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if(length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class CacheEntry {
+        private final String md5;
+        private final List<CachedScript> scripts;
+
+        private CacheEntry(String md5, List<CachedScript> scripts) {
+            this.md5 = md5;
+            this.scripts = scripts;
+        }
+    }
+
+    /**
+     * Parsed fields of a script. A new script is created from them on every read, as scripts are changed later on
+     * by the parameter injector.
+     */
+    private static class CachedScript {
+        private String databaseName;
+        private String schemaName;
+        private String objectName;
+        private ScriptObjectType objectType;
+        private String content;
+        private Long version;
+        private String author;
+        private String rollback;
+        private String verify;
+        private Set<String> referencedIdentifiers;
+
+        private CachedScript() {
+        }
+
+        private CachedScript(Script script) {
+            databaseName = script.getDatabaseName();
+            schemaName = script.getSchemaName();
+            objectName = script.getObjectName();
+            objectType = script.getObjectType();
+            content = script.getContent();
+            if(script instanceof MigrationScript) {
+                MigrationScript migrationScript = (MigrationScript) script;
+                version = migrationScript.getVersion();
+                author = migrationScript.getAuthor();
+                rollback = migrationScript.getRollback();
+                verify = migrationScript.getVerify();
+            }
+            if(script.getReferencedIdentifiers() != null) {
+                referencedIdentifiers = Collections.unmodifiableSet(new HashSet<>(script.getReferencedIdentifiers()));
+            }
+        }
+
+        private Script toScript(String path) {
+            Script script;
+            if(version != null) {
+                script = ScriptFactory.getMigrationScript(databaseName, schemaName, objectType, objectName, content, version, author, rollback, verify);
+            }
+            else {
+                script = ScriptFactory.getStateScript(path, databaseName, schemaName, objectType, objectName, content);
+            }
+            script.setReferencedIdentifiers(referencedIdentifiers);
+            return script;
+        }
+    }
+}
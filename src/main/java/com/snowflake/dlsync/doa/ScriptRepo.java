@@ -3,36 +3,89 @@ package com.snowflake.dlsync.doa;
 import com.snowflake.dlsync.ScriptFactory;
 import com.snowflake.dlsync.Util;
 import com.snowflake.dlsync.dependency.DependencyExtractor;
+import com.snowflake.dlsync.metrics.Metrics;
 import com.snowflake.dlsync.models.*;
 import com.snowflake.dlsync.parser.SqlTokenizer;
 import lombok.extern.slf4j.Slf4j;
+import net.snowflake.client.jdbc.SnowflakeStatement;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 @Slf4j
 public class ScriptRepo {
     private Properties connectionProperties;
-    private Connection connection;
+    private ConnectionPool connectionPool;
+    private final ThreadLocal<Connection> session = new ThreadLocal<>();
     private Map<String, String> scriptHash = new HashMap<>();
     private Long changeSyncId;
+    private final List<ScriptHistoryRecord> historyBuffer = new ArrayList<>();
+    private long historyFlushIntervalMillis = 0;
+    private long lastHistoryFlush = System.currentTimeMillis();
+    private String historyLocation;
+    private HistorySnapshot historySnapshot;
+    private Metrics metrics = new Metrics();
+    private final Map<String, Long> asyncStartNanos = new ConcurrentHashMap<>();
+
+    private static final int MAX_BUFFERED_HISTORY = 1000;
+    private static final int HISTORY_FLUSH_CHUNK_SIZE = 200;
+    private static final int HASH_STAGE_BATCH_SIZE = 10000;
+    private static final int CONFIG_FETCH_SIZE = 10000;
+    private static final int HISTORY_FETCH_SIZE = 10000;
+    private static final String HISTORY_TIMESTAMP_FORMAT = "YYYY-MM-DD HH24:MI:SS.FF9";
+    /**
+     * Rows are read again from this many minutes before the snapshot watermark, to include rows of transactions that
+     * committed after later rows were already read.
+     */
+    private static final int HISTORY_SNAPSHOT_OVERLAP_MINUTES = 10;
+    /**
+     * Above this many scripts added since the snapshot, the whole history is read instead of checking for removed rows
+     * with a query binding every added SCRIPT_ID.
+     */
+    private static final int HISTORY_SNAPSHOT_MAX_ADDED_IDS = 1000;
 
     public final String CHANGE_SYNC_TABLE_NAME = "DL_SYNC_CHANGE_SYNC";
     public final String SCRIPT_HISTORY_TABLE_NAME = "DL_SYNC_SCRIPT_HISTORY";
     public final String SCRIPT_EVENT_TABLE_NAME = "DL_SYNC_SCRIPT_EVENT";
     public final String DEPENDENCY_LINEAGE_TABLE_NAME = "DL_SYNC_DEPENDENCY_LINEAGE";
+    public final String SCRIPT_HASH_STAGE_TABLE_NAME = "DL_SYNC_SCRIPT_HASH_STAGE";
+
+    /**
+     * State object types that are included in the GET_DDL of a schema. Other types are read object by object.
+     */
+    public static final Set<ScriptObjectType> BULK_DDL_TYPES = Collections.unmodifiableSet(EnumSet.of(ScriptObjectType.VIEWS, ScriptObjectType.FUNCTIONS, ScriptObjectType.PROCEDURES, ScriptObjectType.FILE_FORMATS));
 
 
     public ScriptRepo(Properties connectionProperties) {
+        this(connectionProperties, 1);
+    }
+
+    public ScriptRepo(Properties connectionProperties, int poolSize) {
+        this(connectionProperties, poolSize, poolSize);
+    }
+
+    /**
+     * @param poolSize maximum number of sessions.
+     * @param warmSessions number of sessions opened up front, the others are opened when first needed.
+     */
+    public ScriptRepo(Properties connectionProperties, int poolSize, int warmSessions) {
         log.debug("Repo initialized with the following properties: {}", connectionProperties);
         this.connectionProperties = connectionProperties;
+        String jdbcUrl = "jdbc:snowflake://" + connectionProperties.getProperty("account") + ".snowflakecomputing.com/";
+        connectionProperties.remove("account");
         try {
-            openConnection();
-            ResultSet resultSet = connection.createStatement().executeQuery("select current_database(), current_schema();");
+            connectionPool = new ConnectionPool(jdbcUrl, connectionProperties, poolSize);
+            connectionPool.warmUp(warmSessions);
+            ResultSet resultSet = getConnection().createStatement().executeQuery("select current_database(), current_schema();");
             resultSet.next();
             log.info("Using database [{}] and schema [{}] for dlsync activities.", resultSet.getString(1), resultSet.getString(2));
+            historyLocation = jdbcUrl + resultSet.getString(1) + "." + resultSet.getString(2);
             initScriptTables();
         } catch (SQLException e) {
             log.error("Error while initializing the script repo: {} cause {}", e.getMessage(), e.getCause());
@@ -41,11 +94,50 @@ public class ScriptRepo {
     }
 
 
-    private void openConnection() throws SQLException {
-        String jdbcUrl = "jdbc:snowflake://" + connectionProperties.getProperty("account") + ".snowflakecomputing.com/";
-        connectionProperties.remove("account");
-        log.debug("Connection opened with properties: {}", connectionProperties);
-        connection = DriverManager.getConnection(jdbcUrl, connectionProperties);
+    /**
+     * Returns the session bound to the current thread. A thread takes a session from the pool on first use and keeps it
+     * until it calls {@link #releaseSession()}, so transactions started by different threads never share a session.
+     */
+    private Connection getConnection() throws SQLException {
+        Connection connection = session.get();
+        if(connection == null) {
+            log.debug("Acquiring connection for thread {}", Thread.currentThread().getName());
+            connection = connectionPool.acquire();
+            session.set(connection);
+        }
+        return connection;
+    }
+
+    /**
+     * Returns the session bound to the current thread back to the pool.
+     */
+    public void releaseSession() {
+        Connection connection = session.get();
+        if(connection != null) {
+            session.remove();
+            connectionPool.release(connection);
+        }
+    }
+
+    /**
+     * Sets how long the history and event rows of deployed scripts are buffered before they are written.
+     * @param seconds flush interval, 0 to write the rows together with each deployment.
+     */
+    public void setHistoryFlushInterval(int seconds) {
+        this.historyFlushIntervalMillis = Math.max(seconds, 0) * 1000L;
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public int getMaxSessions() {
+        return connectionPool.getSize();
+    }
+
+    public void close() {
+        session.remove();
+        connectionPool.close();
     }
 
     private void initScriptTables() throws SQLException {
@@ -53,19 +145,21 @@ public class ScriptRepo {
         log.debug("Checking for deployment tables");
         try {
             String query = "SELECT * FROM " + CHANGE_SYNC_TABLE_NAME + " LIMIT 1;";
-            Statement statement = connection.createStatement();
+            Statement statement = getConnection().createStatement();
             statement.executeQuery(query);
             updateOldTableNames();
+            addMissingColumn(SCRIPT_EVENT_TABLE_NAME, "QUERY_ID");
+            addMissingColumn(CHANGE_SYNC_TABLE_NAME, "METRICS");
         } catch (SQLException e) {
             log.info("Running for the first time. Creating required tables.");
-            String createChangeSyncSql = "CREATE OR REPLACE TABLE " + CHANGE_SYNC_TABLE_NAME + " (ID integer PRIMARY KEY, CHANGE_TYPE varchar, STATUS varchar, LOG varchar, CHANGE_COUNT integer, START_TIME timestamp, END_TIME timestamp);";
+            String createChangeSyncSql = "CREATE OR REPLACE TABLE " + CHANGE_SYNC_TABLE_NAME + " (ID integer PRIMARY KEY, CHANGE_TYPE varchar, STATUS varchar, LOG varchar, CHANGE_COUNT integer, START_TIME timestamp, END_TIME timestamp, METRICS varchar);";
 
             String createSqlHash = "CREATE OR REPLACE TABLE " + SCRIPT_HISTORY_TABLE_NAME + " (SCRIPT_ID VARCHAR, OBJECT_NAME varchar, OBJECT_TYPE varchar, ROLLBACK_SCRIPT varchar, SCRIPT_HASH varchar, DEPLOYED_HASH varchar, CHANGE_SYNC_ID integer, CREATED_BY varchar, CREATED_TS timestamp, UPDATED_BY varchar, UPDATED_TS timestamp, FOREIGN KEY (CHANGE_SYNC_ID) REFERENCES " + CHANGE_SYNC_TABLE_NAME + "(ID));";
 
-            String createSqlEvent = "CREATE OR REPLACE TABLE " + SCRIPT_EVENT_TABLE_NAME + " (ID VARCHAR, SCRIPT_ID VARCHAR, OBJECT_NAME varchar, SCRIPT_HASH varchar, STATUS varchar, LOG varchar, CHANGE_SYNC_ID integer, CREATED_BY varchar, CREATED_TS timestamp, FOREIGN KEY (CHANGE_SYNC_ID) REFERENCES " + CHANGE_SYNC_TABLE_NAME + "(ID));";
+            String createSqlEvent = "CREATE OR REPLACE TABLE " + SCRIPT_EVENT_TABLE_NAME + " (ID VARCHAR, SCRIPT_ID VARCHAR, OBJECT_NAME varchar, SCRIPT_HASH varchar, STATUS varchar, LOG varchar, CHANGE_SYNC_ID integer, CREATED_BY varchar, CREATED_TS timestamp, QUERY_ID varchar, FOREIGN KEY (CHANGE_SYNC_ID) REFERENCES " + CHANGE_SYNC_TABLE_NAME + "(ID));";
             log.debug("create hash table sql: {}", createSqlHash);
             log.debug("create event table sql: {}", createSqlEvent);
-            Statement statement = connection.createStatement();
+            Statement statement = getConnection().createStatement();
             statement.executeUpdate(createChangeSyncSql);
             statement.executeUpdate(createSqlHash);
             statement.executeUpdate(createSqlEvent);
@@ -75,7 +169,7 @@ public class ScriptRepo {
     private void updateOldTableNames() {
         try {
             String query = "SELECT * FROM DL_SYNC_SCRIPT LIMIT 1;";
-            Statement statement = connection.createStatement();
+            Statement statement = getConnection().createStatement();
             statement.executeQuery(query);
             log.info("Found old dlsync table DL_SYNC_SCRIPT renaming it to [{}]", SCRIPT_HISTORY_TABLE_NAME);
             String alterSql = "ALTER TABLE IF EXISTS DL_SYNC_SCRIPT RENAME TO " + SCRIPT_HISTORY_TABLE_NAME + ";";
@@ -85,62 +179,280 @@ public class ScriptRepo {
         }
     }
 
-    public Set<String> loadScriptHash() throws SQLException {
-        String hashQuery =  "SELECT * FROM " + SCRIPT_HISTORY_TABLE_NAME + ";";
-        log.debug("Loading hash with sql: {}", hashQuery);
-        Statement statement = connection.createStatement();
-        ResultSet resultSet = statement.executeQuery(hashQuery);
-        while (resultSet.next()) {
-            String id = resultSet.getString("SCRIPT_ID");
-            scriptHash.put(id, resultSet.getString("SCRIPT_HASH"));
+    /**
+     * Adds varchar columns introduced by later versions, such as the event QUERY_ID and the change sync METRICS, to
+     * tables created by older versions.
+     */
+    private void addMissingColumn(String tableName, String columnName) {
+        String alterSql = "ALTER TABLE " + tableName + " ADD COLUMN IF NOT EXISTS " + columnName + " varchar;";
+        try (Statement statement = getConnection().createStatement()) {
+            statement.executeUpdate(alterSql);
+        } catch (SQLException e) {
+            log.warn("Unable to add {} column to {}: {}", columnName, tableName, e.getMessage());
         }
+    }
+
+    /**
+     * Keeps a local snapshot of the script history in the given directory, so only the history rows changed since the
+     * last run are read from the database.
+     */
+    public void enableHistorySnapshot(Path directory) {
+        historySnapshot = new HistorySnapshot(directory.resolve("history-" + Util.getMd5Hash(historyLocation) + ".bin"));
+    }
+
+    public Set<String> loadScriptHash() throws SQLException {
+        metrics.time(Metrics.HISTORY_LOAD, () -> {
+            if(historySnapshot != null) {
+                refreshHistorySnapshot();
+                scriptHash.putAll(historySnapshot.getScriptHashes());
+            }
+            else {
+                loadHashes("SCRIPT_HASH");
+            }
+        });
         log.debug("Script hash loaded: {}", scriptHash);
         return  scriptHash.keySet();
 
     }
 
     public Set<String> loadDeployedHash() throws SQLException {
-        String hashColumn = "DEPLOYED_HASH";
-        String hashQuery =  "SELECT * FROM " + SCRIPT_HISTORY_TABLE_NAME + ";";
-        log.debug("Loading hash with sql: {}", hashQuery);
-        Statement statement = connection.createStatement();
-        ResultSet resultSet = statement.executeQuery(hashQuery);
-        while (resultSet.next()) {
-            String id = resultSet.getString("SCRIPT_ID");
-            scriptHash.put(id, resultSet.getString(hashColumn));
-        }
+        metrics.time(Metrics.HISTORY_LOAD, () -> {
+            if(historySnapshot != null) {
+                refreshHistorySnapshot();
+                scriptHash.putAll(historySnapshot.getDeployedHashes());
+            }
+            else {
+                loadHashes("DEPLOYED_HASH");
+            }
+        });
         log.debug("Script deployed hash loaded: {}", scriptHash);
         return  scriptHash.keySet();
 
     }
 
-    public Long insertChangeSync(ChangeType changeType, Status status, String logMessage) throws SQLException {
-        String queryGetId = "SELECT count(1) FROM " + CHANGE_SYNC_TABLE_NAME + ";";
-        ResultSet rs = connection.createStatement().executeQuery(queryGetId);
-        if(rs.next()) {
-            changeSyncId =  rs.getLong(1) + 1;
+    /**
+     * @return hash of the script from the loaded script history, or null if the script was never deployed.
+     */
+    public String getScriptHash(String scriptId) {
+        return scriptHash.get(scriptId);
+    }
+
+    /**
+     * Sets the script history of the given scripts without reading it from the database, e.g. from a deployment plan
+     * computed against the current history.
+     */
+    public void putScriptHashes(Map<String, String> scriptHashes) {
+        scriptHash.putAll(scriptHashes);
+    }
+
+    /**
+     * Watermark of the script history, changing whenever a script history row is added, removed or updated.
+     * Computed in the database with a single aggregate over the history table.
+     */
+    public String getScriptHistoryWatermark() throws SQLException {
+        String watermarkQuery = "SELECT COUNT(1), HASH_AGG(SCRIPT_ID, SCRIPT_HASH, DEPLOYED_HASH, CHANGE_SYNC_ID) FROM " + SCRIPT_HISTORY_TABLE_NAME + ";";
+        log.debug("Reading script history watermark with sql: {}", watermarkQuery);
+        try (Statement statement = getConnection().createStatement(); ResultSet resultSet = statement.executeQuery(watermarkQuery)) {
+            resultSet.next();
+            return resultSet.getLong(1) + ":" + resultSet.getLong(2);
         }
+    }
+
+    private void loadHashes(String hashColumn) throws SQLException {
+        String hashQuery =  "SELECT SCRIPT_ID, " + hashColumn + " FROM " + SCRIPT_HISTORY_TABLE_NAME + ";";
+        log.debug("Loading hash with sql: {}", hashQuery);
+        try (Statement statement = getConnection().createStatement()) {
+            statement.setFetchSize(HISTORY_FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery(hashQuery)) {
+                while (resultSet.next()) {
+                    scriptHash.put(resultSet.getString(1), resultSet.getString(2));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the history rows updated since the watermark of the snapshot. Deleted rows leave no trace in UPDATED_TS, so
+     * the SCRIPT_IDs of the history, without the ones added since the snapshot, must still have the hash saved with
+     * the snapshot. Otherwise rows were removed, e.g. by a rollback, and the whole history is read again.
+     */
+    private void refreshHistorySnapshot() throws SQLException {
+        String watermark = historySnapshot.getWatermark();
+        String snapshotIdHash = historySnapshot.getScriptIdHash();
+        if(watermark != null && snapshotIdHash != null) {
+            List<String> addedScriptIds = new ArrayList<>();
+            int updatedRows = readHistorySnapshotRows(watermark, addedScriptIds);
+            if(addedScriptIds.size() <= HISTORY_SNAPSHOT_MAX_ADDED_IDS) {
+                String scriptIdHash = getScriptIdHash(Collections.emptyList());
+                String previousIdHash = addedScriptIds.isEmpty() ? scriptIdHash : getScriptIdHash(addedScriptIds);
+                if(previousIdHash.equals(snapshotIdHash)) {
+                    log.info("Refreshed script history snapshot of {} rows with {} updated rows.", historySnapshot.size(), updatedRows);
+                    historySnapshot.setScriptIdHash(scriptIdHash);
+                    historySnapshot.save();
+                    return;
+                }
+                log.info("Script history rows were removed since the snapshot, reading the whole history.");
+            }
+            else {
+                log.info("{} scripts were added to the history since the snapshot, reading the whole history.", addedScriptIds.size());
+            }
+            historySnapshot.clear();
+        }
+        int rows = readHistorySnapshotRows(null, new ArrayList<>());
+        historySnapshot.setScriptIdHash(getScriptIdHash(Collections.emptyList()));
+        log.info("Read script history snapshot of {} rows.", rows);
+        historySnapshot.save();
+    }
+
+    /**
+     * @param addedScriptIds collects the SCRIPT_IDs read that are not in the snapshot yet.
+     */
+    private int readHistorySnapshotRows(String watermark, List<String> addedScriptIds) throws SQLException {
+        String query = "SELECT SCRIPT_ID, SCRIPT_HASH, DEPLOYED_HASH, TO_VARCHAR(UPDATED_TS, '" + HISTORY_TIMESTAMP_FORMAT + "') FROM " + SCRIPT_HISTORY_TABLE_NAME +
+                (watermark == null ? "" : " WHERE UPDATED_TS >= DATEADD(MINUTE, -" + HISTORY_SNAPSHOT_OVERLAP_MINUTES + ", TO_TIMESTAMP_NTZ(?, '" + HISTORY_TIMESTAMP_FORMAT + "'))") + ";";
+        log.debug("Reading script history snapshot rows with sql: {}", query);
+        int rows = 0;
+        try (PreparedStatement statement = getConnection().prepareStatement(query)) {
+            statement.setFetchSize(HISTORY_FETCH_SIZE);
+            if(watermark != null) {
+                statement.setString(1, watermark);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String scriptId = resultSet.getString(1);
+                    if(!historySnapshot.contains(scriptId)) {
+                        addedScriptIds.add(scriptId);
+                    }
+                    historySnapshot.put(scriptId, resultSet.getString(2), resultSet.getString(3), resultSet.getString(4));
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * HASH_AGG of the SCRIPT_IDs of the history, leaving out the given ones.
+     */
+    private String getScriptIdHash(List<String> excludedScriptIds) throws SQLException {
+        String query = "SELECT HASH_AGG(SCRIPT_ID) FROM " + SCRIPT_HISTORY_TABLE_NAME +
+                (excludedScriptIds.isEmpty() ? "" : " WHERE SCRIPT_ID NOT IN (" + String.join(", ", Collections.nCopies(excludedScriptIds.size(), "?")) + ")") + ";";
+        try (PreparedStatement statement = getConnection().prepareStatement(query)) {
+            for(int i = 0; i < excludedScriptIds.size(); i++) {
+                statement.setString(i + 1, excludedScriptIds.get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return String.valueOf(resultSet.getLong(1));
+            }
+        }
+    }
+
+    /**
+     * Starts a new change sync. Its id is generated on the client and is time ordered, so concurrent runs get different
+     * ids without reading the table, and the ids stay larger than the sequential ids of older versions.
+     */
+    public Long insertChangeSync(ChangeType changeType, Status status, String logMessage) throws SQLException {
+        changeSyncId = Util.newTimeOrderedId();
 
         String insertSql = "INSERT INTO " + CHANGE_SYNC_TABLE_NAME + " (ID, CHANGE_TYPE, STATUS, LOG, START_TIME) VALUES(?, ?, ?, ?, CURRENT_TIMESTAMP);";
-        PreparedStatement statement = connection.prepareStatement(insertSql);
+        PreparedStatement statement = getConnection().prepareStatement(insertSql);
         statement.setLong(1, changeSyncId);
         statement.setString(2, changeType.toString());
         statement.setString(3, status.toString());
         statement.setString(4, logMessage);
         log.debug("Creating script event with the following SQL: {}", insertSql);
         statement.executeUpdate();
+        lastHistoryFlush = System.currentTimeMillis();
 
         return changeSyncId;
     }
 
+    /**
+     * Finds a change sync of the given type that is still in progress, with the time since it started and since its
+     * last script event.
+     * @param changeSyncId id of the change sync, or null for the latest one.
+     * @return the change sync, or null if there is none.
+     */
+    public ChangeSync findUnfinishedChangeSync(ChangeType changeType, Long changeSyncId) throws SQLException {
+        String query = "SELECT C.ID, C.START_TIME, DATEDIFF('second', C.START_TIME, CURRENT_TIMESTAMP::TIMESTAMP_NTZ) AS AGE_SECONDS, " +
+                "DATEDIFF('second', COALESCE(MAX(E.CREATED_TS), C.START_TIME), CURRENT_TIMESTAMP::TIMESTAMP_NTZ) AS IDLE_SECONDS " +
+                "FROM " + CHANGE_SYNC_TABLE_NAME + " C LEFT JOIN " + SCRIPT_EVENT_TABLE_NAME + " E ON E.CHANGE_SYNC_ID = C.ID " +
+                "WHERE C.CHANGE_TYPE=? AND C.STATUS=?" + (changeSyncId != null ? " AND C.ID=?" : "") +
+                " GROUP BY C.ID, C.START_TIME ORDER BY C.START_TIME DESC, C.ID DESC LIMIT 1;";
+        PreparedStatement statement = getConnection().prepareStatement(query);
+        statement.setString(1, changeType.toString());
+        statement.setString(2, Status.IN_PROGRESS.toString());
+        if(changeSyncId != null) {
+            statement.setLong(3, changeSyncId);
+        }
+        log.debug("Finding unfinished change sync with sql: {}", query);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            if(!resultSet.next()) {
+                return null;
+            }
+            ChangeSync changeSync = new ChangeSync();
+            changeSync.setId(resultSet.getLong("ID"));
+            changeSync.setChangeType(changeType);
+            changeSync.setStatus(Status.IN_PROGRESS);
+            changeSync.setStartTime(resultSet.getTimestamp("START_TIME"));
+            changeSync.setAgeSeconds(resultSet.getLong("AGE_SECONDS"));
+            changeSync.setIdleSeconds(resultSet.getLong("IDLE_SECONDS"));
+            return changeSync;
+        }
+    }
+
+    /**
+     * @return hash of every script successfully deployed by the change sync, by script id.
+     */
+    public Map<String, String> getDeployedScripts(Long changeSyncId) throws SQLException {
+        String query = "SELECT SCRIPT_ID, SCRIPT_HASH FROM " + SCRIPT_EVENT_TABLE_NAME + " WHERE CHANGE_SYNC_ID=? AND STATUS='SUCCESS' ORDER BY CREATED_TS;";
+        PreparedStatement statement = getConnection().prepareStatement(query);
+        statement.setLong(1, changeSyncId);
+        log.debug("Loading deployed scripts of change sync {} with sql: {}", changeSyncId, query);
+        Map<String, String> deployedScripts = new HashMap<>();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                deployedScripts.put(resultSet.getString("SCRIPT_ID"), resultSet.getString("SCRIPT_HASH"));
+            }
+        }
+        return deployedScripts;
+    }
+
+    /**
+     * Continues an unfinished change sync, so all history and events of this run are recorded under its id.
+     */
+    public void resumeChangeSync(Long unfinishedSyncId, ChangeType changeType) throws SQLException {
+        changeSyncId = unfinishedSyncId;
+        String updateSql = "UPDATE " + CHANGE_SYNC_TABLE_NAME + " SET LOG=? WHERE ID = ? ;";
+        PreparedStatement statement = getConnection().prepareStatement(updateSql);
+        statement.setString(1, changeType.toString() + " resumed.");
+        statement.setLong(2, changeSyncId);
+        log.debug("Resuming change sync with the following SQL: {}", updateSql);
+        statement.executeUpdate();
+        lastHistoryFlush = System.currentTimeMillis();
+    }
+
     public void updateChangeSync(ChangeType changeType, Status status, String logMessage, Long changeCount) throws SQLException {
-        String updateSql = "UPDATE " + CHANGE_SYNC_TABLE_NAME + " SET CHANGE_TYPE=?, STATUS=?, LOG=?, CHANGE_COUNT=?, END_TIME=CURRENT_TIMESTAMP WHERE ID = ? ;";
-        PreparedStatement statement = connection.prepareStatement(updateSql);
+        updateChangeSync(changeType, status, logMessage, changeCount, null);
+    }
+
+    /**
+     * @param metrics summary of the run metrics stored with the change sync, as json.
+     */
+    public void updateChangeSync(ChangeType changeType, Status status, String logMessage, Long changeCount, String metrics) throws SQLException {
+        if(changeSyncId == null) {
+            log.debug("No change sync started, skipping update to {}", status);
+            return;
+        }
+        String updateSql = "UPDATE " + CHANGE_SYNC_TABLE_NAME + " SET CHANGE_TYPE=?, STATUS=?, LOG=?, CHANGE_COUNT=?, METRICS=?, END_TIME=CURRENT_TIMESTAMP WHERE ID = ? ;";
+        PreparedStatement statement = getConnection().prepareStatement(updateSql);
         statement.setString(1, changeType.toString());
         statement.setString(2, status.toString());
         statement.setString(3, logMessage);
         statement.setObject(4, changeCount);
-        statement.setLong(5, changeSyncId);
+        statement.setString(5, metrics);
+        statement.setLong(6, changeSyncId);
         log.debug("Creating script event with the following SQL: {}", updateSql);
         statement.executeUpdate();
     }
@@ -155,7 +467,7 @@ public class ScriptRepo {
         log.debug("Updating script hash of object {}", script.getId());
         if(scriptHash.containsKey(script.getId())) {
             String updateSql = "UPDATE " + SCRIPT_HISTORY_TABLE_NAME + " SET ROLLBACK_SCRIPT=?, SCRIPT_HASH=?, DEPLOYED_HASH=?, CHANGE_SYNC_ID=?, updated_by=current_user, updated_ts=current_timestamp WHERE SCRIPT_ID=?;";
-            statement = connection.prepareStatement(updateSql);
+            statement = getConnection().prepareStatement(updateSql);
             statement.setString(1, rollback);
             statement.setString(2, script.getHash());
             statement.setString(3, deployedHash);
@@ -165,7 +477,7 @@ public class ScriptRepo {
         }
         else {
             String insertSql = "INSERT INTO " + SCRIPT_HISTORY_TABLE_NAME + " VALUES(?, ?, ?, ?, ?, ?, ?, current_user, current_timestamp, current_user, current_timestamp);";
-            statement = connection.prepareStatement(insertSql);
+            statement = getConnection().prepareStatement(insertSql);
             statement.setString(1, script.getId());
             statement.setString(2, script.getFullObjectName());
             statement.setString(3, script.getObjectType().toString());
@@ -180,16 +492,21 @@ public class ScriptRepo {
     }
 
     private boolean insertScriptEvent(Script script, String status, String logs) throws SQLException {
+        return insertScriptEvent(script, status, logs, null);
+    }
+
+    private boolean insertScriptEvent(Script script, String status, String logs, String queryId) throws SQLException {
         //varchar ID, varchar OBJECT_NAME, varchar SCRIPT_HASH, varchar STATUS, varchar log, varchar created_by, varchar created_ts;
         log.debug("Creating event for the object {} with status: {} and log: {} ", script.getObjectName(), status, logs);
-        String insertSql = "INSERT INTO " + SCRIPT_EVENT_TABLE_NAME + " SELECT UUID_STRING(), ?, ?, ?, ?, ?, ?, current_user, current_timestamp;";
-        PreparedStatement statement = connection.prepareStatement(insertSql);
+        String insertSql = "INSERT INTO " + SCRIPT_EVENT_TABLE_NAME + " (ID, SCRIPT_ID, OBJECT_NAME, SCRIPT_HASH, STATUS, LOG, CHANGE_SYNC_ID, CREATED_BY, CREATED_TS, QUERY_ID) SELECT UUID_STRING(), ?, ?, ?, ?, ?, ?, current_user, current_timestamp, ?;";
+        PreparedStatement statement = getConnection().prepareStatement(insertSql);
         statement.setString(1, script.getId());
         statement.setObject(2, script.getFullObjectName());
         statement.setString(3, script.getHash());
         statement.setString(4, status);
         statement.setString(5, logs);
         statement.setLong(6, changeSyncId);
+        statement.setString(7, queryId);
         log.debug("Creating script event with the following SQL: {}", insertSql);
         return statement.executeUpdate() > 0;
     }
@@ -204,24 +521,35 @@ public class ScriptRepo {
     }
 
     public void createScriptObject(Script script, boolean onlyHashes) throws SQLException {
-
+        if(isHistoryBuffered(script, onlyHashes)) {
+            createScriptObjectBuffered(script, onlyHashes);
+            return;
+        }
+        Connection connection = getConnection();
         Statement statement = connection.createStatement();
         boolean autoCommit = connection.getAutoCommit();
+        String queryId = null;
         try {
             connection.setAutoCommit(false);
             if(!onlyHashes) {
-                statement.execute(script.getContent());
+                metrics.time(Metrics.DDL, script, () -> statement.execute(script.getContent()));
+                queryId = getQueryId(statement);
                 log.debug("Creating object using the SQL: {}", script.getContent());
             }
-            updateScriptHash(script);
-            insertScriptEvent(script, "SUCCESS", "Successfully Deployed Object");
-            connection.commit();
+            String deployedQueryId = queryId;
+            metrics.time(Metrics.HISTORY_WRITE, () -> {
+                updateScriptHash(script);
+                insertScriptEvent(script, "SUCCESS", "Successfully Deployed Object", deployedQueryId);
+                connection.commit();
+            });
+            metrics.increment(Metrics.SCRIPTS_DEPLOYED);
             log.info("Successfully Deployed object: {}", script);
         }
         catch (SQLException e) {
             connection.rollback();
+            metrics.increment(Metrics.SCRIPTS_FAILED);
             log.error("Error {}, while creating the object {} with sql {}", e.getMessage(), script.getObjectName(), script.getContent());
-            insertScriptEvent(script, "ERROR", e.getMessage());
+            insertScriptEvent(script, "ERROR", e.getMessage(), queryId != null ? queryId : getQueryId(statement));
             throw e;
         }
         finally {
@@ -229,6 +557,321 @@ public class ScriptRepo {
         }
 
     }
+
+    /**
+     * Migrations run their sql and history writes in one transaction, so their history is never buffered.
+     * State scripts are created with DDL that commits on its own, so their history can be written later.
+     */
+    private boolean isHistoryBuffered(Script script, boolean onlyHashes) {
+        return historyFlushIntervalMillis > 0 && (onlyHashes || !(script instanceof MigrationScript));
+    }
+
+    private void createScriptObjectBuffered(Script script, boolean onlyHashes) throws SQLException {
+        String queryId = null;
+        if(!onlyHashes) {
+            try (Statement statement = getConnection().createStatement()) {
+                log.debug("Creating object using the SQL: {}", script.getContent());
+                try {
+                    metrics.time(Metrics.DDL, script, () -> statement.execute(script.getContent()));
+                }
+                finally {
+                    queryId = getQueryId(statement);
+                }
+            }
+            catch (SQLException e) {
+                metrics.increment(Metrics.SCRIPTS_FAILED);
+                log.error("Error {}, while creating the object {} with sql {}", e.getMessage(), script.getObjectName(), script.getContent());
+                bufferScriptHistory(new ScriptHistoryRecord(script, "ERROR", e.getMessage(), queryId));
+                throw e;
+            }
+        }
+        bufferScriptHistory(new ScriptHistoryRecord(script, "SUCCESS", "Successfully Deployed Object", queryId));
+        metrics.increment(Metrics.SCRIPTS_DEPLOYED);
+        log.info("Successfully Deployed object: {}", script);
+    }
+
+    /**
+     * Submits the sql of the script with the snowflake async query api on the session of the current thread and
+     * returns without waiting for it to finish. The statement of the returned result set stays open until the query is
+     * finished, and the outcome is recorded with {@link #completeAsyncScriptObject}.
+     */
+    public ResultSet submitScriptObject(Script script) throws SQLException {
+        Statement statement = getConnection().createStatement();
+        try {
+            log.debug("Submitting async query to create object using the SQL: {}", script.getContent());
+            asyncStartNanos.put(script.getId(), System.nanoTime());
+            return statement.unwrap(SnowflakeStatement.class).executeAsyncQuery(script.getContent());
+        }
+        catch (SQLException e) {
+            log.error("Error {}, while submitting the object {} with sql {}", e.getMessage(), script.getObjectName(), script.getContent());
+            statement.close();
+            completeAsyncScriptObject(script, null, e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Records the outcome of a script submitted with {@link #submitScriptObject}. The other async queries may still be
+     * running on the session, and a DDL finishing inside an open transaction commits it. So the history and event rows
+     * are only buffered, and written by {@link #flushScriptHistory} once no async query is in flight.
+     * @param errorMessage error of the query, or null if the query succeeded.
+     */
+    public void completeAsyncScriptObject(Script script, String queryId, String errorMessage) {
+        Long startNanos = asyncStartNanos.remove(script.getId());
+        if(startNanos != null) {
+            metrics.recordNanos(Metrics.DDL, script, System.nanoTime() - startNanos);
+        }
+        metrics.increment(errorMessage == null ? Metrics.SCRIPTS_DEPLOYED : Metrics.SCRIPTS_FAILED);
+        String status = errorMessage == null ? "SUCCESS" : "ERROR";
+        String logs = errorMessage == null ? "Successfully Deployed Object" : errorMessage;
+        synchronized (this) {
+            historyBuffer.add(new ScriptHistoryRecord(script, status, logs, queryId));
+        }
+        if(errorMessage == null) {
+            log.info("Successfully Deployed object: {} with query {}", script, queryId);
+        }
+        else {
+            log.error("Error {}, while creating the object {} with query {}", errorMessage, script.getObjectName(), queryId);
+        }
+    }
+
+    private static String getQueryId(Statement statement) {
+        try {
+            return statement.unwrap(SnowflakeStatement.class).getQueryID();
+        } catch (SQLException | RuntimeException e) {
+            log.debug("Unable to read query id: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Buffers the row and writes the buffer when the interval has passed. The object of the row is already deployed,
+     * so a failed write is only logged and retried with the next flush instead of failing the script.
+     */
+    private synchronized void bufferScriptHistory(ScriptHistoryRecord record) {
+        historyBuffer.add(record);
+        if(historyBuffer.size() >= MAX_BUFFERED_HISTORY || System.currentTimeMillis() - lastHistoryFlush >= historyFlushIntervalMillis) {
+            try {
+                flushScriptHistory();
+            } catch (SQLException e) {
+                log.warn("Buffered script history could not be written, retrying with the next flush: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered history and event rows in one transaction, using multi-row statements.
+     * Rows are only buffered after their object was created, so the history never lists an object that was not deployed.
+     * If the write fails the rows stay in the buffer for the next flush.
+     */
+    public synchronized void flushScriptHistory() throws SQLException {
+        lastHistoryFlush = System.currentTimeMillis();
+        if(historyBuffer.isEmpty()) {
+            return;
+        }
+        metrics.time(Metrics.HISTORY_WRITE, this::writeScriptHistory);
+    }
+
+    private void writeScriptHistory() throws SQLException {
+        log.debug("Writing {} buffered script history rows.", historyBuffer.size());
+        Map<String, ScriptHistoryRecord> deployed = new LinkedHashMap<>();
+        for(ScriptHistoryRecord record: historyBuffer) {
+            if(record.deployedHash != null) {
+                deployed.put(record.scriptId, record);
+            }
+        }
+        Connection connection = getConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        try {
+            connection.setAutoCommit(false);
+            List<ScriptHistoryRecord> deployedRecords = new ArrayList<>(deployed.values());
+            for(int start = 0; start < deployedRecords.size(); start += HISTORY_FLUSH_CHUNK_SIZE) {
+                mergeScriptHistory(connection, deployedRecords.subList(start, Math.min(start + HISTORY_FLUSH_CHUNK_SIZE, deployedRecords.size())));
+            }
+            for(int start = 0; start < historyBuffer.size(); start += HISTORY_FLUSH_CHUNK_SIZE) {
+                insertScriptEvents(connection, historyBuffer.subList(start, Math.min(start + HISTORY_FLUSH_CHUNK_SIZE, historyBuffer.size())));
+            }
+            connection.commit();
+            historyBuffer.clear();
+        }
+        catch (SQLException e) {
+            connection.rollback();
+            log.error("Error {}, while writing {} buffered script history rows.", e.getMessage(), historyBuffer.size());
+            throw e;
+        }
+        finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void mergeScriptHistory(Connection connection, List<ScriptHistoryRecord> records) throws SQLException {
+        String mergeSql = "MERGE INTO " + SCRIPT_HISTORY_TABLE_NAME + " T USING (SELECT column1 AS SCRIPT_ID, column2 AS OBJECT_NAME, column3 AS OBJECT_TYPE, column4 AS ROLLBACK_SCRIPT, column5 AS SCRIPT_HASH, column6 AS DEPLOYED_HASH FROM VALUES " +
+                String.join(", ", Collections.nCopies(records.size(), "(?, ?, ?, ?, ?, ?)")) + ") S ON T.SCRIPT_ID = S.SCRIPT_ID " +
+                "WHEN MATCHED THEN UPDATE SET ROLLBACK_SCRIPT=S.ROLLBACK_SCRIPT, SCRIPT_HASH=S.SCRIPT_HASH, DEPLOYED_HASH=S.DEPLOYED_HASH, CHANGE_SYNC_ID=?, updated_by=current_user, updated_ts=current_timestamp " +
+                "WHEN NOT MATCHED THEN INSERT (SCRIPT_ID, OBJECT_NAME, OBJECT_TYPE, ROLLBACK_SCRIPT, SCRIPT_HASH, DEPLOYED_HASH, CHANGE_SYNC_ID, CREATED_BY, CREATED_TS, UPDATED_BY, UPDATED_TS) " +
+                "VALUES (S.SCRIPT_ID, S.OBJECT_NAME, S.OBJECT_TYPE, S.ROLLBACK_SCRIPT, S.SCRIPT_HASH, S.DEPLOYED_HASH, ?, current_user, current_timestamp, current_user, current_timestamp);";
+        try (PreparedStatement statement = connection.prepareStatement(mergeSql)) {
+            int index = 1;
+            for(ScriptHistoryRecord record: records) {
+                statement.setString(index++, record.scriptId);
+                statement.setString(index++, record.objectName);
+                statement.setString(index++, record.objectType);
+                statement.setString(index++, record.rollback);
+                statement.setString(index++, record.scriptHash);
+                statement.setString(index++, record.deployedHash);
+            }
+            statement.setLong(index++, changeSyncId);
+            statement.setLong(index, changeSyncId);
+            log.debug("Merging {} script hashes with the following SQL: {}", records.size(), mergeSql);
+            statement.executeUpdate();
+        }
+    }
+
+    private void insertScriptEvents(Connection connection, List<ScriptHistoryRecord> records) throws SQLException {
+        String insertSql = "INSERT INTO " + SCRIPT_EVENT_TABLE_NAME + " (ID, SCRIPT_ID, OBJECT_NAME, SCRIPT_HASH, STATUS, LOG, CHANGE_SYNC_ID, CREATED_BY, CREATED_TS, QUERY_ID) " +
+                "SELECT UUID_STRING(), column1, column2, column3, column4, column5, ?, current_user, current_timestamp, column6 FROM VALUES " +
+                String.join(", ", Collections.nCopies(records.size(), "(?, ?, ?, ?, ?, ?)")) + ";";
+        try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+            int index = 1;
+            statement.setLong(index++, changeSyncId);
+            for(ScriptHistoryRecord record: records) {
+                statement.setString(index++, record.scriptId);
+                statement.setString(index++, record.objectName);
+                statement.setString(index++, record.scriptHash);
+                statement.setString(index++, record.status);
+                statement.setString(index++, record.log);
+                statement.setString(index++, record.queryId);
+            }
+            log.debug("Creating {} script events with the following SQL: {}", records.size(), insertSql);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Records the scripts as deployed without running them. The history rows are loaded into a temporary table with
+     * array binds and written with a single MERGE into the history table and a single INSERT into the event table,
+     * all in one transaction.
+     * @param scripts scripts to record, with parameters already injected.
+     * @return number of scripts recorded.
+     */
+    public int updateScriptHashes(List<? extends Script> scripts) throws SQLException {
+        flushScriptHistory();
+        return metrics.time(Metrics.HISTORY_WRITE, () -> recordScriptHashes(scripts));
+    }
+
+    private int recordScriptHashes(List<? extends Script> scripts) throws SQLException {
+        Map<String, ScriptHistoryRecord> records = new LinkedHashMap<>();
+        for(Script script: scripts) {
+            records.put(script.getId(), new ScriptHistoryRecord(script, "SUCCESS", "Successfully Deployed Hash"));
+        }
+        if(records.isEmpty()) {
+            return 0;
+        }
+        Connection connection = getConnection();
+        try (Statement statement = connection.createStatement()) {
+            String createSql = "CREATE OR REPLACE TEMPORARY TABLE " + SCRIPT_HASH_STAGE_TABLE_NAME + " (SCRIPT_ID varchar, OBJECT_NAME varchar, OBJECT_TYPE varchar, ROLLBACK_SCRIPT varchar, SCRIPT_HASH varchar, DEPLOYED_HASH varchar);";
+            log.debug("Creating script hash stage table with the following SQL: {}", createSql);
+            statement.execute(createSql);
+            boolean autoCommit = connection.getAutoCommit();
+            try {
+                connection.setAutoCommit(false);
+                stageScriptHashes(connection, records.values());
+                String mergeSql = "MERGE INTO " + SCRIPT_HISTORY_TABLE_NAME + " T USING " + SCRIPT_HASH_STAGE_TABLE_NAME + " S ON T.SCRIPT_ID = S.SCRIPT_ID " +
+                        "WHEN MATCHED THEN UPDATE SET ROLLBACK_SCRIPT=S.ROLLBACK_SCRIPT, SCRIPT_HASH=S.SCRIPT_HASH, DEPLOYED_HASH=S.DEPLOYED_HASH, CHANGE_SYNC_ID=?, updated_by=current_user, updated_ts=current_timestamp " +
+                        "WHEN NOT MATCHED THEN INSERT (SCRIPT_ID, OBJECT_NAME, OBJECT_TYPE, ROLLBACK_SCRIPT, SCRIPT_HASH, DEPLOYED_HASH, CHANGE_SYNC_ID, CREATED_BY, CREATED_TS, UPDATED_BY, UPDATED_TS) " +
+                        "VALUES (S.SCRIPT_ID, S.OBJECT_NAME, S.OBJECT_TYPE, S.ROLLBACK_SCRIPT, S.SCRIPT_HASH, S.DEPLOYED_HASH, ?, current_user, current_timestamp, current_user, current_timestamp);";
+                try (PreparedStatement mergeStatement = connection.prepareStatement(mergeSql)) {
+                    mergeStatement.setLong(1, changeSyncId);
+                    mergeStatement.setLong(2, changeSyncId);
+                    log.debug("Merging script hashes with the following SQL: {}", mergeSql);
+                    mergeStatement.executeUpdate();
+                }
+                String eventSql = "INSERT INTO " + SCRIPT_EVENT_TABLE_NAME + " (ID, SCRIPT_ID, OBJECT_NAME, SCRIPT_HASH, STATUS, LOG, CHANGE_SYNC_ID, CREATED_BY, CREATED_TS) " +
+                        "SELECT UUID_STRING(), SCRIPT_ID, OBJECT_NAME, SCRIPT_HASH, 'SUCCESS', 'Successfully Deployed Hash', ?, current_user, current_timestamp FROM " + SCRIPT_HASH_STAGE_TABLE_NAME + ";";
+                try (PreparedStatement eventStatement = connection.prepareStatement(eventSql)) {
+                    eventStatement.setLong(1, changeSyncId);
+                    log.debug("Creating script events with the following SQL: {}", eventSql);
+                    eventStatement.executeUpdate();
+                }
+                connection.commit();
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                log.error("Error {}, while recording hashes of {} scripts.", e.getMessage(), records.size());
+                throw e;
+            }
+            finally {
+                connection.setAutoCommit(autoCommit);
+                dropScriptHashStage(statement);
+            }
+        }
+        log.info("Successfully Deployed hashes of {} scripts.", records.size());
+        return records.size();
+    }
+
+    private void dropScriptHashStage(Statement statement) {
+        try {
+            statement.execute("DROP TABLE IF EXISTS " + SCRIPT_HASH_STAGE_TABLE_NAME + ";");
+        } catch (SQLException e) {
+            log.warn("Error while dropping {}: {}", SCRIPT_HASH_STAGE_TABLE_NAME, e.getMessage());
+        }
+    }
+
+    private void stageScriptHashes(Connection connection, Collection<ScriptHistoryRecord> records) throws SQLException {
+        String insertSql = "INSERT INTO " + SCRIPT_HASH_STAGE_TABLE_NAME + " (SCRIPT_ID, OBJECT_NAME, OBJECT_TYPE, ROLLBACK_SCRIPT, SCRIPT_HASH, DEPLOYED_HASH) VALUES (?, ?, ?, ?, ?, ?);";
+        log.debug("Staging {} script hashes with the following SQL: {}", records.size(), insertSql);
+        try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+            int batchSize = 0;
+            for(ScriptHistoryRecord record: records) {
+                statement.setString(1, record.scriptId);
+                statement.setString(2, record.objectName);
+                statement.setString(3, record.objectType);
+                statement.setString(4, record.rollback);
+                statement.setString(5, record.scriptHash);
+                statement.setString(6, record.deployedHash);
+                statement.addBatch();
+                if(++batchSize == HASH_STAGE_BATCH_SIZE) {
+                    statement.executeBatch();
+                    batchSize = 0;
+                }
+            }
+            if(batchSize > 0) {
+                statement.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * History and event row of a deployed or failed script, waiting to be written.
+     */
+    private static class ScriptHistoryRecord {
+        private final String scriptId;
+        private final String objectName;
+        private final String objectType;
+        private final String rollback;
+        private final String scriptHash;
+        private final String deployedHash;
+        private final String status;
+        private final String log;
+        private final String queryId;
+
+        private ScriptHistoryRecord(Script script, String status, String log) {
+            this(script, status, log, null);
+        }
+
+        private ScriptHistoryRecord(Script script, String status, String log, String queryId) {
+            this.scriptId = script.getId();
+            this.objectName = script.getFullObjectName();
+            this.objectType = script.getObjectType().toString();
+            this.rollback = script instanceof MigrationScript ? ((MigrationScript) script).getRollback() : null;
+            this.scriptHash = script.getHash();
+            this.deployedHash = "SUCCESS".equals(status) ? Util.getMd5Hash(script.getContent()) : null;
+            this.status = status;
+            this.log = log;
+            this.queryId = queryId;
+        }
+    }
+
     public List<Script> getScriptsInSchema(String schema) throws SQLException {
         List<Script> scripts = new ArrayList<>();
         for(ScriptObjectType type: ScriptObjectType.values()) {
@@ -241,7 +884,7 @@ public class ScriptRepo {
         log.info("Getting all scripts in schema: {}", schema);
         String sql = String.format("SELECT GET_DDL('SCHEMA', '%s', true)", schema);
         log.debug("Getting all scripts using SQL: {}", sql);
-        ResultSet resultSet = connection.createStatement().executeQuery(sql);
+        ResultSet resultSet = getConnection().createStatement().executeQuery(sql);
         if(resultSet.next()) {
             String ddl = resultSet.getString(1);
             return SqlTokenizer.parseDdlScripts(ddl, getDatabaseName(), schema);
@@ -252,17 +895,77 @@ public class ScriptRepo {
     }
 
     public List<Script> getStateScriptsInSchema(String schema) throws SQLException {
-        List<Script> scripts = new ArrayList<>();
+        List<Script> scripts = getBulkStateScriptsInSchema(schema);
+        for(DbObject dbObject: getObjectsMissingInBulk(schema, scripts)) {
+            Script script = getObjectScript(dbObject);
+            if(script != null) {
+                scripts.add(script);
+            }
+        }
         for(ScriptObjectType type: ScriptObjectType.values()) {
-            if(!type.isMigration()) {
+            if(!type.isMigration() && !BULK_DDL_TYPES.contains(type)) {
                 scripts.addAll(getScriptsInSchema(schema, type));
             }
         }
         return scripts;
     }
 
+    /**
+     * Reads the state scripts of the object types in {@link #BULK_DDL_TYPES} with a single GET_DDL of the schema.
+     * Scripts whose ddl was split in the middle of a body are left out, see {@link #getObjectsMissingInBulk}.
+     */
+    public List<Script> getBulkStateScriptsInSchema(String schema) throws SQLException {
+        List<Script> scripts = new ArrayList<>();
+        for(Script script: getAllScriptsInSchema(schema)) {
+            if(!BULK_DDL_TYPES.contains(script.getObjectType())) {
+                continue;
+            }
+            if(!SqlTokenizer.isTerminated(script.getContent())) {
+                log.debug("Skipping incomplete ddl of {} from the schema ddl.", script.getId());
+                continue;
+            }
+            scripts.add(script);
+        }
+        return scripts;
+    }
+
+    /**
+     * Lists the objects of the types in {@link #BULK_DDL_TYPES} that are missing from the scripts read with
+     * {@link #getBulkStateScriptsInSchema}, such as objects with quoted names, external functions, materialized views
+     * or procedures with a CREATE statement in their body. Their ddl has to be read object by object.
+     */
+    public List<DbObject> getObjectsMissingInBulk(String schema, List<Script> bulkScripts) throws SQLException {
+        Set<String> bulkObjects = new HashSet<>();
+        for(Script script: bulkScripts) {
+            bulkObjects.add(script.getObjectType() + "." + script.getObjectName().toUpperCase());
+        }
+        List<DbObject> missingObjects = new ArrayList<>();
+        for(ScriptObjectType type: BULK_DDL_TYPES) {
+            for(DbObject dbObject: getObjectsInSchema(schema, type)) {
+                if(!bulkObjects.contains(type + "." + dbObject.getObjectName().toUpperCase())) {
+                    missingObjects.add(dbObject);
+                }
+            }
+        }
+        if(!missingObjects.isEmpty()) {
+            log.info("{} objects of schema {} are not part of the schema ddl, reading them one by one.", missingObjects.size(), schema);
+        }
+        return missingObjects;
+    }
+
     public List<Script> getScriptsInSchema(String schema, ScriptObjectType type) throws SQLException {
-        log.debug("Getting {} type scripts in schema: {}",type, schema);
+        List<Script> scripts = new ArrayList<>();
+        for(DbObject dbObject: getObjectsInSchema(schema, type)) {
+            Script script = getObjectScript(dbObject);
+            if(script != null) {
+                scripts.add(script);
+            }
+        }
+        return scripts;
+    }
+
+    public List<DbObject> getObjectsInSchema(String schema, ScriptObjectType type) throws SQLException {
+        log.debug("Getting {} type objects in schema: {}",type, schema);
         String sql = "";
         if(type == ScriptObjectType.FUNCTIONS || type == ScriptObjectType.PROCEDURES) {
             sql = String.format("SELECT %s_NAME, ARGUMENT_SIGNATURE FROM INFORMATION_SCHEMA.%s WHERE %s_SCHEMA = '%s'",type.getEscapedSingular(), type, type.getEscapedSingular(), schema.toUpperCase());
@@ -281,95 +984,67 @@ public class ScriptRepo {
             sql = String.format("SELECT %s_NAME FROM INFORMATION_SCHEMA.%s WHERE %s_SCHEMA = '%s'",type.getEscapedSingular(), type, type.getEscapedSingular(), schema.toUpperCase());
         }
 
-        log.debug("Getting all scripts using SQL: {}", sql);
-        List<Script> scripts = new ArrayList<>();
-        ResultSet resultSet = connection.createStatement().executeQuery(sql);
+        log.debug("Getting all objects using SQL: {}", sql);
+        List<DbObject> dbObjects = new ArrayList<>();
+        ResultSet resultSet = getConnection().createStatement().executeQuery(sql);
         while (resultSet.next()) {
-            String ddlSql = "";
             String scriptObjectName = resultSet.getString(1);
+            String ddlName = schema.toUpperCase() + "." + scriptObjectName.toUpperCase();
             if(type == ScriptObjectType.FUNCTIONS || type == ScriptObjectType.PROCEDURES) {
                 String arguments = resultSet.getString(2);
                 String regex = "(\\(|\\,\\s)\\w+";
                 arguments = arguments.replaceAll(regex, "$1");
-                ddlSql = String.format("SELECT GET_DDL('%s', '%s.%s%s', true);",type.getEscapedSingular(), schema.toUpperCase(), scriptObjectName.toUpperCase(), arguments);
-            }
-            else {
-                ddlSql = String.format("SELECT GET_DDL('%s', '%s.%s', true);",type.getEscapedSingular(), schema.toUpperCase(), scriptObjectName.toUpperCase());
-            }
-            log.debug("Get ddl script: {}", ddlSql);
-            ResultSet ddlResultSet = connection.createStatement().executeQuery(ddlSql);
-            ddlResultSet.next();
-            String content = ddlResultSet.getString(1);
-            if (content == null) {
-                log.warn("Unable to read Script definition for {}", scriptObjectName);
-                continue;
-            }
-            if(type.isMigration()) {
-//                String migrationHeader = "---version: 0, author: DlSync\n";
-//                String rollback = String.format("\n---rollback: DROP %s IF EXISTS %s;", type.getSingular(), getDatabaseName() + "." + schema + "." + scriptObjectName);
-//                String verify = String.format("\n---verify: SHOW %s LIKE %s;",type, getDatabaseName() + "." + schema + "." + scriptObjectName);
-//                content = migrationHeader + content + rollback + verify;
-//                Script script = ScriptFactory.getScript(getDatabaseName(), schema, type, scriptObjectName, content, 0L, null, null, null);
-                MigrationScript script = ScriptFactory.getMigrationScript(getDatabaseName(), schema, type, scriptObjectName, content);
-                scripts.add(script);
-            }
-            else {
-                Script script = ScriptFactory.getStateScript(getDatabaseName(), schema, type, scriptObjectName, content);
-                scripts.add(script);
+                ddlName += arguments;
             }
+            dbObjects.add(new DbObject(schema, type, scriptObjectName, ddlName));
+        }
+        return dbObjects;
+    }
 
+    /**
+     * Reads the ddl of a single object.
+     * @return the script of the object, or null if its definition can not be read.
+     */
+    public Script getObjectScript(DbObject dbObject) throws SQLException {
+        ScriptObjectType type = dbObject.getObjectType();
+        String ddlSql = String.format("SELECT GET_DDL('%s', '%s', true);", type.getEscapedSingular(), dbObject.getDdlName());
+        log.debug("Get ddl script: {}", ddlSql);
+        ResultSet ddlResultSet = getConnection().createStatement().executeQuery(ddlSql);
+        ddlResultSet.next();
+        String content = ddlResultSet.getString(1);
+        if (content == null) {
+            log.warn("Unable to read Script definition for {}", dbObject.getObjectName());
+            return null;
         }
-        return scripts;
+        if(type.isMigration()) {
+            return ScriptFactory.getMigrationScript(getDatabaseName(), dbObject.getSchemaName(), type, dbObject.getObjectName(), content);
+        }
+        return ScriptFactory.getStateScript(getDatabaseName(), dbObject.getSchemaName(), type, dbObject.getObjectName(), content);
     }
 
 
-    public Script addConfig(Script script) throws SQLException {
-        if(script.getObjectType() == ScriptObjectType.TABLES) {
-            String additionalContent = String.format("SELECT * FROM %s", script.getFullObjectName());
-            ResultSet resultSet = connection.createStatement().executeQuery(additionalContent);
-            int count = resultSet.getMetaData().getColumnCount();
-            StringBuilder insertBuilder = new StringBuilder(String.format("INSERT INTO %s values", script.getFullObjectName()));
-            Boolean firstRow = true;
-            while(resultSet.next()) {
-                if(!firstRow) {
-                    insertBuilder.append(", ");
-                }
-                firstRow = false;
-                for(int i = 1; i <= count; i++) {
-                    if(i == 1) {
-                        insertBuilder.append("(");
-                    }
-                    else {
-                        insertBuilder.append(", ");
-                    }
-                    Object value = resultSet.getObject(i);
-                    if(value == null) {
-                        insertBuilder.append("null");
-                    }
-                    else {
-                        insertBuilder.append(String.format("'%s'", value.toString().replace("'", "''")));
-                    }
-                }
-                insertBuilder.append(")");
-
+    /**
+     * Streams the rows of a config table into the writer as insert migrations, see {@link ConfigTableExporter}.
+     * Rows are fetched in batches, so memory use does not grow with the size of the table.
+     * @param chunkMapper applied to each migration before it is written.
+     * @return number of rows exported.
+     */
+    public long exportConfig(String fullObjectName, Writer writer, UnaryOperator<String> chunkMapper) throws SQLException, IOException {
+        String query = "SELECT * FROM " + fullObjectName + ";";
+        log.debug("Exporting config table with sql: {}", query);
+        try (Statement statement = getConnection().createStatement()) {
+            statement.setFetchSize(CONFIG_FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery(query)) {
+                return new ConfigTableExporter(fullObjectName, writer, chunkMapper).export(resultSet);
             }
-            insertBuilder.append(";");
-            String migrationHeader = "---version: 1, author: DlSync\n";
-            String rollback = "\n---rollback: DELETE FROM " + script.getFullObjectName() + ";";
-            String verify = "\n---verify: SELECT COUNT(*) FROM  " + script.getFullObjectName() + ";";
-            String insertContent = migrationHeader + insertBuilder + rollback + verify;
-
-            String newContent = script.getContent() + "\n\n" + insertContent;
-            script.setContent(newContent);
         }
-        return script;
     }
 
 //    public List<Script> getScriptsInSchemaWithArguments(String schema, ScriptObjectType type) throws SQLException {
 //        String sql = String.format("SELECT %s_NAME, ARGUMENT_SIGNATURE FROM INFORMATION_SCHEMA.%s WHERE %s_SCHEMA = '%s'",type.getSingular(), type, type.getSingular(), schema.toUpperCase());
 //        log.debug("Getting all scripts using SQL: {}", sql);
 //        List<Script> scripts = new ArrayList<>();
-//        ResultSet resultSet = connection.createStatement().executeQuery(sql);
+//        ResultSet resultSet = getConnection().createStatement().executeQuery(sql);
 //        while (resultSet.next()) {
 //            String scriptObjectName = resultSet.getString(1);
 //            String arguments = resultSet.getString(2);
@@ -377,7 +1052,7 @@ public class ScriptRepo {
 //            arguments = arguments.replaceAll(regex, "$1");
 //            String ddlSql = String.format("SELECT GET_DDL('%s', '%s.%s%s', true);",type.getSingular(), schema.toUpperCase(), scriptObjectName.toUpperCase(), arguments);
 //            log.info("Get ddl script: {}", ddlSql);
-//            ResultSet ddlResultSet = connection.createStatement().executeQuery(ddlSql);
+//            ResultSet ddlResultSet = getConnection().createStatement().executeQuery(ddlSql);
 //            ddlResultSet.next();
 //            String content = ddlResultSet.getString(1);
 //            if (content == null) {
@@ -428,12 +1103,12 @@ public class ScriptRepo {
     }
 
     public ResultSet executeQuery(String query) throws SQLException {
-        return connection.createStatement().executeQuery(query);
+        return getConnection().createStatement().executeQuery(query);
     }
 
     public void insertDependencyList(List<ScriptDependency> dependencyList) throws SQLException {
         String createTable = "CREATE TABLE IF NOT EXISTS " + DEPENDENCY_LINEAGE_TABLE_NAME + "(OBJECT_NAME VARCHAR, OBJECT_TYPE VARCHAR, DEPENDENCY VARCHAR, DEPENDECY_OBEJECT_TYPE VARCHAR, CHANGE_SYNC_ID VARCHAR, CREATED_BY VARCHAR, CREATED_TS TIMESTAMP);";
-        connection.createStatement().executeUpdate(createTable);
+        getConnection().createStatement().executeUpdate(createTable);
         StringBuilder insertSql = new StringBuilder("INSERT INTO " + DEPENDENCY_LINEAGE_TABLE_NAME + " VALUES ");
 
         for(ScriptDependency dependency: dependencyList) {
@@ -442,13 +1117,13 @@ public class ScriptRepo {
         }
         insertSql.deleteCharAt(insertSql.length() - 1);
         log.info("inserting dag scripts using {} ", insertSql);
-        connection.createStatement().executeUpdate(insertSql.toString());
+        getConnection().createStatement().executeUpdate(insertSql.toString());
     }
 
     public void insertSortedScript(List<Script> sequencedScript) throws SQLException {
         DependencyExtractor dependencyExtractor = new DependencyExtractor();
         String createTable = "CREATE OR REPLACE TABLE DL_SYNC_TOPOLOGICAL_SORTED(id INT, script VARCHAR, dependency_size INT, dependencies VARCHAR);";
-        connection.createStatement().executeUpdate(createTable);
+        getConnection().createStatement().executeUpdate(createTable);
         StringBuilder insertSql = new StringBuilder("INSERT INTO DL_SYNC_TOPOLOGICAL_SORTED VALUES ");
 
         for(int i = 0; i < sequencedScript.size(); i++) {
@@ -462,7 +1137,7 @@ public class ScriptRepo {
         }
         insertSql.deleteCharAt(insertSql.length() - 1);
         log.info("inserting sorted scripts using {} ", insertSql.toString());
-        connection.createStatement().executeUpdate(insertSql.toString());
+        getConnection().createStatement().executeUpdate(insertSql.toString());
     }
 
     public List<MigrationScript> getMigrationScripts(Set<String> ids) throws SQLException {
@@ -471,7 +1146,7 @@ public class ScriptRepo {
         }
         String allIdJoined = ids.stream().map(v -> "'" + v + "'").collect(Collectors.joining(",", "(", ");"));
         String query = "SELECT * FROM " + SCRIPT_HISTORY_TABLE_NAME + " where SCRIPT_ID in " + allIdJoined;
-        PreparedStatement statement = connection.prepareStatement(query);
+        PreparedStatement statement = getConnection().prepareStatement(query);
         ResultSet rs = statement.executeQuery();
         List<MigrationScript> migrations = new ArrayList<>();
         while(rs.next()) {
@@ -497,6 +1172,7 @@ public class ScriptRepo {
     }
 
     public void executeRollback(MigrationScript migrationScript) throws SQLException {
+        Connection connection = getConnection();
         Statement statement = connection.createStatement();
         boolean autoCommit = connection.getAutoCommit();
         try {
@@ -523,6 +1199,7 @@ public class ScriptRepo {
     }
 
     public boolean executeVerify(MigrationScript migrationScript) throws SQLException {
+        Connection connection = getConnection();
         Statement statement = connection.createStatement();
         boolean autoCommit = connection.getAutoCommit();
         try {
@@ -549,7 +1226,7 @@ public class ScriptRepo {
 
     private void deleteScriptHash(MigrationScript migration) throws SQLException {
         String deleteSql = "DELETE FROM " + SCRIPT_HISTORY_TABLE_NAME + " WHERE SCRIPT_ID=?;";
-        PreparedStatement statement = connection.prepareStatement(deleteSql);
+        PreparedStatement statement = getConnection().prepareStatement(deleteSql);
         statement.setString(1, migration.getId());
         statement.executeUpdate();
     }
@@ -569,7 +1246,7 @@ public class ScriptRepo {
         List<TestResult> testResults = new ArrayList<>();
         try {
             log.debug("Running test script: {}", testScript.getObjectName());
-            ResultSet resultSet = connection.createStatement().executeQuery(testScript.getTestQuery());
+            ResultSet resultSet = getConnection().createStatement().executeQuery(testScript.getTestQuery());
             while(resultSet.next()) {
                 TestResult testResult = new TestResult(resultSet.getString(1), resultSet.getString(2));
                 testResults.add(testResult);
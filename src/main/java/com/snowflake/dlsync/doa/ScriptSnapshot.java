@@ -0,0 +1,115 @@
+package com.snowflake.dlsync.doa;
+
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable view of the script tree read by {@link ScriptSource}, indexed by id, full object name, object type and
+ * file path. The snapshot stays valid while the modification time and size of every script file are unchanged.
+ * Every lookup returns copies of the scripts, so callers can inject parameters without changing the snapshot.
+ */
+public class ScriptSnapshot {
+    private final SortedMap<Path, ScriptFile> files;
+    private final List<Script> scripts;
+    private final Map<String, Script> scriptsById;
+    private final Map<String, List<Script>> scriptsByFullObjectName;
+    private final Map<ScriptObjectType, List<Script>> scriptsByObjectType;
+
+    ScriptSnapshot(SortedMap<Path, ScriptFile> files) {
+        this.files = Collections.unmodifiableSortedMap(new TreeMap<>(files));
+        List<Script> allScripts = new ArrayList<>();
+        for(ScriptFile file: this.files.values()) {
+            allScripts.addAll(file.scripts);
+        }
+        this.scripts = Collections.unmodifiableList(allScripts);
+        this.scriptsById = new HashMap<>();
+        for(Script script: allScripts) {
+            scriptsById.putIfAbsent(script.getId(), script);
+        }
+        this.scriptsByFullObjectName = allScripts.stream().collect(Collectors.groupingBy(Script::getFullObjectName));
+        this.scriptsByObjectType = allScripts.stream().collect(Collectors.groupingBy(Script::getObjectType, () -> new EnumMap<>(ScriptObjectType.class), Collectors.toList()));
+    }
+
+    /**
+     * @return true if the given files are exactly the files of the snapshot, with the same modification time and size.
+     */
+    boolean isCurrent(Map<Path, BasicFileAttributes> currentFiles) {
+        if(currentFiles.size() != files.size()) {
+            return false;
+        }
+        for(Map.Entry<Path, BasicFileAttributes> currentFile: currentFiles.entrySet()) {
+            if(!isCurrent(currentFile.getKey(), currentFile.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isCurrent(Path path, BasicFileAttributes attributes) {
+        ScriptFile file = files.get(path);
+        return file != null && file.lastModified.equals(attributes.lastModifiedTime()) && file.size == attributes.size();
+    }
+
+    ScriptFile getFile(Path path) {
+        return files.get(path);
+    }
+
+    public int size() {
+        return scripts.size();
+    }
+
+    public List<Script> getScripts() {
+        return copyOf(scripts);
+    }
+
+    public Script getById(String id) {
+        Script script = scriptsById.get(id);
+        return script == null ? null : script.copy();
+    }
+
+    public List<Script> getByFullObjectName(String fullObjectName) {
+        return copyOf(scriptsByFullObjectName.getOrDefault(fullObjectName, Collections.emptyList()));
+    }
+
+    public List<Script> getByObjectType(ScriptObjectType objectType) {
+        return copyOf(scriptsByObjectType.getOrDefault(objectType, Collections.emptyList()));
+    }
+
+    public List<Script> getByPath(Path path) {
+        ScriptFile file = files.get(path);
+        return file == null ? new ArrayList<>() : copyOf(file.scripts);
+    }
+
+    private static List<Script> copyOf(List<Script> scripts) {
+        List<Script> copies = new ArrayList<>(scripts.size());
+        for(Script script: scripts) {
+            copies.add(script.copy());
+        }
+        return copies;
+    }
+
+    /**
+     * Scripts parsed from one file, with the modification time and size of the file when it was read.
+     */
+    static class ScriptFile {
+        private final FileTime lastModified;
+        private final long size;
+        private final List<Script> scripts;
+
+        ScriptFile(BasicFileAttributes attributes, List<Script> scripts) {
+            this.lastModified = attributes.lastModifiedTime();
+            this.size = attributes.size();
+            this.scripts = Collections.unmodifiableList(new ArrayList<>(scripts));
+        }
+
+        List<Script> getScripts() {
+            return scripts;
+        }
+    }
+}
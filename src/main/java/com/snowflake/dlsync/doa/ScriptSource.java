@@ -1,6 +1,8 @@
 package com.snowflake.dlsync.doa;
 
 import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.Util;
+import com.snowflake.dlsync.metrics.Metrics;
 import com.snowflake.dlsync.models.*;
 import com.snowflake.dlsync.parser.SqlTokenizer;
 import lombok.extern.slf4j.Slf4j;
@@ -8,68 +10,84 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.io.Writer;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 @Slf4j
 public class ScriptSource {
+    private static final int SCRIPT_FILE_DEPTH = 4;
+    private static final int MAX_READ_PARALLELISM = 8;
     private String scriptRoot;
     private String mainScriptDir;
     private String testScriptDir;
+    private ScriptCache scriptCache;
+    private ScriptSnapshot snapshot;
+    private Metrics metrics = new Metrics();
 
     public ScriptSource(String scriptRoot) {
+        this(scriptRoot, false);
+    }
+
+    public ScriptSource(String scriptRoot, boolean useCache) {
         this.scriptRoot = scriptRoot;
         mainScriptDir = Files.exists(Path.of(scriptRoot, "main")) ? Path.of(scriptRoot, "main").toString(): scriptRoot;
         testScriptDir = Path.of(scriptRoot, "test").toString();
+        if(useCache) {
+            scriptCache = new ScriptCache(scriptRoot);
+        }
         log.debug("Script file reader initialized with scriptRoot: {}", scriptRoot);
     }
 
-    private List<String> readDatabase() {
-        File scriptFiles = new File(mainScriptDir);
-        List<String> dbs = new ArrayList<>();
-        if(scriptFiles.exists()) {
-            File[] allDbs = scriptFiles.listFiles();
-            for(File file: allDbs) {
-                if(file.isDirectory()) {
-                    dbs.add(file.getName());
-                }
-            }
-        }
-        else {
-            log.error("Invalid path for script provided: {}", scriptFiles.getAbsolutePath());
-            throw new RuntimeException("No valid script source path provided");
-        }
-        return dbs;
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
     }
 
-    private List<String> readSchemas(String database) {
-        log.info("Reading all schema from database {}", database);
-        List<String> schemas = new ArrayList<>();
-        File dbFile = Path.of(mainScriptDir, database).toFile();
-        if(dbFile.exists()) {
-            File[] allFiles = dbFile.listFiles();
-            for(File file: allFiles) {
-                if(file.isDirectory()) {
-                    schemas.add(file.getName());
-                }
-            }
-        }
-        return schemas;
+    public List<Script> getAllScripts() throws IOException {
+        return getSnapshot().getScripts();
     }
 
-    public List<Script> getAllScripts() throws IOException {
-        List<Script> allScripts = new ArrayList<>();
-        for(String database: readDatabase()) {
-            for(String schema: readSchemas(database)) {
-                allScripts.addAll(getScriptsInSchema(database, schema));
-            }
+    /**
+     * Returns the snapshot of the script tree. The snapshot is reused as long as no script file was added, removed or
+     * modified. Otherwise only the added and modified files are read again.
+     */
+    public synchronized ScriptSnapshot getSnapshot() throws IOException {
+        return metrics.time(Metrics.DISCOVERY, this::readSnapshot);
+    }
+
+    private ScriptSnapshot readSnapshot() throws IOException {
+        Path mainScriptPath = Path.of(mainScriptDir);
+        if(!Files.exists(mainScriptPath)) {
+            log.error("Invalid path for script provided: {}", mainScriptPath.toAbsolutePath());
+            throw new RuntimeException("No valid script source path provided");
+        }
+        SortedMap<Path, BasicFileAttributes> scriptFiles = findScriptFiles(mainScriptPath, 0);
+        if(snapshot != null && snapshot.isCurrent(scriptFiles)) {
+            log.debug("Script files unchanged, using the snapshot of {} scripts.", snapshot.size());
+            return snapshot;
+        }
+        List<Path> changedFiles = scriptFiles.entrySet().stream()
+                .filter(file -> snapshot == null || !snapshot.isCurrent(file.getKey(), file.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        log.info("Reading {} of {} script files from {}", changedFiles.size(), scriptFiles.size(), mainScriptDir);
+        metrics.add(Metrics.SCRIPT_FILES, scriptFiles.size());
+        metrics.add(Metrics.SCRIPT_FILES_READ, changedFiles.size());
+        Map<Path, List<Script>> changedScripts = readScriptFiles(changedFiles);
+        SortedMap<Path, ScriptSnapshot.ScriptFile> files = new TreeMap<>();
+        for(Map.Entry<Path, BasicFileAttributes> file: scriptFiles.entrySet()) {
+            List<Script> scripts = changedScripts.containsKey(file.getKey()) ? changedScripts.get(file.getKey()) : snapshot.getFile(file.getKey()).getScripts();
+            files.put(file.getKey(), new ScriptSnapshot.ScriptFile(file.getValue(), scripts));
+        }
+        snapshot = new ScriptSnapshot(files);
+        if(scriptCache != null) {
+            scriptCache.save(scriptFiles.keySet().stream().map(Path::toString).collect(Collectors.toSet()));
         }
-        return allScripts;
+        return snapshot;
     }
 
     public List<TestScript> getTestScripts(List<Script> scripts) throws IOException {
@@ -89,25 +107,134 @@ public class ScriptSource {
     public List<Script> getScriptsInSchema(String database, String schema) throws IOException {
         log.info("Reading script files from schema: {}", schema);
         List<Script> scripts = new ArrayList<>();
-        File schemaDirectory = Path.of(mainScriptDir, database, schema).toFile();
-        File[] scriptTypeDirectories = schemaDirectory.listFiles();
-
-        for(File scriptType: scriptTypeDirectories) {
-            if(scriptType.isDirectory() ) {
-                File[] scriptFiles = scriptType.listFiles();
-                for(File file: scriptFiles) {
-                    if(file.getName().toLowerCase().endsWith(".sql")){
-                       Set<Script> scriptsFromFile = SqlTokenizer.parseScript(file.getPath(), file.getName(), scriptType.getName(), Files.readString(file.toPath()));
-                       scripts.addAll(scriptsFromFile);
+        readScriptFiles(findScriptFiles(Path.of(mainScriptDir, database, schema), 2).keySet()).values().forEach(scripts::addAll);
+        return scripts;
+    }
+
+    /**
+     * Finds the script files in the database/schema/object type/file layout under the start directory.
+     * @param startDepth depth of the start directory in the layout, 0 for the main script directory.
+     * @return the script files and their attributes, sorted by path.
+     */
+    private SortedMap<Path, BasicFileAttributes> findScriptFiles(Path start, int startDepth) throws IOException {
+        SortedMap<Path, BasicFileAttributes> scriptFiles = new TreeMap<>();
+        Files.walkFileTree(start, EnumSet.noneOf(FileVisitOption.class), SCRIPT_FILE_DEPTH - startDepth, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                if(!directory.equals(start) && directory.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                int depth = startDepth + start.relativize(file).getNameCount();
+                if(depth == SCRIPT_FILE_DEPTH) {
+                    if(file.getFileName().toString().toLowerCase().endsWith(".sql")) {
+                        scriptFiles.put(file, attributes);
                     }
                     else {
-                        log.warn("Script Skipped, File not SQL: {} ", file.getName());
+                        log.warn("Script Skipped, File not SQL: {} ", file.getFileName());
                     }
                 }
+                else if(depth == SCRIPT_FILE_DEPTH - 1) {
+                    log.warn("Script file found outside object type directory: {} ", file.getFileName());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return scriptFiles;
+    }
+
+    /**
+     * Reads and parses the script files on a bounded fork join pool. The scripts are returned in the order of the files.
+     * All files are read even if some fail, and the failures are reported together.
+     */
+    private Map<Path, List<Script>> readScriptFiles(Collection<Path> scriptFiles) throws IOException {
+        int parallelism = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_READ_PARALLELISM));
+        ForkJoinPool readPool = new ForkJoinPool(parallelism);
+        List<ScriptFileResult> results;
+        try {
+            results = readPool.submit(() -> scriptFiles.parallelStream()
+                    .map(this::readScriptFile)
+                    .collect(Collectors.toList())
+            ).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading script files.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            readPool.shutdown();
+        }
+
+        Map<Path, List<Script>> scripts = new LinkedHashMap<>();
+        List<ScriptFileResult> failures = new ArrayList<>();
+        for(ScriptFileResult result: results) {
+            if(result.error != null) {
+                log.error("Error reading script file {}: {}", result.file, result.error.getMessage());
+                failures.add(result);
             }
             else {
-                log.warn("Script file found outside object type directory: {} ", scriptType.getName());
+                scripts.put(result.file, result.scripts);
+            }
+        }
+        if(failures.size() == 1) {
+            Exception error = failures.get(0).error;
+            if(error instanceof IOException) {
+                throw (IOException) error;
+            }
+            throw (RuntimeException) error;
+        }
+        if(!failures.isEmpty()) {
+            RuntimeException error = new RuntimeException(String.format("%d script files failed to parse: %s", failures.size(),
+                    failures.stream().map(failure -> failure.file.toString()).collect(Collectors.joining(", "))));
+            failures.forEach(failure -> error.addSuppressed(failure.error));
+            throw error;
+        }
+        return scripts;
+    }
+
+    private ScriptFileResult readScriptFile(Path file) {
+        try {
+            List<Script> scripts = new ArrayList<>(metrics.time(Metrics.PARSE, () -> parseScriptFile(file.toFile(), file.getParent().getFileName().toString())));
+            scripts.sort(Comparator.comparing(script -> script instanceof MigrationScript ? ((MigrationScript) script).getVersion() : 0L));
+            return new ScriptFileResult(file, scripts, null);
+        } catch (IOException | RuntimeException e) {
+            return new ScriptFileResult(file, null, e);
+        }
+    }
+
+    private static class ScriptFileResult {
+        private final Path file;
+        private final List<Script> scripts;
+        private final Exception error;
+
+        private ScriptFileResult(Path file, List<Script> scripts, Exception error) {
+            this.file = file;
+            this.scripts = scripts;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Parses the script file, or takes the scripts from the cache if the file content has not changed since it was cached.
+     */
+    private Set<Script> parseScriptFile(File file, String scriptType) throws IOException {
+        String content = Files.readString(file.toPath());
+        if(scriptCache == null) {
+            return SqlTokenizer.parseScript(file.getPath(), file.getName(), scriptType, content);
+        }
+        String md5 = Util.getMd5Hash(content);
+        Set<Script> scripts = scriptCache.get(file.getPath(), md5);
+        if(scripts == null) {
+            log.debug("Parsing changed script file: {}", file.getPath());
+            scripts = SqlTokenizer.parseScript(file.getPath(), file.getName(), scriptType, content);
+            for(Script script: scripts) {
+                script.setReferencedIdentifiers(SqlTokenizer.getAllFullIdentifiers(script.getContent()));
             }
+            scriptCache.put(file.getPath(), md5, scripts);
         }
         return scripts;
     }
@@ -173,20 +300,31 @@ public class ScriptSource {
 
     public void createScriptFile(Script script) {
         try {
-            String scriptFileName = script.getObjectName() + ".SQL";
-            String scriptDirectoryPath = String.format("%s/%s/%s/%s", mainScriptDir, script.getDatabaseName(), script.getSchemaName(), script.getObjectType());
-            File directory = new File(scriptDirectoryPath);
+            Path scriptFile = getScriptFilePath(script);
+            File directory = scriptFile.getParent().toFile();
             directory.mkdirs();
-            FileWriter fileWriter = new FileWriter(Path.of(scriptDirectoryPath,  scriptFileName).toFile());
+            FileWriter fileWriter = new FileWriter(scriptFile.toFile());
             fileWriter.write(script.getContent());
             fileWriter.close();
-            log.debug("File {} created successfully", Path.of(scriptDirectoryPath,  scriptFileName));
+            log.debug("File {} created successfully", scriptFile);
         } catch (IOException e) {
             log.error("Error in creating script: {}", e.getMessage());
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Opens the file of a script created by {@link #createScriptFile(Script)} to append more content to it.
+     */
+    public Writer appendScriptFile(Script script) throws IOException {
+        return Files.newBufferedWriter(getScriptFilePath(script), StandardOpenOption.APPEND);
+    }
+
+    private Path getScriptFilePath(Script script) {
+        String scriptDirectoryPath = String.format("%s/%s/%s/%s", mainScriptDir, script.getDatabaseName(), script.getSchemaName(), script.getObjectType());
+        return Path.of(scriptDirectoryPath, script.getObjectName() + ".SQL");
+    }
+
     private Script getScriptByName(List<Script> allScripts, String fullObjectName) {
         return allScripts.parallelStream().filter(script -> script.getFullObjectName().equals(fullObjectName)).findFirst().get();
     }
@@ -0,0 +1,179 @@
+package com.snowflake.dlsync.metrics;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.snowflake.dlsync.models.ChangeType;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.Status;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timers and counters of a single dlsync run, shared by all components and threads of the run. Each timer keeps a
+ * {@link Histogram} of its durations, so the report has the total time spent in every phase of the run and the
+ * percentiles of the durations, e.g. of the DDL of each script type.
+ */
+public class Metrics {
+    public static final String DISCOVERY = "discovery";
+    public static final String PARSE = "parse";
+    public static final String DEPENDENCY_EXTRACTION = "dependency.extraction";
+    public static final String DEPENDENCY_SORT = "dependency.sort";
+    public static final String PARAMETER_INJECTION = "parameter.injection";
+    public static final String DDL = "ddl";
+    public static final String HISTORY_LOAD = "history.load";
+    public static final String HISTORY_WRITE = "history.write";
+
+    public static final String SCRIPT_FILES = "script.files";
+    public static final String SCRIPT_FILES_READ = "script.files.read";
+    public static final String DEPENDENCIES = "dependencies";
+    public static final String SCRIPTS_DEPLOYED = "scripts.deployed";
+    public static final String SCRIPTS_FAILED = "scripts.failed";
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Histogram> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the call and records its duration for the phase, also if the call throws.
+     */
+    public <T, E extends Exception> T time(String name, TimedCall<T, E> call) throws E {
+        long callStartNanos = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            recordNanos(name, System.nanoTime() - callStartNanos);
+        }
+    }
+
+    /**
+     * Runs the call for a script. The duration is recorded for the phase and for the object type of the script, e.g.
+     * as ddl and ddl.VIEWS.
+     */
+    public <T, E extends Exception> T time(String name, Script script, TimedCall<T, E> call) throws E {
+        long callStartNanos = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            recordNanos(name, script, System.nanoTime() - callStartNanos);
+        }
+    }
+
+    public <E extends Exception> void time(String name, TimedRun<E> run) throws E {
+        time(name, () -> {
+            run.run();
+            return null;
+        });
+    }
+
+    public <E extends Exception> void time(String name, Script script, TimedRun<E> run) throws E {
+        time(name, script, () -> {
+            run.run();
+            return null;
+        });
+    }
+
+    public void recordNanos(String name, long nanos) {
+        getTimer(name).record(nanos);
+    }
+
+    public void recordNanos(String name, Script script, long nanos) {
+        getTimer(name).record(nanos);
+        getTimer(getScriptTimerName(name, script)).record(nanos);
+    }
+
+    private static String getScriptTimerName(String name, Script script) {
+        return name + "." + script.getObjectType();
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+    }
+
+    public long getCount(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public Histogram getTimer(String name) {
+        return timers.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * @return the whole report of the run, for example {@code {"changeType":"DEPLOY","status":"SUCCESS","durationMillis":1200,"counters":{"scripts.deployed":2},"timers":{"ddl":{"count":2,"totalMillis":900.0,"p50Millis":450.0,"p90Millis":500.0,"p99Millis":500.0,"maxMillis":500.0}}}}.
+     */
+    public ObjectNode toReport(ChangeType changeType, Status status) {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode report = mapper.createObjectNode();
+        report.put("changeType", String.valueOf(changeType));
+        report.put("status", String.valueOf(status));
+        report.put("durationMillis", getElapsedMillis());
+        ObjectNode counterNodes = report.putObject("counters");
+        new TreeMap<>(counters).forEach((name, counter) -> counterNodes.put(name, counter.sum()));
+        ObjectNode timerNodes = report.putObject("timers");
+        new TreeMap<>(timers).forEach((name, timer) -> {
+            ObjectNode timerNode = timerNodes.putObject(name);
+            timerNode.put("count", timer.getCount());
+            timerNode.put("totalMillis", toMillis(timer.getSum()));
+            timerNode.put("p50Millis", toMillis(timer.getPercentile(50)));
+            timerNode.put("p90Millis", toMillis(timer.getPercentile(90)));
+            timerNode.put("p99Millis", toMillis(timer.getPercentile(99)));
+            timerNode.put("maxMillis", toMillis(timer.getMax()));
+        });
+        return report;
+    }
+
+    public String toJson(ChangeType changeType, Status status) {
+        try {
+            return new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(toReport(changeType, status));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return compact summary with the total milliseconds of each timer and the counters, for example
+     * {@code {"durationMillis":1200,"totalMillis":{"ddl":900,"history.write":120},"counters":{"scripts.deployed":2}}}.
+     */
+    public String toSummary() {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode summary = mapper.createObjectNode();
+        summary.put("durationMillis", getElapsedMillis());
+        ObjectNode totalNodes = summary.putObject("totalMillis");
+        new TreeMap<>(timers).forEach((name, timer) -> totalNodes.put(name, timer.getSum() / 1_000_000));
+        ObjectNode counterNodes = summary.putObject("counters");
+        new TreeMap<>(counters).forEach((name, counter) -> counterNodes.put(name, counter.sum()));
+        try {
+            return mapper.writeValueAsString(summary);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / NANOS_PER_MILLI * 1000) / 1000.0;
+    }
+
+    @FunctionalInterface
+    public interface TimedCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    @FunctionalInterface
+    public interface TimedRun<E extends Exception> {
+        void run() throws E;
+    }
+}
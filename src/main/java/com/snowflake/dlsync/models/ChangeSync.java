@@ -1,7 +1,10 @@
 package com.snowflake.dlsync.models;
 
+import lombok.Data;
+
 import java.sql.Timestamp;
 
+@Data
 public class ChangeSync {
     private Long id;
     private ChangeType changeType;
@@ -10,4 +13,12 @@ public class ChangeSync {
     private Long changeCount;
     private Timestamp startTime;
     private Timestamp endTime;
+    /**
+     * Seconds since the change sync started, as seen by the database.
+     */
+    private long ageSeconds;
+    /**
+     * Seconds since the last script event of the change sync, or since it started if it has no events.
+     */
+    private long idleSeconds;
 }
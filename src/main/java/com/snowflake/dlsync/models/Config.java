@@ -9,6 +9,13 @@ import java.util.Properties;
 public class Config {
     private String version;
     private Boolean continueOnFailure;
+    private Integer parallelism;
+    private Integer connectionPoolSize;
+    private Boolean scriptCache;
+    private Integer historyFlushInterval;
+    private Boolean failOnMissingInDatabase;
+    private Integer asyncQueries;
+    private Boolean historySnapshot;
     private List<String> scriptExclusion;
     private List<DependencyOverride> dependencyOverride;
     private List<String> configTables;
@@ -25,4 +32,49 @@ public class Config {
     public boolean isContinueOnFailure() {
         return continueOnFailure != null && continueOnFailure;
     }
-}
\ No newline at end of file
+
+    public int getParallelism() {
+        return parallelism == null || parallelism < 1 ? 1 : parallelism;
+    }
+
+    /**
+     * Maximum number of sessions. Without a configured pool size, deploying in waves needs one session for each worker
+     * and one for the main thread.
+     */
+    public int getConnectionPoolSize() {
+        if(connectionPoolSize == null || connectionPoolSize < 1) {
+            return getParallelism() > 1 ? getParallelism() + 1 : 1;
+        }
+        return connectionPoolSize;
+    }
+
+    /**
+     * Number of sessions opened up front. The session of the main thread used by waves is only opened when needed.
+     */
+    public int getWarmConnections() {
+        if(connectionPoolSize == null || connectionPoolSize < 1) {
+            return getParallelism();
+        }
+        return connectionPoolSize;
+    }
+
+    public boolean isScriptCacheEnabled() {
+        return scriptCache != null && scriptCache;
+    }
+
+    public int getHistoryFlushInterval() {
+        return historyFlushInterval == null || historyFlushInterval < 0 ? 0 : historyFlushInterval;
+    }
+
+    public boolean isFailOnMissingInDatabase() {
+        return failOnMissingInDatabase != null && failOnMissingInDatabase;
+    }
+
+    public boolean isHistorySnapshotEnabled() {
+        return historySnapshot != null && historySnapshot;
+    }
+
+    public int getAsyncQueries() {
+        return asyncQueries == null || asyncQueries < 0 ? 0 : asyncQueries;
+    }
+}
@@ -0,0 +1,21 @@
+package com.snowflake.dlsync.models;
+
+import lombok.Data;
+
+/**
+ * Object found in a schema of the database, with the name used to read its ddl.
+ */
+@Data
+public class DbObject {
+    private String schemaName;
+    private ScriptObjectType objectType;
+    private String objectName;
+    private String ddlName;
+
+    public DbObject(String schemaName, ScriptObjectType objectType, String objectName, String ddlName) {
+        this.schemaName = schemaName;
+        this.objectType = objectType;
+        this.objectName = objectName;
+        this.ddlName = ddlName;
+    }
+}
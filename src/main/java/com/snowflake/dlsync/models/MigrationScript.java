@@ -19,10 +19,23 @@ public class MigrationScript extends Script {
         this(null, databaseName, schemaName, objectName, objectType, content, version, author, rollback, verify);
     }
 
+    private MigrationScript(MigrationScript script) {
+        super(script);
+        this.version = script.version;
+        this.author = script.author;
+        this.rollback = script.rollback;
+        this.verify = script.verify;
+    }
+
 
     @Override
     public String getId() {
-        return String.format("%s:%s", getFullObjectName(), version);
+        return getFullObjectName() + ":" + version;
+    }
+
+    @Override
+    public MigrationScript copy() {
+        return new MigrationScript(this);
     }
 
     public Long getVersion() {
@@ -6,6 +6,7 @@ import com.snowflake.dlsync.Util;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Objects;
+import java.util.Set;
 
 @Slf4j
 public abstract class Script {
@@ -13,9 +14,11 @@ public abstract class Script {
     private String databaseName;
     private String schemaName;
     private String objectName;
+    private String fullObjectName;
     private ScriptObjectType objectType;
     private String content;
     private String hash;
+    private Set<String> referencedIdentifiers;
 
     public Script(String scriptPath, String databaseName, String schemaName, String objectName, ScriptObjectType objectType, String content) {
         this.scriptPath = scriptPath;
@@ -27,6 +30,18 @@ public abstract class Script {
         this.hash = hash = Util.getMd5Hash(this.content);
     }
 
+    protected Script(Script script) {
+        this.scriptPath = script.scriptPath;
+        this.databaseName = script.databaseName;
+        this.schemaName = script.schemaName;
+        this.objectName = script.objectName;
+        this.fullObjectName = script.fullObjectName;
+        this.objectType = script.objectType;
+        this.content = script.content;
+        this.hash = script.hash;
+        this.referencedIdentifiers = script.referencedIdentifiers;
+    }
+
     public String getScriptPath() {
         return scriptPath;
     }
@@ -37,6 +52,7 @@ public abstract class Script {
 
     public void setDatabaseName(String databaseName) {
         this.databaseName = databaseName.toUpperCase();
+        this.fullObjectName = null;
     }
 
     public String getSchemaName() {
@@ -45,6 +61,7 @@ public abstract class Script {
 
     public void setSchemaName(String schemaName) {
         this.schemaName = schemaName.toUpperCase();
+        this.fullObjectName = null;
     }
 
     public String getObjectName() {
@@ -53,6 +70,7 @@ public abstract class Script {
 
     public void setObjectName(String objectName) {
         this.objectName = objectName.toUpperCase();
+        this.fullObjectName = null;
     }
 
     public ScriptObjectType getObjectType() {
@@ -69,6 +87,7 @@ public abstract class Script {
 
     public void setContent(String content) {
         this.content = content.trim();
+        this.referencedIdentifiers = null;
     }
 
     public String getHash() {
@@ -79,8 +98,22 @@ public abstract class Script {
         this.hash = hash;
     }
 
+    /**
+     * Identifiers referenced in the content, or null if they are not extracted yet.
+     */
+    public Set<String> getReferencedIdentifiers() {
+        return referencedIdentifiers;
+    }
+
+    public void setReferencedIdentifiers(Set<String> referencedIdentifiers) {
+        this.referencedIdentifiers = referencedIdentifiers;
+    }
+
     public String getFullObjectName() {
-        return String.format("%s.%s.%s", databaseName, schemaName, objectName);
+        if(fullObjectName == null) {
+            fullObjectName = databaseName + "." + schemaName + "." + objectName;
+        }
+        return fullObjectName;
     }
 
     @Override
@@ -102,4 +135,9 @@ public abstract class Script {
     }
     public abstract String getId();
 
+    /**
+     * @return an independent copy of the script that can be changed without affecting this script.
+     */
+    public abstract Script copy();
+
 }
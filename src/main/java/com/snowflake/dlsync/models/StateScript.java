@@ -10,9 +10,18 @@ public class StateScript extends Script {
         this(null, databaseName, schemaName, objectName, objectType, content);
     }
 
+    private StateScript(StateScript script) {
+        super(script);
+    }
+
 
     @Override
     public String getId() {
         return getFullObjectName();
     }
+
+    @Override
+    public StateScript copy() {
+        return new StateScript(this);
+    }
 }
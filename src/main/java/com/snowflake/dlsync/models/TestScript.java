@@ -14,6 +14,12 @@ public class TestScript extends Script {
         this.testQueryGenerator = new TestQueryGenerator(this);
     }
 
+    private TestScript(TestScript script) {
+        super(script);
+        this.mainScript = script.mainScript;
+        this.testQueryGenerator = new TestQueryGenerator(this);
+    }
+
     public Script getMainScript() {
         return mainScript;
     }
@@ -26,4 +32,9 @@ public class TestScript extends Script {
     public String getId() {
         return mainScript.getId() + "_TEST";
     }
+
+    @Override
+    public TestScript copy() {
+        return new TestScript(this);
+    }
 }
@@ -4,38 +4,21 @@ import com.snowflake.dlsync.models.MigrationScript;
 import com.snowflake.dlsync.models.Script;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
 import java.util.Properties;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Slf4j
 public class ParameterInjector {
-    private static final String PARAMETER_FORMAT = "${%s}";
-    private static final String PARAMETRIZATION_START_REGEX = "([(),\\.\\s\\'\\\"@])";
-    private static final String PARAMETRIZATION_END_REGEX = "([(),;\\.\\s\\'\\\"])";
-
-
-    private Properties parameters;
+    private ParameterTemplate template;
 
     public ParameterInjector(Properties parameters) {
         log.debug("Parameter injector initialized with parameters: {}", parameters);
-        this.parameters = parameters;
+        this.template = new ParameterTemplate(parameters);
     }
 
     private String injectParameters(String content) {
-        if(content == null) {
-            return null;
-        }
-        for(String parameter: parameters.stringPropertyNames()) {
-            String parameterPlaceholder = String.format(PARAMETER_FORMAT, parameter);
-            String regex = "(?i)" + Pattern.quote(parameterPlaceholder);
-            String replacement =  Matcher.quoteReplacement(parameters.getProperty(parameter));
-            content = content.replaceAll(regex, replacement);
-        }
-        return content;
+        return template.inject(content);
     }
 
     public void injectParameters(Script script) {
@@ -60,16 +43,13 @@ public class ParameterInjector {
 
 
 
+    public String parametrize(String content) {
+        return template.parametrize(content);
+    }
+
     public void parametrizeScript(Script script, boolean parametrizeObjectName){
         log.debug("Parametrizing script: {}", script.getObjectName());
-        String parametrizedScript = script.getContent();
-        List<String> parameterKeys = parameters.stringPropertyNames().stream().sorted().collect(Collectors.toList());
-        for(String parameter: parameterKeys) {
-            String parameterPlaceholder = String.format(PARAMETER_FORMAT, parameter);
-            String regex = PARAMETRIZATION_START_REGEX + "(?i)" + Pattern.quote(parameters.getProperty(parameter)) + PARAMETRIZATION_END_REGEX;
-            String replacement = "$1" + Matcher.quoteReplacement(parameterPlaceholder) + "$2";
-            parametrizedScript = parametrizedScript.replaceAll(regex, replacement);
-        }
+        String parametrizedScript = template.parametrize(script.getContent());
         script.setContent(parametrizedScript);
         if(parametrizeObjectName) {
             parameterizeObjectName(script);
@@ -79,18 +59,8 @@ public class ParameterInjector {
 
     public void parameterizeObjectName(Script script) {
 //        String objectName = script.getObjectName();
-        String schemaName = script.getSchemaName();
-        String databaseName = script.getDatabaseName();
-
-        List<String> parameterKeys = parameters.stringPropertyNames().stream().sorted().collect(Collectors.toList());
-        for(String parameter: parameterKeys) {
-            String parameterPlaceholder = String.format(PARAMETER_FORMAT, parameter);
-            String regex = "(?i)" + Pattern.quote(parameters.getProperty(parameter));
-            String replacement = Matcher.quoteReplacement(parameterPlaceholder);
-//            objectName = objectName.replaceAll(regex, replacement);
-            schemaName = schemaName.replaceAll(regex, replacement);
-            databaseName = databaseName.replaceAll(regex, replacement);
-        }
+        String schemaName = parametrizeName(script.getSchemaName());
+        String databaseName = parametrizeName(script.getDatabaseName());
 
         String oldName = script.getFullObjectName();
 //        script.setObjectName(objectName);
@@ -99,16 +69,15 @@ public class ParameterInjector {
         log.debug("Parametrize object name Changed from {} to {}", oldName, script.getFullObjectName());
     }
 
+    /**
+     * Replaces the parameter values in a database or schema name with their parameter keys.
+     */
+    public String parametrizeName(String name) {
+        return template.parametrizeName(name);
+    }
+
     public Set<String> injectParameters(Set<String> configs) {
-        return configs.stream().map(config -> {
-            for(String parameter: parameters.stringPropertyNames()) {
-                String parameterPlaceholder = String.format(PARAMETER_FORMAT, parameter);
-                String regex = "(?i)" + Pattern.quote(parameterPlaceholder);
-                String replacement =  Matcher.quoteReplacement(parameters.getProperty(parameter));
-                config = config.replaceAll(regex, replacement);
-            }
-            return config;
-        }).collect(Collectors.toSet());
+        return configs.stream().map(template::inject).collect(Collectors.toSet());
     }
 
 }
@@ -0,0 +1,156 @@
+package com.snowflake.dlsync.parser;
+
+import java.util.*;
+
+/**
+ * Parameters of a profile compiled for substitution in both directions. Placeholders {@code ${key}} are replaced by
+ * their values, matching the keys ignoring case. Parameter values are replaced by their placeholders using a trie of
+ * the values, preferring the longest value at each position. Both directions replace everything in a single scan, so
+ * replaced text is never scanned again.
+ */
+public class ParameterTemplate {
+    private static final String PLACEHOLDER_START = "${";
+    private static final char PLACEHOLDER_END = '}';
+    private static final String VALUE_START_CHARS = "(),. \t\n\u000B\f\r'\"@";
+    private static final String VALUE_END_CHARS = "(),;. \t\n\u000B\f\r'\"";
+
+    private final Map<String, String> values;
+    private final int maxKeyLength;
+    private final TrieNode placeholders = new TrieNode();
+
+    public ParameterTemplate(Properties parameters) {
+        Map<String, String> lowerCaseValues = new HashMap<>();
+        int maxLength = 0;
+        List<String> keys = new ArrayList<>(parameters.stringPropertyNames());
+        Collections.sort(keys);
+        for(String key: keys) {
+            String value = parameters.getProperty(key);
+            lowerCaseValues.putIfAbsent(key.toLowerCase(Locale.ROOT), value);
+            maxLength = Math.max(maxLength, key.length());
+            if(!value.isEmpty()) {
+                placeholders.add(value, PLACEHOLDER_START + key + PLACEHOLDER_END);
+            }
+        }
+        this.values = lowerCaseValues;
+        this.maxKeyLength = maxLength;
+    }
+
+    /**
+     * Replaces every placeholder of a known parameter with its value. Unknown placeholders are kept as they are.
+     * @return the text with the parameters injected, or the same instance if it has no known placeholder.
+     */
+    public String inject(String content) {
+        if(content == null || values.isEmpty()) {
+            return content;
+        }
+        int start = content.indexOf(PLACEHOLDER_START);
+        StringBuilder builder = null;
+        int copied = 0;
+        while(start >= 0) {
+            int keyStart = start + PLACEHOLDER_START.length();
+            int end = content.indexOf(PLACEHOLDER_END, keyStart);
+            if(end < 0) {
+                break;
+            }
+            String value = end - keyStart <= maxKeyLength ? values.get(content.substring(keyStart, end).toLowerCase(Locale.ROOT)) : null;
+            if(value == null) {
+                start = content.indexOf(PLACEHOLDER_START, keyStart);
+                continue;
+            }
+            if(builder == null) {
+                builder = new StringBuilder(content.length() + 64);
+            }
+            builder.append(content, copied, start).append(value);
+            copied = end + 1;
+            start = content.indexOf(PLACEHOLDER_START, copied);
+        }
+        if(builder == null) {
+            return content;
+        }
+        return builder.append(content, copied, content.length()).toString();
+    }
+
+    /**
+     * Replaces parameter values in sql with their placeholders. A value is only replaced when it is preceded by one of
+     * {@code (),.'"@} or whitespace, and followed by one of {@code (),;.'"} or whitespace.
+     * When values overlap the longest one is replaced, and values that are equal ignoring case resolve to the first key.
+     */
+    public String parametrize(String content) {
+        return replaceValues(content, true);
+    }
+
+    /**
+     * Replaces parameter values anywhere in a database or schema name with their placeholders.
+     */
+    public String parametrizeName(String name) {
+        return replaceValues(name, false);
+    }
+
+    private String replaceValues(String content, boolean delimited) {
+        if(content == null || placeholders.isEmpty()) {
+            return content;
+        }
+        StringBuilder builder = null;
+        int copied = 0;
+        int position = delimited ? 1 : 0;
+        while(position < content.length()) {
+            if(delimited && VALUE_START_CHARS.indexOf(content.charAt(position - 1)) < 0) {
+                position++;
+                continue;
+            }
+            TrieNode node = placeholders;
+            String placeholder = null;
+            int matchEnd = -1;
+            for(int index = position; index < content.length(); index++) {
+                node = node.get(content.charAt(index));
+                if(node == null) {
+                    break;
+                }
+                if(node.placeholder != null && (!delimited || (index + 1 < content.length() && VALUE_END_CHARS.indexOf(content.charAt(index + 1)) >= 0))) {
+                    placeholder = node.placeholder;
+                    matchEnd = index + 1;
+                }
+            }
+            if(placeholder == null) {
+                position++;
+                continue;
+            }
+            if(builder == null) {
+                builder = new StringBuilder(content.length() + 64);
+            }
+            builder.append(content, copied, position).append(placeholder);
+            copied = matchEnd;
+            position = matchEnd;
+        }
+        if(builder == null) {
+            return content;
+        }
+        return builder.append(content, copied, content.length()).toString();
+    }
+
+    /**
+     * Node of a trie of the upper case parameter values.
+     */
+    private static class TrieNode {
+        private final Map<Character, TrieNode> children = new HashMap<>();
+        private String placeholder;
+
+        private void add(String value, String placeholder) {
+            TrieNode node = this;
+            for(int i = 0; i < value.length(); i++) {
+                node = node.children.computeIfAbsent(Character.toUpperCase(value.charAt(i)), ch -> new TrieNode());
+            }
+            if(node.placeholder == null) {
+                node.placeholder = placeholder;
+            }
+        }
+
+        private TrieNode get(char ch) {
+            return children.get(Character.toUpperCase(ch));
+        }
+
+        private boolean isEmpty() {
+            return children.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.snowflake.dlsync.parser;
+
+/**
+ * Single pass lexer over sql text. The lexer works as a cursor: {@link #next()} moves to the following token and the
+ * type and position of the current token are read from the lexer itself, so no token objects are allocated.
+ */
+public class SqlLexer {
+    public enum TokenType {
+        WORD,
+        QUOTED_IDENTIFIER,
+        /**
+         * Double quoted text holding whitespace or dots, such as a query string in a javascript or python body. The
+         * baseline regexes scanned such text for identifiers, so it is not taken as a single quoted identifier.
+         */
+        QUOTED_TEXT,
+        STRING,
+        DOLLAR_BODY,
+        LINE_COMMENT,
+        BLOCK_COMMENT,
+        WHITESPACE,
+        PUNCTUATION
+    }
+
+    private final CharSequence sql;
+    private final int end;
+    private int position;
+    private TokenType type;
+    private int tokenStart;
+    private int tokenEnd;
+
+    public SqlLexer(CharSequence sql) {
+        this(sql, 0, sql.length());
+    }
+
+    public SqlLexer(CharSequence sql, int start, int end) {
+        this.sql = sql;
+        this.position = start;
+        this.end = end;
+    }
+
+    public static boolean isWordChar(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '_' || ch == '$' || ch == '{' || ch == '}';
+    }
+
+    /**
+     * Moves to the next token.
+     * @return false if there are no more tokens.
+     */
+    public boolean next() {
+        if(position >= end) {
+            type = null;
+            tokenStart = tokenEnd = end;
+            return false;
+        }
+        tokenStart = position;
+        char ch = sql.charAt(position);
+        char nextCh = position + 1 < end ? sql.charAt(position + 1) : 0;
+        if(Character.isWhitespace(ch)) {
+            type = TokenType.WHITESPACE;
+            position++;
+            while(position < end && Character.isWhitespace(sql.charAt(position))) {
+                position++;
+            }
+        }
+        else if((ch == '-' || ch == '/') && nextCh == ch) {
+            type = TokenType.LINE_COMMENT;
+            position += 2;
+            while(position < end && sql.charAt(position) != '\n') {
+                position++;
+            }
+        }
+        else if(ch == '/' && nextCh == '*') {
+            type = TokenType.BLOCK_COMMENT;
+            position = indexOf("*/", position + 2);
+        }
+        else if(ch == '$' && nextCh == '$') {
+            type = TokenType.DOLLAR_BODY;
+            position = indexOf("$$", position + 2);
+        }
+        else if(ch == '\'') {
+            type = TokenType.STRING;
+            position = skipQuoted('\'', true);
+        }
+        else if(ch == '"') {
+            position = skipQuoted('"', false);
+            type = containsTextChars(tokenStart + 1, position) ? TokenType.QUOTED_TEXT : TokenType.QUOTED_IDENTIFIER;
+        }
+        else if(isWordChar(ch)) {
+            type = TokenType.WORD;
+            position++;
+            while(position < end && isWordChar(sql.charAt(position))) {
+                position++;
+            }
+        }
+        else {
+            type = TokenType.PUNCTUATION;
+            position++;
+        }
+        tokenEnd = position;
+        return true;
+    }
+
+    private int indexOf(String terminator, int from) {
+        for(int index = from; index + 1 < end; index++) {
+            if(sql.charAt(index) == terminator.charAt(0) && sql.charAt(index + 1) == terminator.charAt(1)) {
+                return index + 2;
+            }
+        }
+        return end;
+    }
+
+    private boolean containsTextChars(int from, int to) {
+        for(int index = from; index < to; index++) {
+            char ch = sql.charAt(index);
+            if(ch == '.' || Character.isWhitespace(ch)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int skipQuoted(char quote, boolean backslashEscape) {
+        int index = position + 1;
+        while(index < end) {
+            char ch = sql.charAt(index);
+            if(backslashEscape && ch == '\\') {
+                index += 2;
+            }
+            else if(ch == quote) {
+                if(index + 1 < end && sql.charAt(index + 1) == quote) {
+                    index += 2;
+                }
+                else {
+                    return index + 1;
+                }
+            }
+            else {
+                index++;
+            }
+        }
+        return end;
+    }
+
+    public TokenType getType() {
+        return type;
+    }
+
+    public int getStart() {
+        return tokenStart;
+    }
+
+    public int getEnd() {
+        return tokenEnd;
+    }
+
+    public int length() {
+        return tokenEnd - tokenStart;
+    }
+
+    public char firstChar() {
+        return sql.charAt(tokenStart);
+    }
+
+    public char lastChar() {
+        return sql.charAt(tokenEnd - 1);
+    }
+
+    public String getText() {
+        return sql.subSequence(tokenStart, tokenEnd).toString();
+    }
+
+    public boolean isComment() {
+        return type == TokenType.LINE_COMMENT || type == TokenType.BLOCK_COMMENT;
+    }
+
+    public boolean isPunctuation(char ch) {
+        return type == TokenType.PUNCTUATION && firstChar() == ch;
+    }
+
+    /**
+     * @return true if the current token is a quoted token that reached its closing quote.
+     */
+    public boolean isClosed() {
+        if(type == TokenType.DOLLAR_BODY) {
+            return length() >= 4 && sql.charAt(tokenEnd - 2) == '$' && lastChar() == '$';
+        }
+        return length() >= 2 && lastChar() == firstChar();
+    }
+
+    /**
+     * Start of the content of a quoted token or a dollar body, without the opening quotes.
+     */
+    public int getContentStart() {
+        return tokenStart + (type == TokenType.DOLLAR_BODY ? 2 : 1);
+    }
+
+    /**
+     * End of the content of a quoted token or a dollar body, without the closing quotes.
+     */
+    public int getContentEnd() {
+        if(!isClosed()) {
+            return tokenEnd;
+        }
+        return tokenEnd - (type == TokenType.DOLLAR_BODY ? 2 : 1);
+    }
+
+    /**
+     * @return true if the current word ends with the given suffix, ignoring case.
+     */
+    public boolean endsWithIgnoreCase(String suffix) {
+        if(type != TokenType.WORD || length() < suffix.length()) {
+            return false;
+        }
+        int offset = tokenEnd - suffix.length();
+        for(int i = 0; i < suffix.length(); i++) {
+            if(Character.toUpperCase(sql.charAt(offset + i)) != Character.toUpperCase(suffix.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
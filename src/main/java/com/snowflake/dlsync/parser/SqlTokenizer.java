@@ -17,8 +17,6 @@ import java.util.stream.Collectors;
 
 @Slf4j
 public class SqlTokenizer {
-    private static final String TOKEN_START_REGEX = "(?:[@=()\\[\\],\\.\\s\\\"\\'])";
-    private static final String TOKEN_END_REGEX = "(?:[=()\\[\\],\\.\\s\\\"\\';]|$)";
     private static final char[] TOKENS = {'.', ',', ';', '"', '\'', '[', ']', '(', ')'};
     private static  final String MIGRATION_HEADER = "(\\s*---\\s*(?i)version\\s*:\\s*(?<version>\\d+)\\s*)(,\\s*(?i)author\\s*:\\s*(?<author>\\w+)\\s*)?";
     private static  final String VERSION_REGEX = "(?:^|\n)(--- *(?i)version *: *(?<version>\\d+) *)";
@@ -26,16 +24,15 @@ public class SqlTokenizer {
     private static final String CONTENT_REGEX = "([\\s\\S]+?(?=(\n---)|($)))";
     private static final String ROLL_BACK_REGEX = "((\n--- *(?i)rollback *: +)(?<rollback>[^\n]+))?";
     private static final String VERIFY_REGEX = "((\n--- *(?i)verify *: +)(?<verify>[^\n]+))?";
-    private static final String IDENTIFIER_REGEX = "((?:\\\"[^\"]+\\\"\\.)|(?:[{}$a-zA-Z0-9_]+\\.))?((?:\\\"[^\"]+\\\"\\.)|(?:[{}$a-zA-Z0-9_]+\\.))?(?i)";
     private static final String MIGRATION_REGEX = VERSION_REGEX + AUTHOR_REGEX + CONTENT_REGEX + ROLL_BACK_REGEX + VERIFY_REGEX;
 
-    private static final String DDL_REGEX = ";\\n+(CREATE\\s+OR\\s+REPLACE\\s+(TRANSIENT\\s|HYBRID\\s|SECURE\\s)?(?<type>FILE FORMAT|\\w+)\\s+(?<name>[\\w.]+)([\\s\\S]+?)(?=(;\\nCREATE\\s+)|(;$)))";
-
-    private static final String STRING_LITERAL_REGEX = "(?<!as\\s{1,5})'([^'\\\\]*(?:\\\\.[^'\\\\]*)*(?:''[^'\\\\]*)*)'";
+    private static final String DDL_REGEX = ";\\n+(CREATE\\s+OR\\s+REPLACE\\s+(TRANSIENT\\s|HYBRID\\s|SECURE\\s)?(?<type>FILE FORMAT|\\w+)\\s+(?<name>[\\w.]+)([\\s\\S]*?)(?=(;\\nCREATE\\s+)|(;$)))";
 
     private static final String VIEW_BODY_REGEX = "(CREATE\\s+OR\\s+REPLACE\\s+VIEW\\s+)(?<name>[\\w.${}]+)(\\s*\\([^\\)]+\\))?\\s+AS\\s+(?<body>[\\s\\S]+)$";
     private static final String FUNCTION_BODY_REGEX = "(CREATE\\s+OR\\s+REPLACE\\s+FUNCTION\\s+)(?<name>[\\w.${}]+)(?:[\\s\\S]*?AS\\s+('|\\$\\$)\\s*)(?<body>[\\s\\S]+)('|\\$\\$)\\s*;$";
     private static final String PROCEDURE_BODY_REGEX = "(CREATE\\s+OR\\s+REPLACE\\s+PROCEDURE\\s+)(?<name>[\\w.${}]+)(?:[\\s\\S]*?AS\\s+('|\\$\\$)\\s*)(?<body>[\\s\\S]+)('|\\$\\$)\\s*;$";
+    private static final String TOKEN_START_CHARS = "@=()[],. \t\n\r\f\u000B\"'";
+    private static final String TOKEN_END_CHARS = "=()[],. \t\n\r\f\u000B\"';";
     private static final String FILE_FORMAT_BODY_REGEX = "(CREATE\\s+OR\\s+REPLACE\\s+FILE FORMAT\\s+)(?<body>[\\w.${}]+)([\\s\\S]+)$";
 
     public static List<Migration> parseMigrationScripts(String content) {
@@ -100,142 +97,286 @@ public class SqlTokenizer {
         return scripts;
     }
 
+    /**
+     * @return the first keyword of the sql in upper case, skipping whitespace and comments, or null if there is none.
+     */
+    public static String getFirstKeyword(String sql) {
+        SqlLexer lexer = new SqlLexer(sql);
+        while(lexer.next()) {
+            if(lexer.getType() == SqlLexer.TokenType.WORD) {
+                return lexer.getText().toUpperCase();
+            }
+            if(lexer.getType() != SqlLexer.TokenType.WHITESPACE && !lexer.isComment()) {
+                return null;
+            }
+        }
+        return null;
+    }
+
     public static String removeSqlComments(String sql) {
-        int index = 0, destinationIndex = 0;
-        char[] sqlChar = sql.toCharArray();
-        char[] withoutComments = new char[sqlChar.length];
-        while(index < sqlChar.length) {
-            char token = sqlChar[index];
-            switch (token) {
-                case '-':
-                case '/':
-                    if(index < sql.length() - 1 && token == sqlChar[index+1]) {
-                        index += 2;
-                        while(index < sqlChar.length && sqlChar[index] != '\n') {
-                            index++;
-                        }
-                    }
-                    else if (index < sql.length() - 1 && token == '/' && sqlChar[index+1] == '*'){
-                        index += 2;
-                        while(index < sqlChar.length) {
-                            if(index < sqlChar.length - 1 && sqlChar[index] == '*' && sqlChar[index+1] == '/') {
-                                index += 2;
-                                break;
-                            }
-                            index++;
-                        }
-                    }
-                    if(index < sqlChar.length)
-                        withoutComments[destinationIndex++] = sqlChar[index++];
-                    break;
-                case '"':
-                case '\'':
-                    withoutComments[destinationIndex++] = sqlChar[index++];
-                    while(index < sqlChar.length) {
-                        if(sqlChar[index] == token && sqlChar[index - 1] != '\\') {
-                            break;
-                        }
-                        withoutComments[destinationIndex++] = sqlChar[index++];
-                    }
-                    if(index < sqlChar.length)
-                        withoutComments[destinationIndex++] = sqlChar[index++];
-                    break;
-                default:
-                    withoutComments[destinationIndex++] = sqlChar[index++];
+        StringBuilder withoutComments = new StringBuilder(sql.length());
+        appendWithoutComments(sql, 0, sql.length(), withoutComments);
+        return withoutComments.toString();
+    }
+
+    private static void appendWithoutComments(CharSequence sql, int start, int end, StringBuilder destination) {
+        SqlLexer lexer = new SqlLexer(sql, start, end);
+        while(lexer.next()) {
+            if(lexer.isComment()) {
+                continue;
+            }
+            if(lexer.getType() == SqlLexer.TokenType.DOLLAR_BODY) {
+                destination.append("$$");
+                appendWithoutComments(sql, lexer.getContentStart(), lexer.getContentEnd(), destination);
+                if(lexer.isClosed()) {
+                    destination.append("$$");
+                }
+            }
+            else {
+                destination.append(sql, lexer.getStart(), lexer.getEnd());
             }
         }
-        return new String(withoutComments, 0, destinationIndex);
     }
 
     public static String removeSqlStringLiteralsManual(String sql) {
-        int index = 0, destinationIndex = 0;
-        char[] sqlChar = sql.toCharArray();
-        char[] withoutLiterals = new char[sqlChar.length];
-        boolean isOpened = false;
-        while(index < sqlChar.length) {
-            char token = sqlChar[index];
-            if(isOpened) {
-                if(token == '\\') {
-                    index+=2;
-                    continue;
-                }
-                else if(token == '\'') {
-                    if(index+1 < sqlChar.length && sqlChar[index+1] == '\'') {
-                        index+=2;
-                        continue;
-                    }
-                    else {
-                        isOpened = false;
-                        withoutLiterals[destinationIndex++] = sqlChar[index++];
-                    }
-                }
-                else {
-                    index++;
+        return removeSqlStringLiterals(sql);
+    }
+
+    /**
+     * Replaces the string literals in the sql with empty strings. Strings holding the body of an object
+     * (e.g. {@code AS 'select ...'}) are kept as they are.
+     */
+    public static String removeSqlStringLiterals(String sql) {
+        StringBuilder withoutLiterals = new StringBuilder(sql.length());
+        appendWithoutStringLiterals(sql, 0, sql.length(), withoutLiterals);
+        return withoutLiterals.toString();
+    }
+
+    private static void appendWithoutStringLiterals(CharSequence sql, int start, int end, StringBuilder destination) {
+        SqlLexer lexer = new SqlLexer(sql, start, end);
+        BodyStringDetector bodyStringDetector = new BodyStringDetector();
+        while(lexer.next()) {
+            boolean bodyString = bodyStringDetector.isBodyString(lexer);
+            if(lexer.getType() == SqlLexer.TokenType.STRING && !bodyString) {
+                destination.append("''");
+            }
+            else if(lexer.getType() == SqlLexer.TokenType.DOLLAR_BODY) {
+                destination.append("$$");
+                appendWithoutStringLiterals(sql, lexer.getContentStart(), lexer.getContentEnd(), destination);
+                if(lexer.isClosed()) {
+                    destination.append("$$");
                 }
             }
             else {
-                if(token == '\'') {
-                    int current = index - 1, end = 0;
-                    String prevString = sql.substring(0, index);
-                    Matcher matcher = Pattern.compile("\\s+(?i)as\\s+$").matcher(prevString);
-                    if(!matcher.find()) {
-                        isOpened = true;
-                    }
-                    withoutLiterals[destinationIndex++] = sqlChar[index++];
+                destination.append(sql, lexer.getStart(), lexer.getEnd());
+            }
+        }
+    }
+
+    public static String getFirstFullIdentifier(String name, String content) {
+        String[] firstIdentifier = new String[1];
+        visitIdentifierChains(content, 0, content.length(), (parts, validStart, validEnd) -> {
+            for(int i = 0; i < parts.size(); i++) {
+                int first = getFirstQualifier(i, parts.size(), validStart, validEnd);
+                if(first >= 0 && unquote(parts.get(i)).equalsIgnoreCase(name)) {
+                    firstIdentifier[0] = String.join(".", parts.subList(first, i + 1));
+                    return false;
                 }
-                else {
-                    withoutLiterals[destinationIndex++] = sqlChar[index++];
+            }
+            return true;
+        });
+        return firstIdentifier[0];
+    }
+
+    public static Set<String> getFullIdentifiers(String name, String content) {
+        Set<String> fullIdentifiers = new HashSet<>();
+        visitIdentifierChains(content, 0, content.length(), (parts, validStart, validEnd) -> {
+            for(int i = 0; i < parts.size(); i++) {
+                int first = getFirstQualifier(i, parts.size(), validStart, validEnd);
+                if(first >= 0 && unquote(parts.get(i)).equalsIgnoreCase(name)) {
+                    fullIdentifiers.add(first < i ? joinUnquoted(parts, first, i) + "." + name : name);
+                }
+            }
+            return true;
+        });
+        return fullIdentifiers;
+    }
+
+    /**
+     * Collects every identifier the content can reference in a single pass. For each part of a dotted identifier
+     * chain the part is returned together with up to two qualifying parts before it, the same identifiers
+     * {@link #getFullIdentifiers(String, String)} would find when called with the name of that part.
+     * Quotes are removed from the returned identifiers.
+     */
+    public static Set<String> getAllFullIdentifiers(String content) {
+        Set<String> fullIdentifiers = new HashSet<>();
+        visitIdentifierChains(content, 0, content.length(), (parts, validStart, validEnd) -> {
+            for(int i = 0; i < parts.size(); i++) {
+                int first = getFirstQualifier(i, parts.size(), validStart, validEnd);
+                if(first >= 0) {
+                    fullIdentifiers.add(joinUnquoted(parts, first, i + 1));
                 }
             }
+            return true;
+        });
+        return fullIdentifiers;
+    }
 
+    /**
+     * Index of the first qualifier of the identifier ending at part {@code index} of a chain, or -1 if that part
+     * can not be an identifier. An identifier has at most two qualifiers and must be delimited by tokens.
+     */
+    private static int getFirstQualifier(int index, int size, boolean validStart, boolean validEnd) {
+        if(index == size - 1 && !validEnd) {
+            return -1;
+        }
+        int first = Math.max(0, index - 2);
+        if(first == 0 && !validStart) {
+            first = 1;
         }
-        return new String(withoutLiterals, 0, destinationIndex);
+        return first <= index ? first : -1;
     }
 
-    public static String removeSqlStringLiterals(String sql) {
-        return Pattern.compile(STRING_LITERAL_REGEX, Pattern.CASE_INSENSITIVE).matcher(sql).replaceAll("''");
+    private static String unquote(String part) {
+        return part.replace("\"", "");
     }
 
-    public static String getFirstFullIdentifier(String name, String content) {
-        content = removeSqlComments(content);
-        content = removeSqlStringLiterals(content);
-        String regex = TOKEN_START_REGEX +  IDENTIFIER_REGEX + "(\"?" + Pattern.quote(name) + "\"?)" + TOKEN_END_REGEX;
-        Matcher matcher = Pattern.compile(regex).matcher(content);
-        while(matcher.find()) {
-            String fullIdentifier = matcher.group(3);
-            String schema = matcher.group(2);
-            String db = matcher.group(1);
-            if(schema != null) {
-                fullIdentifier = schema + fullIdentifier;
+    private static String joinUnquoted(List<String> parts, int from, int to) {
+        StringBuilder identifier = new StringBuilder();
+        for(int i = from; i < to; i++) {
+            if(i > from) {
+                identifier.append('.');
+            }
+            identifier.append(unquote(parts.get(i)));
+        }
+        return identifier.toString();
+    }
+
+    private interface IdentifierChainVisitor {
+        /**
+         * @param parts the raw parts of a dotted identifier chain.
+         * @param validStart whether the chain starts after a token delimiter.
+         * @param validEnd whether the last part of the chain ends before a token delimiter.
+         * @return false to stop visiting.
+         */
+        boolean visit(List<String> parts, boolean validStart, boolean validEnd);
+    }
+
+    /**
+     * Visits the dotted identifier chains of the sql, skipping comments and string literals. Dollar quoted bodies,
+     * strings holding the body of an object and double quoted text are visited as sql.
+     * @return false if the visitor stopped the visit.
+     */
+    private static boolean visitIdentifierChains(CharSequence sql, int start, int end, IdentifierChainVisitor visitor) {
+        SqlLexer lexer = new SqlLexer(sql, start, end);
+        BodyStringDetector bodyStringDetector = new BodyStringDetector();
+        List<String> parts = new ArrayList<>();
+        boolean validStart = false, afterDot = false;
+        char previous = 0;
+        while(lexer.next()) {
+            if(lexer.isComment()) {
+                continue;
+            }
+            boolean bodyString = bodyStringDetector.isBodyString(lexer);
+            boolean part = lexer.getType() == SqlLexer.TokenType.WORD || lexer.getType() == SqlLexer.TokenType.QUOTED_IDENTIFIER;
+            if(part && afterDot) {
+                parts.add(lexer.getText());
+                afterDot = false;
+                previous = lexer.lastChar();
+                continue;
+            }
+            if(!parts.isEmpty()) {
+                if(!afterDot && lexer.isPunctuation('.')) {
+                    afterDot = true;
+                    previous = '.';
+                    continue;
+                }
+                boolean validEnd = afterDot || TOKEN_END_CHARS.indexOf(lexer.firstChar()) >= 0;
+                if(!visitor.visit(parts, validStart, validEnd)) {
+                    return false;
+                }
+                parts.clear();
+                afterDot = false;
+            }
+            if(part) {
+                validStart = previous == 0 || lexer.getType() == SqlLexer.TokenType.QUOTED_IDENTIFIER || TOKEN_START_CHARS.indexOf(previous) >= 0;
+                parts.add(lexer.getText());
+            }
+            else if(lexer.getType() == SqlLexer.TokenType.DOLLAR_BODY || lexer.getType() == SqlLexer.TokenType.QUOTED_TEXT) {
+                if(!visitIdentifierChains(sql, lexer.getContentStart(), lexer.getContentEnd(), visitor)) {
+                    return false;
+                }
             }
-            if(db != null) {
-                fullIdentifier = db + fullIdentifier;
+            else if(bodyString) {
+                String body = unescapeString(sql, lexer.getContentStart(), lexer.getContentEnd());
+                if(!visitIdentifierChains(body, 0, body.length(), visitor)) {
+                    return false;
+                }
             }
-            return  fullIdentifier;
+            previous = lexer.lastChar();
         }
-        return null;
+        return parts.isEmpty() || visitor.visit(parts, validStart, true);
     }
 
-    public static Set<String> getFullIdentifiers(String name, String content) {
-        Set<String> fullIdentifiers = new HashSet<>();
-        content = removeSqlComments(content);
-        content = removeSqlStringLiterals(content);
-        String regex = TOKEN_START_REGEX +  IDENTIFIER_REGEX + "(\"?" + Pattern.quote(name) + "\"?)" + TOKEN_END_REGEX;
-        Matcher matcher = Pattern.compile(regex).matcher(content);
-        while(matcher.find()) {
-            String fullIdentifier = name;
-            String schema = matcher.group(2);
-            String db = matcher.group(1);
-            if(schema != null) {
-                fullIdentifier = schema + fullIdentifier;
+    private static String unescapeString(CharSequence sql, int start, int end) {
+        StringBuilder unescaped = new StringBuilder(end - start);
+        for(int index = start; index < end; index++) {
+            char ch = sql.charAt(index);
+            if((ch == '\\' || ch == '\'') && index + 1 < end && sql.charAt(index + 1) == '\'') {
+                index++;
+                ch = '\'';
+            }
+            unescaped.append(ch);
+        }
+        return unescaped.toString();
+    }
+
+    /**
+     * Detects string literals holding the body of an object, e.g. {@code AS 'select ...'}. These strings are sql code
+     * rather than data. Must be called for every token that is not a comment.
+     */
+    private static class BodyStringDetector {
+        private int asEnd = -1;
+        private int bodyStart = -1;
+
+        boolean isBodyString(SqlLexer lexer) {
+            switch (lexer.getType()) {
+                case WORD:
+                    asEnd = lexer.endsWithIgnoreCase("as") ? lexer.getEnd() : -1;
+                    return false;
+                case WHITESPACE:
+                    bodyStart = lexer.getStart() == asEnd && lexer.length() <= 5 ? lexer.getEnd() : -1;
+                    return false;
+                case STRING:
+                    return lexer.getStart() == bodyStart;
+                default:
+                    return false;
             }
-            if(db != null) {
-                fullIdentifier = db + fullIdentifier;
+        }
+    }
+
+    /**
+     * @return true if every string, quoted identifier, dollar body and block comment of the sql is closed. A ddl split
+     * in the middle of a body, e.g. at a CREATE statement inside a procedure, is not.
+     */
+    public static boolean isTerminated(String sql) {
+        SqlLexer lexer = new SqlLexer(sql);
+        while(lexer.next()) {
+            switch (lexer.getType()) {
+                case STRING:
+                case QUOTED_IDENTIFIER:
+                case QUOTED_TEXT:
+                case DOLLAR_BODY:
+                case BLOCK_COMMENT:
+                    if(!lexer.isClosed()) {
+                        return false;
+                    }
+                    break;
+                default:
+                    break;
             }
-            fullIdentifier = fullIdentifier.replace("\"", "");
-            fullIdentifiers.add(fullIdentifier);
         }
-        return fullIdentifiers;
+        return true;
     }
 
     public static List<Script> parseDdlScripts(String ddl, String database, String schema) {
@@ -247,10 +388,14 @@ public class SqlTokenizer {
             String type = matcher.group("type");
             ScriptObjectType objectType = Arrays.stream(ScriptObjectType.values())
                     .filter(ot -> ot.getSingular().equalsIgnoreCase(type))
-                    .collect(Collectors.toList()).get(0);
-
+                    .findFirst().orElse(null);
             String fullObjectName = matcher.group("name");
-            String scriptObjectName  = fullObjectName.split("\\.")[2];
+            String[] nameParts = fullObjectName.split("\\.");
+            if(objectType == null || nameParts.length != 3) {
+                log.debug("Skipping unsupported ddl of {} {}", type, fullObjectName);
+                continue;
+            }
+            String scriptObjectName  = nameParts[2];
 
             if (objectType.isMigration()) {
                 MigrationScript script = ScriptFactory.getMigrationScript(database, schema, objectType, scriptObjectName, content);
@@ -47,6 +47,76 @@ public class MainTest {
         assertThrows(MissingArgumentException.class,  () -> Main.buildCommandOptions(invalidArgs));
     }
 
+    @Test
+    public void testBuildCommandCycleReport() throws ParseException {
+        String[] args = {"deploy", "--script-root", "test/scripts", "--cycle-report", "cycles.json"};
+        CommandLine commandLine = Main.buildCommandOptions(args);
+        assertEquals("cycles.json", commandLine.getOptionValue("cycle-report"));
+
+        String[] args2 = {"deploy", "-c", "cycles.json"};
+        commandLine = Main.buildCommandOptions(args2);
+        assertEquals("cycles.json", commandLine.getOptionValue("cycle-report"));
+    }
+
+    @Test
+    public void testBuildCommandMetricsReport() throws ParseException {
+        String[] args = {"deploy", "--script-root", "test/scripts", "--metrics-report", "metrics.json"};
+        CommandLine commandLine = Main.buildCommandOptions(args);
+        assertEquals("metrics.json", commandLine.getOptionValue("metrics-report"));
+
+        String[] args2 = {"verify", "-m", "metrics.json"};
+        commandLine = Main.buildCommandOptions(args2);
+        assertEquals("metrics.json", commandLine.getOptionValue("metrics-report"));
+    }
+
+    @Test
+    public void testBuildCommandImpactDryRun() throws ParseException {
+        String[] args = {"deploy", "--script-root", "test/scripts", "--impact", "--dry-run"};
+        CommandLine commandLine = Main.buildCommandOptions(args);
+        assertTrue(commandLine.hasOption("impact"));
+        assertTrue(commandLine.hasOption("dry-run"));
+
+        String[] args2 = {"deploy", "-i"};
+        commandLine = Main.buildCommandOptions(args2);
+        assertTrue(commandLine.hasOption("impact"));
+        assertFalse(commandLine.hasOption("dry-run"));
+    }
+
+    @Test
+    public void testBuildCommandResume() throws ParseException {
+        String[] args = {"deploy", "--script-root", "test/scripts", "--resume"};
+        assertTrue(Main.buildCommandOptions(args).hasOption("resume"));
+
+        String[] args2 = {"deploy", "-r", "-i"};
+        CommandLine commandLine = Main.buildCommandOptions(args2);
+        assertTrue(commandLine.hasOption("resume"));
+        assertTrue(commandLine.hasOption("impact"));
+
+        String[] args3 = {"deploy", "-s", "test/scripts"};
+        assertFalse(Main.buildCommandOptions(args3).hasOption("resume"));
+
+        String[] args4 = {"deploy", "--resume", "1234", "-s", "test/scripts"};
+        commandLine = Main.buildCommandOptions(args4);
+        assertTrue(commandLine.hasOption("resume"));
+        assertEquals("1234", commandLine.getOptionValue("resume"));
+        assertEquals("test/scripts", commandLine.getOptionValue("script-root"));
+        assertNull(Main.buildCommandOptions(args2).getOptionValue("resume"));
+    }
+
+    @Test
+    public void testBuildCommandPlanFile() throws ParseException {
+        String[] args = {"plan", "--script-root", "test/scripts", "--plan-file", "build/deploy.plan"};
+        assertEquals("build/deploy.plan", Main.getPlanFile(Main.buildCommandOptions(args)));
+
+        String[] args2 = {"apply", "build/deploy.plan", "-s", "test/scripts"};
+        assertEquals("build/deploy.plan", Main.getPlanFile(Main.buildCommandOptions(args2)));
+
+        String[] args3 = {"apply", "-s", "test/scripts"};
+        assertEquals(Main.DEFAULT_PLAN_FILE, Main.getPlanFile(Main.buildCommandOptions(args3)));
+        assertEquals(ChangeType.PLAN, Main.getChangeType(new String[]{"plan"}));
+        assertEquals(ChangeType.APPLY, Main.getChangeType(new String[]{"apply"}));
+    }
+
     @Test
     public void testGetChangeType() {
         String[] args = {"deploy"};
@@ -0,0 +1,39 @@
+package com.snowflake.dlsync;
+
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptReconcilerTest {
+
+    private static List<String> ids(List<Script> scripts) {
+        return scripts.stream().map(Script::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void reconcileReportsDriftAndMissingScripts() {
+        List<Script> sourceScripts = List.of(
+                ScriptFactory.getStateScript("db1", "schema1", ScriptObjectType.VIEWS, "view1", "create or replace view db1.schema1.view1 as select 1;"),
+                ScriptFactory.getStateScript("db1", "schema1", ScriptObjectType.VIEWS, "view2", "create or replace view db1.schema1.view2 as select 2;"),
+                ScriptFactory.getStateScript("db1", "schema2", ScriptObjectType.FUNCTIONS, "function1", "create or replace function db1.schema2.function1() returns int as '1';"),
+                ScriptFactory.getMigrationScript("db1", "schema1", ScriptObjectType.TABLES, "table1", "create or replace table db1.schema1.table1(id int);", 0L, null, null, null)
+        );
+        ScriptReconciler reconciler = new ScriptReconciler(sourceScripts, (dbScript, sourceScript) -> dbScript.getContent().equals(sourceScript.getContent()));
+
+        assertTrue(reconciler.reconcile(ScriptFactory.getStateScript("db1", "schema1", ScriptObjectType.VIEWS, "view1", "create or replace view db1.schema1.view1 as select 1;")));
+        assertFalse(reconciler.reconcile(ScriptFactory.getStateScript("db1", "schema1", ScriptObjectType.VIEWS, "view2", "create or replace view db1.schema1.view2 as select 3;")));
+        assertFalse(reconciler.reconcile(ScriptFactory.getStateScript("db1", "schema1", ScriptObjectType.VIEWS, "view3", "create or replace view db1.schema1.view3 as select 3;")));
+        assertFalse(reconciler.reconcile(ScriptFactory.getStateScript("db1", "schema2", ScriptObjectType.PROCEDURES, "function1", "create or replace procedure db1.schema2.function1() returns int as '1';")));
+
+        assertEquals(List.of("DB1.SCHEMA1.VIEW1"), ids(reconciler.getVerified()));
+        assertEquals(List.of("DB1.SCHEMA1.VIEW2"), ids(reconciler.getDrifted()));
+        assertEquals(List.of("DB1.SCHEMA1.VIEW3", "DB1.SCHEMA2.FUNCTION1"), ids(reconciler.getMissingInSource()));
+        assertEquals(List.of("DB1.SCHEMA2.FUNCTION1"), ids(reconciler.getMissingInDatabase(script -> !script.getObjectType().isMigration())));
+        assertEquals(List.of("DB1.SCHEMA1.TABLE1:0", "DB1.SCHEMA2.FUNCTION1"), ids(reconciler.getMissingInDatabase(script -> true)));
+    }
+}
@@ -0,0 +1,373 @@
+package com.snowflake.dlsync;
+
+import com.snowflake.dlsync.models.ScriptObjectType;
+import org.apache.commons.cli.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Generates a synthetic script repository in the dlsync layout (main/DATABASE/SCHEMA/TYPE/NAME.SQL) with a
+ * parameter file, to test and benchmark dlsync against repositories of any size without a database.
+ * <p>
+ * Migration objects (tables and sequences) form the first layer of the dependency graph. State objects (views,
+ * functions and procedures) are spread over the following {@code depth} layers and reference
+ * {@code minDependencies} to {@code maxDependencies} tables or views of the layers below. The first dependency is
+ * always taken from the layer right below, so the graph is exactly {@code depth} state layers deep when the type mix
+ * contains views. A {@code fanInSkew} above 1 concentrates the references on the first objects of each layer, giving
+ * a few objects a large fan-in. The same seed always generates the same repository.
+ */
+public class ScriptRepositoryGenerator {
+    public static final String DATABASE_PREFIX = "GEN_DB_";
+    public static final String PARAMETER_PREFIX = "PARAM_";
+    private static final List<ScriptObjectType> SUPPORTED_TYPES = List.of(ScriptObjectType.TABLES, ScriptObjectType.SEQUENCES, ScriptObjectType.VIEWS, ScriptObjectType.FUNCTIONS, ScriptObjectType.PROCEDURES);
+
+    private int objectCount = 1000;
+    private int objectsPerSchema = 500;
+    private int databaseCount = 1;
+    private int depth = 5;
+    private int minDependencies = 1;
+    private int maxDependencies = 4;
+    private double fanInSkew = 1.0;
+    private int maxVersions = 3;
+    private int parameterCount = 3;
+    private int noise = 1;
+    private Map<ScriptObjectType, Integer> typeMix = defaultTypeMix();
+    private long seed = 42;
+    private String profile = "dev";
+
+    private Random random;
+
+    private static class GeneratedObject {
+        private final ScriptObjectType type;
+        private final String fullName;
+        private final String name;
+
+        private GeneratedObject(ScriptObjectType type, String fullName, String name) {
+            this.type = type;
+            this.fullName = fullName;
+            this.name = name;
+        }
+    }
+
+    private static Map<ScriptObjectType, Integer> defaultTypeMix() {
+        Map<ScriptObjectType, Integer> typeMix = new LinkedHashMap<>();
+        typeMix.put(ScriptObjectType.TABLES, 30);
+        typeMix.put(ScriptObjectType.VIEWS, 50);
+        typeMix.put(ScriptObjectType.FUNCTIONS, 15);
+        typeMix.put(ScriptObjectType.PROCEDURES, 5);
+        return typeMix;
+    }
+
+    /**
+     * Writes the repository into the script root, which must not contain scripts already.
+     * @return the number of scripts generated, counting every migration version as a script.
+     */
+    public int generate(Path scriptRoot) throws IOException {
+        Path mainDir = scriptRoot.resolve("main");
+        if(Files.exists(mainDir)) {
+            try (Stream<Path> files = Files.list(mainDir)) {
+                if(files.findAny().isPresent()) {
+                    throw new RuntimeException("Script root " + scriptRoot + " already contains scripts.");
+                }
+            }
+        }
+        if(minDependencies > maxDependencies) {
+            throw new RuntimeException("Minimum dependencies can not be more than the maximum dependencies.");
+        }
+        random = new Random(seed);
+        List<ScriptObjectType> types = new ArrayList<>(objectCount);
+        for(int i = 0; i < objectCount; i++) {
+            types.add(pickType());
+        }
+        List<ScriptObjectType> migrationTypes = new ArrayList<>();
+        List<ScriptObjectType> stateTypes = new ArrayList<>();
+        for(ScriptObjectType type: types) {
+            (type.isMigration() ? migrationTypes : stateTypes).add(type);
+        }
+
+        List<List<GeneratedObject>> relations = new ArrayList<>();
+        relations.add(new ArrayList<>());
+        int objectIndex = 0;
+        int scriptCount = 0;
+        for(ScriptObjectType type: migrationTypes) {
+            GeneratedObject object = newObject(type, objectIndex++);
+            int versions = 1 + random.nextInt(maxVersions);
+            writeScript(mainDir, object, type == ScriptObjectType.TABLES ? tableContent(object, versions) : sequenceContent(object, versions));
+            if(type == ScriptObjectType.TABLES) {
+                relations.get(0).add(object);
+            }
+            scriptCount += versions;
+        }
+        int layerCount = stateTypes.isEmpty() ? 0 : Math.max(1, Math.min(depth, stateTypes.size()));
+        for(int layer = 1; layer <= layerCount; layer++) {
+            relations.add(new ArrayList<>());
+            int layerStart = (layer - 1) * stateTypes.size() / layerCount;
+            int layerEnd = layer * stateTypes.size() / layerCount;
+            for(int i = layerStart; i < layerEnd; i++) {
+                ScriptObjectType type = i == layerStart && typeMix.getOrDefault(ScriptObjectType.VIEWS, 0) > 0 ? ScriptObjectType.VIEWS : stateTypes.get(i);
+                GeneratedObject object = newObject(type, objectIndex++);
+                List<String> dependencies = pickDependencies(relations, layer);
+                writeScript(mainDir, object, stateContent(object, dependencies));
+                if(type == ScriptObjectType.VIEWS) {
+                    relations.get(layer).add(object);
+                }
+                scriptCount++;
+            }
+        }
+        writeParameters(scriptRoot);
+        return scriptCount;
+    }
+
+    private ScriptObjectType pickType() {
+        int total = typeMix.values().stream().mapToInt(Integer::intValue).sum();
+        int pick = random.nextInt(total);
+        for(Map.Entry<ScriptObjectType, Integer> entry: typeMix.entrySet()) {
+            pick -= entry.getValue();
+            if(pick < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Type weights changed while picking.");
+    }
+
+    private GeneratedObject newObject(ScriptObjectType type, int objectIndex) {
+        int schemaIndex = objectIndex / objectsPerSchema;
+        String name = type.getEscapedSingular() + "_" + objectIndex;
+        String fullName = DATABASE_PREFIX + (schemaIndex % databaseCount) + ".SCHEMA_" + schemaIndex + "." + name;
+        return new GeneratedObject(type, fullName, name);
+    }
+
+    /**
+     * Picks the referenced objects of a state object. The first one comes from the layer right below, the others from
+     * any lower layer, each favoring the first objects of the layer according to the fan-in skew.
+     */
+    private List<String> pickDependencies(List<List<GeneratedObject>> relations, int layer) {
+        int count = minDependencies + random.nextInt(maxDependencies - minDependencies + 1);
+        Set<String> dependencies = new LinkedHashSet<>();
+        for(int i = 0; i < count; i++) {
+            List<GeneratedObject> candidates = relations.get(i == 0 ? layer - 1 : random.nextInt(layer));
+            if(candidates.isEmpty()) {
+                candidates = relations.get(random.nextInt(layer));
+            }
+            if(!candidates.isEmpty()) {
+                int index = (int) (candidates.size() * Math.pow(random.nextDouble(), fanInSkew));
+                dependencies.add(candidates.get(Math.min(index, candidates.size() - 1)).fullName);
+            }
+        }
+        return new ArrayList<>(dependencies);
+    }
+
+    private String placeholder() {
+        return parameterCount == 0 ? "NONE" : "${" + PARAMETER_PREFIX + random.nextInt(parameterCount) + "}";
+    }
+
+    /**
+     * Comments and string literals with qualified names that are not dependencies, which the parser must skip.
+     */
+    private void appendNoise(StringBuilder content, GeneratedObject object) {
+        for(int i = 0; i < noise; i++) {
+            content.append("-- copied from LEGACY_DB.ARCHIVE.").append(object.name).append('_').append(i).append(" for ").append(placeholder()).append('\n');
+            content.append("/* owned by ").append(placeholder()).append(", see 'LEGACY_DB.ARCHIVE.NOTES' and\n   LEGACY_DB.ARCHIVE.")
+                    .append(object.name).append(" before changing */\n");
+        }
+    }
+
+    private String tableContent(GeneratedObject object, int versions) {
+        StringBuilder content = new StringBuilder();
+        for(int version = 0; version < versions; version++) {
+            content.append("---version: ").append(version).append(", author: generator\n");
+            appendNoise(content, object);
+            if(version == 0) {
+                content.append("create or replace table ").append(object.fullName).append(" (id number, name varchar, env varchar default '")
+                        .append(placeholder()).append("', source varchar default 'LEGACY_DB.RAW.").append(object.name).append("');\n");
+                content.append("---rollback: drop table if exists ").append(object.fullName).append(";\n");
+            }
+            else {
+                content.append("alter table ").append(object.fullName).append(" add column col_").append(version).append(" varchar comment 'added in release ")
+                        .append(version).append(".0';\n");
+                content.append("---rollback: alter table ").append(object.fullName).append(" drop column col_").append(version).append(";\n");
+            }
+            content.append("---verify: select * from ").append(object.fullName).append(" limit 1;\n\n");
+        }
+        return content.toString();
+    }
+
+    private String sequenceContent(GeneratedObject object, int versions) {
+        StringBuilder content = new StringBuilder();
+        for(int version = 0; version < versions; version++) {
+            content.append("---version: ").append(version).append(", author: generator\n");
+            appendNoise(content, object);
+            if(version == 0) {
+                content.append("create or replace sequence ").append(object.fullName).append(" start = 1 increment = 1 comment = 'sequence for ").append(placeholder()).append("';\n");
+                content.append("---rollback: drop sequence if exists ").append(object.fullName).append(";\n\n");
+            }
+            else {
+                content.append("alter sequence ").append(object.fullName).append(" set increment = ").append(version + 1).append(";\n");
+                content.append("---rollback: alter sequence ").append(object.fullName).append(" set increment = ").append(version).append(";\n\n");
+            }
+        }
+        return content.toString();
+    }
+
+    private String stateContent(GeneratedObject object, List<String> dependencies) {
+        StringBuilder content = new StringBuilder();
+        appendNoise(content, object);
+        StringBuilder query = new StringBuilder();
+        if(dependencies.isEmpty()) {
+            query.append("select 1 as id, 'LEGACY_DB.RAW.").append(object.name).append("' as name");
+        }
+        else {
+            query.append("select t0.id, t0.name, '").append(placeholder()).append("' as env -- lineage of ").append(object.fullName).append('\n');
+            query.append("from ").append(dependencies.get(0)).append(" t0");
+            for(int i = 1; i < dependencies.size(); i++) {
+                query.append("\nleft join ").append(dependencies.get(i)).append(" t").append(i).append(" on t").append(i).append(".id = t0.id");
+            }
+            query.append("\nwhere t0.name <> 'x.y.z'");
+        }
+        switch (object.type) {
+            case VIEWS:
+                content.append("create or replace view ").append(object.fullName).append(" as\n").append(query).append(";\n");
+                break;
+            case FUNCTIONS:
+                content.append("create or replace function ").append(object.fullName).append("(p_id number)\nreturns number\nlanguage sql\nas\n$$\n")
+                        .append("select count(*) from (").append(query).append(")\n$$;\n");
+                break;
+            case PROCEDURES:
+                content.append("create or replace procedure ").append(object.fullName).append("()\nreturns varchar\nlanguage sql\nas\n$$\nbegin\n")
+                        .append("    let row_count number := (select count(*) from (").append(query).append("));\n")
+                        .append("    return 'loaded ' || row_count;\nend;\n$$;\n");
+                break;
+            default:
+                throw new RuntimeException("Unsupported state object type: " + object.type);
+        }
+        return content.toString();
+    }
+
+    private void writeScript(Path mainDir, GeneratedObject object, String content) throws IOException {
+        String[] nameParts = object.fullName.split("\\.");
+        Path typeDir = mainDir.resolve(nameParts[0]).resolve(nameParts[1]).resolve(object.type.name());
+        Files.createDirectories(typeDir);
+        Files.writeString(typeDir.resolve(object.name + ".SQL"), content);
+    }
+
+    private void writeParameters(Path scriptRoot) throws IOException {
+        StringBuilder parameters = new StringBuilder("#Script Parameters\n");
+        for(int i = 0; i < parameterCount; i++) {
+            parameters.append(PARAMETER_PREFIX).append(i).append("=VALUE_").append(i).append('\n');
+        }
+        Files.writeString(scriptRoot.resolve("parameter-" + profile + ".properties"), parameters.toString());
+    }
+
+    public void setObjectCount(int objectCount) {
+        this.objectCount = objectCount;
+    }
+
+    public void setObjectsPerSchema(int objectsPerSchema) {
+        this.objectsPerSchema = objectsPerSchema;
+    }
+
+    public void setDatabaseCount(int databaseCount) {
+        this.databaseCount = databaseCount;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public void setMinDependencies(int minDependencies) {
+        this.minDependencies = minDependencies;
+    }
+
+    public void setMaxDependencies(int maxDependencies) {
+        this.maxDependencies = maxDependencies;
+    }
+
+    public void setFanInSkew(double fanInSkew) {
+        this.fanInSkew = fanInSkew;
+    }
+
+    public void setMaxVersions(int maxVersions) {
+        this.maxVersions = maxVersions;
+    }
+
+    public void setParameterCount(int parameterCount) {
+        this.parameterCount = parameterCount;
+    }
+
+    public void setNoise(int noise) {
+        this.noise = noise;
+    }
+
+    /**
+     * Sets the relative weight of each object type, e.g. TABLES=30,VIEWS=50,FUNCTIONS=20.
+     */
+    public void setTypeMix(String typeMix) {
+        Map<ScriptObjectType, Integer> weights = new LinkedHashMap<>();
+        for(String entry: typeMix.split(",")) {
+            String[] weight = entry.trim().split("=");
+            ScriptObjectType type = ScriptObjectType.valueOf(weight[0].trim().toUpperCase());
+            if(!SUPPORTED_TYPES.contains(type)) {
+                throw new RuntimeException("Object type " + type + " is not supported, use one of " + SUPPORTED_TYPES);
+            }
+            weights.put(type, Integer.parseInt(weight[1].trim()));
+        }
+        if(weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new RuntimeException("Type mix must have a positive weight.");
+        }
+        this.typeMix = weights;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setProfile(String profile) {
+        this.profile = profile;
+    }
+
+    public static void main(String[] args) throws IOException, ParseException {
+        Options options = new Options();
+        Option output = new Option("o", "output", true, "Script root directory to generate");
+        output.setRequired(true);
+        options.addOption(output);
+        options.addOption(new Option("n", "objects", true, "Number of objects, default 1000"));
+        options.addOption(new Option(null, "objects-per-schema", true, "Objects in each schema, default 500"));
+        options.addOption(new Option(null, "databases", true, "Number of databases the schemas are spread over, default 1"));
+        options.addOption(new Option(null, "depth", true, "Number of state object layers above the tables, default 5"));
+        options.addOption(new Option(null, "min-dependencies", true, "Minimum references of a state object, default 1"));
+        options.addOption(new Option(null, "max-dependencies", true, "Maximum references of a state object, default 4"));
+        options.addOption(new Option(null, "fan-in-skew", true, "Above 1 concentrates references on few objects, default 1"));
+        options.addOption(new Option(null, "max-versions", true, "Maximum migration versions of a table or sequence, default 3"));
+        options.addOption(new Option(null, "parameters", true, "Number of distinct parameter placeholders, default 3"));
+        options.addOption(new Option(null, "noise", true, "Comment and string literal blocks per script, default 1"));
+        options.addOption(new Option(null, "type-mix", true, "Type weights, default TABLES=30,VIEWS=50,FUNCTIONS=15,PROCEDURES=5"));
+        options.addOption(new Option(null, "seed", true, "Random seed, default 42"));
+        options.addOption(new Option("p", "profile", true, "Profile of the generated parameter file, default dev"));
+        CommandLine commandLine = new DefaultParser().parse(options, args);
+
+        ScriptRepositoryGenerator generator = new ScriptRepositoryGenerator();
+        generator.setObjectCount(Integer.parseInt(commandLine.getOptionValue("objects", "1000")));
+        generator.setObjectsPerSchema(Integer.parseInt(commandLine.getOptionValue("objects-per-schema", "500")));
+        generator.setDatabaseCount(Integer.parseInt(commandLine.getOptionValue("databases", "1")));
+        generator.setDepth(Integer.parseInt(commandLine.getOptionValue("depth", "5")));
+        generator.setMinDependencies(Integer.parseInt(commandLine.getOptionValue("min-dependencies", "1")));
+        generator.setMaxDependencies(Integer.parseInt(commandLine.getOptionValue("max-dependencies", "4")));
+        generator.setFanInSkew(Double.parseDouble(commandLine.getOptionValue("fan-in-skew", "1")));
+        generator.setMaxVersions(Integer.parseInt(commandLine.getOptionValue("max-versions", "3")));
+        generator.setParameterCount(Integer.parseInt(commandLine.getOptionValue("parameters", "3")));
+        generator.setNoise(Integer.parseInt(commandLine.getOptionValue("noise", "1")));
+        if(commandLine.hasOption("type-mix")) {
+            generator.setTypeMix(commandLine.getOptionValue("type-mix"));
+        }
+        generator.setSeed(Long.parseLong(commandLine.getOptionValue("seed", "42")));
+        generator.setProfile(commandLine.getOptionValue("profile", "dev"));
+
+        Path scriptRoot = Path.of(commandLine.getOptionValue("output"));
+        int scriptCount = generator.generate(scriptRoot);
+        System.out.println("Generated " + scriptCount + " scripts for " + generator.objectCount + " objects in " + scriptRoot.toAbsolutePath());
+    }
+}
@@ -0,0 +1,85 @@
+package com.snowflake.dlsync;
+
+import com.snowflake.dlsync.dependency.DependencyExtractor;
+import com.snowflake.dlsync.dependency.DependencyGraph;
+import com.snowflake.dlsync.doa.ScriptSource;
+import com.snowflake.dlsync.models.Config;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptRepositoryGeneratorTest {
+
+    @TempDir
+    Path scriptRoot;
+
+    private List<String> readTree() throws IOException {
+        try (Stream<Path> paths = Files.walk(scriptRoot)) {
+            return paths.filter(Files::isRegularFile).sorted().map(path -> {
+                try {
+                    return scriptRoot.relativize(path) + "\n" + Files.readString(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void generatedTreeIsReadableAndSortable() throws IOException {
+        ScriptRepositoryGenerator generator = new ScriptRepositoryGenerator();
+        generator.setObjectCount(300);
+        generator.setObjectsPerSchema(100);
+        generator.setDatabaseCount(2);
+        generator.setDepth(4);
+        generator.setMaxVersions(3);
+        int scriptCount = generator.generate(scriptRoot);
+
+        List<Script> scripts = new ScriptSource(scriptRoot.toString()).getAllScripts();
+        assertEquals(scriptCount, scripts.size(), "Every generated script should be read back.");
+        assertEquals(2, scripts.stream().map(Script::getDatabaseName).distinct().count(), "Schemas should be spread over the databases.");
+        assertTrue(scripts.stream().anyMatch(script -> script.getObjectType() == ScriptObjectType.TABLES), "Tables missing.");
+        assertTrue(scripts.stream().anyMatch(script -> script.getObjectType() == ScriptObjectType.FUNCTIONS), "Functions missing.");
+        assertTrue(Files.exists(scriptRoot.resolve("parameter-dev.properties")), "Parameter file missing.");
+
+        DependencyGraph dependencyGraph = new DependencyGraph(new DependencyExtractor(), new Config());
+        dependencyGraph.addNodes(scripts);
+        assertEquals(scriptCount, dependencyGraph.topologicalSort().size());
+        int levels = dependencyGraph.getLevels().size();
+        assertTrue(levels >= 5 && levels <= 4 + 3, "Levels should be the state layers above the migration versions, was " + levels);
+    }
+
+    @Test
+    void sameSeedGeneratesSameTree() throws IOException {
+        ScriptRepositoryGenerator generator = new ScriptRepositoryGenerator();
+        generator.setObjectCount(50);
+        generator.setTypeMix("TABLES=2,SEQUENCES=1,VIEWS=5,PROCEDURES=2");
+        generator.setNoise(3);
+        generator.generate(scriptRoot.resolve("first"));
+        generator.generate(scriptRoot.resolve("second"));
+        List<String> files = readTree();
+        int half = files.size() / 2;
+        for(int i = 0; i < half; i++) {
+            assertEquals(files.get(i).replaceFirst("^first", ""), files.get(half + i).replaceFirst("^second", ""));
+        }
+    }
+
+    @Test
+    void generateRefusesExistingScripts() throws IOException {
+        ScriptRepositoryGenerator generator = new ScriptRepositoryGenerator();
+        generator.setObjectCount(10);
+        generator.generate(scriptRoot);
+        assertThrows(RuntimeException.class, () -> generator.generate(scriptRoot));
+        assertThrows(RuntimeException.class, () -> generator.setTypeMix("STAGES=1"));
+    }
+}
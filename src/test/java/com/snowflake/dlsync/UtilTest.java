@@ -0,0 +1,34 @@
+package com.snowflake.dlsync;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UtilTest {
+
+    @Test
+    void timeOrderedIdsAreOrderedByTime() {
+        long now = System.currentTimeMillis();
+        long previous = Util.newTimeOrderedId(now);
+        for(int i = 1; i <= 1000; i++) {
+            long id = Util.newTimeOrderedId(now + i);
+            assertTrue(id > previous, "Ids of later milliseconds should be larger.");
+            previous = id;
+        }
+        assertTrue(Util.newTimeOrderedId(now) > 1_000_000_000L, "Ids should be larger than sequential ids of older versions.");
+        assertTrue(Util.newTimeOrderedId(1704067200000L + 60L * 365 * 24 * 3600 * 1000) > 0, "Ids should stay positive for decades.");
+    }
+
+    @Test
+    void timeOrderedIdsOfSameMillisecondDiffer() {
+        long now = System.currentTimeMillis();
+        Set<Long> ids = new HashSet<>();
+        for(int i = 0; i < 100; i++) {
+            ids.add(Util.newTimeOrderedId(now));
+        }
+        assertTrue(ids.size() > 95, "Ids of the same millisecond should be random.");
+    }
+}
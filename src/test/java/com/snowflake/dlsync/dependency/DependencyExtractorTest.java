@@ -125,6 +125,37 @@ class DependencyExtractorTest {
         assertEquals(expected, actual, "Dependency extractor failed:");
     }
 
+    @Test
+    void extractScriptDependenciesTestWithQueryStringInBody() {
+        String content = "CREATE OR REPLACE PROCEDURE PROC1()\n" +
+                "RETURNS STRING\n" +
+                "LANGUAGE PYTHON\n" +
+                "HANDLER = 'main'\n" +
+                "AS\n" +
+                "$$\n" +
+                "def main(session):\n" +
+                "  df = session.sql(\"select * from TEST_DB.TEST_SCHEMA2.DEPENDENCY\")\n" +
+                "  df.write.mode(\"overwrite\").save_as_table(\"TEST_DB.TEST_SCHEMA.NOT_DEPENDENCY1\")\n" +
+                "  return \"done\"\n" +
+                "$$;";
+        Script script = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.PROCEDURES, "PROC1", content);
+
+        Script dependency1 = mockViewDependency("DEPENDENCY", "TEST_SCHEMA2");
+        Script dependency2 = mockViewDependency("NOT_DEPENDENCY1", "TEST_SCHEMA");
+
+        List<Script> changedScript = new ArrayList<>();
+        changedScript.add(script);
+        changedScript.add(dependency1);
+        changedScript.add(dependency2);
+        dependencyExtractor.addScripts(changedScript);
+        Set<Script> expected = Set.of(
+                dependency1,
+                dependency2
+        );
+        Set<Script> actual = dependencyExtractor.extractScriptDependencies(script);
+        assertEquals(expected, actual, "Dependency extractor failed to find the query string dependencies:");
+    }
+
     @Test
     void extractScriptDependenciesTestWithComments() throws IOException {
         String content = "CREATE OR REPLACE VIEW VIEW1 COMMENT='SOME COMMENTS' AS SELECT * FROM -- NOT_DEPENDENCY1\n" +
@@ -3,6 +3,7 @@ package com.snowflake.dlsync.dependency;
 import com.snowflake.dlsync.ConfigManager;
 import com.snowflake.dlsync.ScriptFactory;
 import com.snowflake.dlsync.models.Config;
+import com.snowflake.dlsync.models.DependencyOverride;
 import com.snowflake.dlsync.models.Script;
 import com.snowflake.dlsync.models.ScriptObjectType;
 import org.junit.jupiter.api.AfterEach;
@@ -12,7 +13,9 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -79,4 +82,155 @@ class DependencyGraphTest {
 
         assertEquals(expected, actual);
     }
-}
\ No newline at end of file
+
+    @Test
+    void getLevelsTest() {
+        String content1 = "CREATE OR REPLACE VIEW VIEW1 AS SELECT * FROM TABLE1;";
+        String content2 = "CREATE OR REPLACE VIEW VIEW2 AS SELECT * FROM TABLE2;";
+        String content3 = "CREATE OR REPLACE VIEW VIEW3 AS SELECT * FROM VIEW1 JOIN VIEW2 ON VIEW1.ID=VIEW2.ID;";
+        String content4 = "CREATE OR REPLACE VIEW VIEW4 AS SELECT * FROM VIEW1;";
+        String content5 = "CREATE OR REPLACE VIEW VIEW5 AS SELECT * FROM VIEW3;";
+
+        Script script1 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW1", content1);
+        Script script2 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW2", content2);
+        Script script3 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW3", content3);
+        Script script4 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW4", content4);
+        Script script5 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW5", content5);
+
+        dependencyGraph.addNodes(List.of(script5, script4, script3, script2, script1));
+        List<List<Script>> levels = dependencyGraph.getLevels();
+
+        assertEquals(3, levels.size());
+        assertEquals(Set.of(script1, script2), new HashSet<>(levels.get(0)));
+        assertEquals(Set.of(script3, script4), new HashSet<>(levels.get(1)));
+        assertEquals(Set.of(script5), new HashSet<>(levels.get(2)));
+        assertEquals(5, dependencyGraph.topologicalSort().size(), "Levels should not consume the graph.");
+    }
+
+    @Test
+    void getDownstreamScriptsTest() {
+        String content1 = "CREATE OR REPLACE VIEW VIEW1 AS SELECT * FROM TABLE1;";
+        String content2 = "CREATE OR REPLACE VIEW VIEW2 AS SELECT * FROM VIEW1;";
+        String content3 = "CREATE OR REPLACE VIEW VIEW3 AS SELECT * FROM VIEW2;";
+        String content4 = "CREATE OR REPLACE VIEW VIEW4 AS SELECT * FROM TABLE1;";
+
+        Script script1 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW1", content1);
+        Script script2 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW2", content2);
+        Script script3 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW3", content3);
+        Script script4 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW4", content4);
+
+        dependencyGraph.addNodes(List.of(script1, script2, script3, script4));
+
+        assertEquals(Set.of(script2, script3), dependencyGraph.getDownstreamScripts(script1));
+        assertEquals(Set.of(script3), dependencyGraph.getDownstreamScripts(script2));
+        assertEquals(Set.of(), dependencyGraph.getDownstreamScripts(script4));
+    }
+    @Test
+    void dependencyOverrideTest() {
+        String content1 = "CREATE OR REPLACE VIEW VIEW1 AS SELECT * FROM TABLE1;";
+        String content2 = "CREATE OR REPLACE VIEW VIEW2 AS SELECT * FROM TABLE2;";
+        String content3 = "CREATE OR REPLACE VIEW VIEW3 AS SELECT * FROM TABLE3;";
+
+        Script script1 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW1", content1);
+        Script script2 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW2", content2);
+        Script script3 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW3", content3);
+
+        DependencyOverride override = new DependencyOverride();
+        override.setScript("TEST_DB.TEST_SCHEMA.VIEW1");
+        override.setDependencies(List.of("TEST_DB.TEST_SCHEMA.VIEW3", "TEST_DB.TEST_SCHEMA.MISSING_VIEW"));
+        Config config = new Config();
+        config.setDependencyOverride(List.of(override));
+        DependencyGraph graph = new DependencyGraph(new DependencyExtractor(), config);
+        graph.addNodes(List.of(script1, script2, script3));
+
+        assertEquals(List.of(script2, script3, script1), graph.topologicalSort());
+        assertEquals(Set.of(script1), graph.getDownstreamScripts(script3));
+    }
+
+    @Test
+    void topologicalSortLargeGraphTest() {
+        int size = 50000;
+        List<Script> scripts = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            String from = i == 0 ? "TABLE1" : "VIEW" + (i - 1) + " JOIN VIEW" + (i / 2);
+            scripts.add(ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW" + i, "CREATE OR REPLACE VIEW VIEW" + i + " AS SELECT * FROM " + from + ";"));
+        }
+        List<Script> shuffled = new ArrayList<>(scripts);
+        Collections.shuffle(shuffled);
+        dependencyGraph.addNodes(shuffled);
+
+        assertEquals(scripts, dependencyGraph.topologicalSort());
+        assertEquals(size, dependencyGraph.getLevels().size());
+        assertEquals(size - 1, dependencyGraph.getDownstreamScripts(scripts.get(0)).size());
+    }
+    @Test
+    void topologicalSortReportsCycles() {
+        String content1 = "CREATE OR REPLACE VIEW VIEW1 AS SELECT * FROM VIEW3;";
+        String content2 = "CREATE OR REPLACE VIEW VIEW2 AS SELECT * FROM VIEW1;";
+        String content3 = "CREATE OR REPLACE VIEW VIEW3 AS SELECT * FROM VIEW2 JOIN VIEW5 ON VIEW2.ID=VIEW5.ID;";
+        String content4 = "CREATE OR REPLACE VIEW VIEW4 AS SELECT * FROM VIEW1;";
+        String content5 = "CREATE OR REPLACE VIEW VIEW5 AS SELECT * FROM VIEW6;";
+        String content6 = "CREATE OR REPLACE VIEW VIEW6 AS SELECT * FROM VIEW5;";
+        String content7 = "CREATE OR REPLACE VIEW VIEW7 AS SELECT * FROM TABLE1;";
+
+        Script script1 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW1", content1);
+        Script script2 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW2", content2);
+        Script script3 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW3", content3);
+        Script script4 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW4", content4);
+        Script script5 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW5", content5);
+        Script script6 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW6", content6);
+        Script script7 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW7", content7);
+
+        dependencyGraph.addNodes(List.of(script7, script4, script1, script2, script3, script5, script6));
+
+        CyclicDependencyException exception = assertThrows(CyclicDependencyException.class, () -> dependencyGraph.topologicalSort());
+        assertEquals(List.of(List.of(script1, script3, script2), List.of(script5, script6)), exception.getCycles());
+        assertEquals("TEST_DB.TEST_SCHEMA.VIEW1 -> TEST_DB.TEST_SCHEMA.VIEW3 -> TEST_DB.TEST_SCHEMA.VIEW2 -> TEST_DB.TEST_SCHEMA.VIEW1", CyclicDependencyException.toPath(exception.getCycles().get(0)));
+        assertTrue(exception.toJson().contains("\"cycleCount\" : 2"), exception.toJson());
+        assertThrows(CyclicDependencyException.class, () -> dependencyGraph.getLevels());
+        assertEquals(exception.getCycles(), dependencyGraph.findCycles());
+    }
+
+    @Test
+    void getImpactClosureTest() {
+        String content1 = "CREATE OR REPLACE VIEW VIEW1 AS SELECT * FROM TABLE1;";
+        String content2 = "CREATE OR REPLACE VIEW VIEW2 AS SELECT * FROM VIEW1;";
+        String content3 = "CREATE OR REPLACE VIEW VIEW3 AS SELECT * FROM VIEW2;";
+        String content4 = "CREATE OR REPLACE VIEW VIEW4 AS SELECT * FROM TABLE2;";
+        String content5 = "CREATE OR REPLACE VIEW VIEW5 AS SELECT * FROM TABLE1;";
+        String tableContent1 = "CREATE TABLE TABLE1 (ID NUMBER);";
+        String tableContent2 = "CREATE TABLE TABLE2 AS SELECT * FROM VIEW1;";
+
+        Script script1 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW1", content1);
+        Script script2 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW2", content2);
+        Script script3 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW3", content3);
+        Script script4 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW4", content4);
+        Script script5 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW5", content5);
+        Script table1 = ScriptFactory.getMigrationScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.TABLES, "TABLE1", tableContent1, 0L, "test", "", "");
+        Script table2 = ScriptFactory.getMigrationScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.TABLES, "TABLE2", tableContent2, 0L, "test", "", "");
+
+        dependencyGraph.addNodes(List.of(script5, script4, script3, script2, script1, table1, table2));
+
+        Set<Script> closure = dependencyGraph.getImpactClosure(List.of(script1));
+        assertEquals(Set.of(script1, script2, script3), closure, "Unchanged migration scripts should not be redeployed nor propagate the impact");
+
+        closure = dependencyGraph.getImpactClosure(List.of(table1, table2));
+        assertEquals(Set.of(table1, table2, script1, script2, script3, script4, script5), closure);
+
+        dependencyGraph.retainNodes(dependencyGraph.getImpactClosure(List.of(script1)));
+        assertEquals(List.of(script1, script2, script3), dependencyGraph.topologicalSort());
+    }
+
+    @Test
+    void addNodesWithResolvedDependenciesTest() {
+        Script script1 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW1", "CREATE OR REPLACE VIEW VIEW1 AS SELECT 1 AS ID;");
+        Script script2 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW2", "CREATE OR REPLACE VIEW VIEW2 AS SELECT 2 AS ID;");
+        Script script3 = ScriptFactory.getStateScript("TEST_DB", "TEST_SCHEMA", ScriptObjectType.VIEWS, "VIEW3", "CREATE OR REPLACE VIEW VIEW3 AS SELECT 3 AS ID;");
+
+        dependencyGraph.addNodes(List.of(script3, script2, script1), List.of(new int[]{1, 2}, new int[]{2}, new int[0]));
+
+        assertEquals(List.of(script1, script2, script3), dependencyGraph.topologicalSort());
+        assertEquals(List.of(script2, script1), dependencyGraph.getDependencies(script3));
+        assertEquals(Set.of(script2, script3), dependencyGraph.getDownstreamScripts(script1));
+    }
+}
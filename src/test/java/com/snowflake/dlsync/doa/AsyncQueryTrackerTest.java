@@ -0,0 +1,61 @@
+package com.snowflake.dlsync.doa;
+
+import net.snowflake.client.jdbc.QueryStatusV2;
+import net.snowflake.client.jdbc.SnowflakeResultSet;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncQueryTrackerTest {
+
+    @Test
+    void awaitAnyReturnsFinishedQueries() throws SQLException {
+        AsyncQueryTracker<String> tracker = new AsyncQueryTracker<>(1, 2);
+        tracker.track("view1", asyncResult("query1", "RUNNING", "SUCCESS"));
+        tracker.track("view2", asyncResult("query2", "RUNNING", "RUNNING", "FAILED_WITH_ERROR"));
+        tracker.track("view3", asyncResult("query3", "QUEUED", "RUNNING", "RUNNING", "RUNNING", "SUCCESS"));
+        assertEquals(3, tracker.size());
+
+        List<AsyncQueryTracker.Completion<String>> completions = tracker.awaitAny();
+        assertEquals(1, completions.size());
+        assertEquals("view1", completions.get(0).getItem());
+        assertEquals("query1", completions.get(0).getQueryId());
+        assertTrue(completions.get(0).isSuccess());
+
+        completions = tracker.awaitAny();
+        assertEquals(1, completions.size());
+        assertEquals("view2", completions.get(0).getItem());
+        assertFalse(completions.get(0).isSuccess());
+        assertEquals("Compilation error", completions.get(0).getErrorMessage());
+
+        completions = tracker.awaitAny();
+        assertEquals("query3", completions.get(0).getQueryId());
+        assertTrue(tracker.isEmpty());
+        assertTrue(tracker.awaitAny().isEmpty(), "Nothing left to wait for.");
+    }
+
+    private static ResultSet asyncResult(String queryId, String... states) {
+        Deque<String> remainingStates = new ArrayDeque<>(List.of(states));
+        return (ResultSet) Proxy.newProxyInstance(AsyncQueryTrackerTest.class.getClassLoader(), new Class<?>[]{ResultSet.class, SnowflakeResultSet.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "unwrap":
+                    return proxy;
+                case "getQueryID":
+                    return queryId;
+                case "getStatusV2":
+                    String state = remainingStates.size() > 1 ? remainingStates.poll() : remainingStates.peek();
+                    String errorMessage = state.startsWith("FAILED") ? "Compilation error" : null;
+                    return new QueryStatusV2(0, 0, errorMessage, queryId, state, 0, "", 0, state, 0, "", 0, "", "");
+                default:
+                    return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,77 @@
+package com.snowflake.dlsync.doa;
+
+import com.snowflake.dlsync.models.Migration;
+import com.snowflake.dlsync.parser.SqlTokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfigTableExporterTest {
+
+    @Test
+    void exportWritesChunkedMigrations() throws SQLException, IOException {
+        Object[][] rows = {{"1", "it's"}, {"2", null}, {"3", "c"}, {"4", "d"}, {"5", "e"}};
+        StringWriter writer = new StringWriter();
+        ConfigTableExporter exporter = new ConfigTableExporter("DB1.SCHEMA1.CONFIG1", writer, UnaryOperator.identity(), 2, 1024);
+
+        assertEquals(5, exporter.export(resultSet(rows)));
+
+        List<Migration> migrations = SqlTokenizer.parseMigrationScripts(writer.toString());
+        assertEquals(3, migrations.size(), "Five rows in chunks of two should give three migrations.");
+        assertEquals(List.of(1L, 2L, 3L), List.of(migrations.get(0).getVersion(), migrations.get(1).getVersion(), migrations.get(2).getVersion()));
+        assertEquals("DlSync", migrations.get(0).getAuthor());
+        assertTrue(migrations.get(0).getContent().contains("INSERT INTO DB1.SCHEMA1.CONFIG1 VALUES\n('1', 'it''s'),\n('2', null);"), migrations.get(0).getContent());
+        assertTrue(migrations.get(2).getContent().contains("VALUES\n('5', 'e');"), migrations.get(2).getContent());
+        assertEquals("DELETE FROM DB1.SCHEMA1.CONFIG1;", migrations.get(0).getRollback());
+        assertNull(migrations.get(1).getRollback(), "Only the first migration deletes the rows.");
+        assertEquals("SELECT COUNT(*) FROM DB1.SCHEMA1.CONFIG1;", migrations.get(2).getVerify());
+    }
+
+    @Test
+    void exportSplitsLargeChunks() throws SQLException, IOException {
+        Object[][] rows = {{"a".repeat(40)}, {"b".repeat(40)}, {"c".repeat(40)}};
+        StringWriter writer = new StringWriter();
+        ConfigTableExporter exporter = new ConfigTableExporter("DB1.SCHEMA1.CONFIG1", writer, content -> content.replace("DB1", "${db}"), 100, 50);
+
+        assertEquals(3, exporter.export(resultSet(rows)));
+
+        List<Migration> migrations = SqlTokenizer.parseMigrationScripts(writer.toString());
+        assertEquals(3, migrations.size(), "Every row exceeds the chunk size and should get its own migration.");
+        assertTrue(migrations.get(1).getContent().contains("INSERT INTO ${db}.SCHEMA1.CONFIG1 VALUES"), migrations.get(1).getContent());
+    }
+
+    @Test
+    void exportWritesNothingForEmptyTable() throws SQLException, IOException {
+        StringWriter writer = new StringWriter();
+        assertEquals(0, new ConfigTableExporter("DB1.SCHEMA1.CONFIG1", writer, UnaryOperator.identity()).export(resultSet(new Object[0][])));
+        assertEquals("", writer.toString());
+    }
+
+    private static ResultSet resultSet(Object[][] rows) {
+        int columnCount = rows.length == 0 ? 1 : rows[0].length;
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(ConfigTableExporterTest.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class},
+                (proxy, method, args) -> "getColumnCount".equals(method.getName()) ? columnCount : null);
+        int[] row = {-1};
+        return (ResultSet) Proxy.newProxyInstance(ConfigTableExporterTest.class.getClassLoader(), new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getMetaData":
+                    return metaData;
+                case "next":
+                    return ++row[0] < rows.length;
+                case "getObject":
+                    return rows[row[0]][(Integer) args[0] - 1];
+                default:
+                    return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,60 @@
+package com.snowflake.dlsync.doa;
+
+import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.models.MigrationScript;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeploymentPlanTest {
+
+    @TempDir
+    Path planDirectory;
+
+    @Test
+    void planSurvivesWriteAndRead() throws IOException {
+        MigrationScript table = ScriptFactory.getMigrationScript("DB1", "SCHEMA1", ScriptObjectType.TABLES, "TABLE1", "create or replace table db1.schema1.table1(id varchar);", 2L, "junit", "drop table db1.schema1.table1;", null);
+        Script view1 = ScriptFactory.getStateScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "create or replace view db1.schema1.view1 as select * from ${db}.schema1.table1;");
+        Script view2 = ScriptFactory.getStateScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW2", "create or replace view db1.schema1.view2 as select * from view1;");
+        String sourceHash = view1.getHash();
+        view1.setContent("create or replace view db1.schema1.view1 as select * from db1.schema1.table1;");
+
+        DeploymentPlan plan = new DeploymentPlan("3:42", 1000L, List.of(List.of(table), List.of(view1), List.of(view2)),
+                Map.of(view1, List.of(table), view2, List.of(view1)), Map.of(view1.getId(), "previous"));
+        Path planFile = planDirectory.resolve("nested/dlsync.plan");
+        plan.write(planFile);
+
+        DeploymentPlan read = DeploymentPlan.read(planFile);
+        assertEquals("3:42", read.getHistoryWatermark(), "Watermark mismatch.");
+        assertEquals(1000L, read.getCreatedAt(), "Creation time mismatch.");
+        assertEquals(List.of(table, view1, view2), read.getScripts(), "Scripts mismatch.");
+        assertEquals(List.of(List.of(table), List.of(view1), List.of(view2)), read.getLevels(), "Levels mismatch.");
+        assertArrayEquals(new int[0], read.getDependencies().get(0));
+        assertArrayEquals(new int[]{0}, read.getDependencies().get(1));
+        assertArrayEquals(new int[]{1}, read.getDependencies().get(2));
+        assertEquals(Map.of(view1.getId(), "previous"), read.getDeployedHashes(), "Deployed hashes mismatch.");
+
+        Script readView = read.getScripts().get(1);
+        assertEquals(view1.getContent(), readView.getContent(), "Resolved content mismatch.");
+        assertEquals(sourceHash, readView.getHash(), "The hash of the source script should be kept.");
+        MigrationScript readTable = (MigrationScript) read.getScripts().get(0);
+        assertEquals(table.getRollback(), readTable.getRollback(), "Rollback mismatch.");
+        assertNull(readTable.getVerify(), "Verify should be null.");
+    }
+
+    @Test
+    void readRejectsOtherFiles() throws IOException {
+        Path planFile = planDirectory.resolve("dlsync.plan");
+        Files.writeString(planFile, "not a plan");
+        assertThrows(IOException.class, () -> DeploymentPlan.read(planFile));
+    }
+}
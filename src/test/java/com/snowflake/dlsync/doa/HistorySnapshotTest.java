@@ -0,0 +1,62 @@
+package com.snowflake.dlsync.doa;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistorySnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void snapshotSurvivesReload() {
+        Path snapshotFile = directory.resolve("history.bin");
+        HistorySnapshot snapshot = new HistorySnapshot(snapshotFile);
+        assertNull(snapshot.getWatermark());
+        snapshot.put("DB1.SCHEMA1.VIEW1", "hash1", "deployed1", "2024-01-02 10:00:00.000000000");
+        snapshot.put("DB1.SCHEMA1.TABLE1:1", "hash2", null, "2024-01-01 10:00:00.000000000");
+        snapshot.setScriptIdHash("-4242");
+        snapshot.save();
+
+        HistorySnapshot reloaded = new HistorySnapshot(snapshotFile);
+        assertEquals(2, reloaded.size());
+        assertEquals("-4242", reloaded.getScriptIdHash());
+        assertTrue(reloaded.contains("DB1.SCHEMA1.TABLE1:1"));
+        assertEquals("2024-01-02 10:00:00.000000000", reloaded.getWatermark());
+        assertEquals(Map.of("DB1.SCHEMA1.VIEW1", "hash1", "DB1.SCHEMA1.TABLE1:1", "hash2"), reloaded.getScriptHashes());
+        assertEquals("deployed1", reloaded.getDeployedHashes().get("DB1.SCHEMA1.VIEW1"));
+        assertNull(reloaded.getDeployedHashes().get("DB1.SCHEMA1.TABLE1:1"));
+    }
+
+    @Test
+    void putReplacesRowAndKeepsLatestWatermark() {
+        HistorySnapshot snapshot = new HistorySnapshot(directory.resolve("history.bin"));
+        snapshot.put("DB1.SCHEMA1.VIEW1", "hash1", "hash1", "2024-01-02 10:00:00.000000000");
+        snapshot.put("DB1.SCHEMA1.VIEW1", "hash2", "hash2", "2024-01-01 10:00:00.000000000");
+        assertEquals(1, snapshot.size());
+        assertEquals("hash2", snapshot.getScriptHashes().get("DB1.SCHEMA1.VIEW1"));
+        assertEquals("2024-01-02 10:00:00.000000000", snapshot.getWatermark());
+
+        snapshot.setScriptIdHash("42");
+        snapshot.clear();
+        assertEquals(0, snapshot.size());
+        assertNull(snapshot.getWatermark());
+        assertNull(snapshot.getScriptIdHash());
+    }
+
+    @Test
+    void corruptedSnapshotIsIgnored() throws IOException {
+        Path snapshotFile = directory.resolve("history.bin");
+        Files.write(snapshotFile, new byte[]{1, 2, 3});
+        HistorySnapshot snapshot = new HistorySnapshot(snapshotFile);
+        assertEquals(0, snapshot.size());
+        assertNull(snapshot.getWatermark());
+    }
+}
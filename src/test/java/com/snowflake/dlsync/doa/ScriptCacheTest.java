@@ -0,0 +1,58 @@
+package com.snowflake.dlsync.doa;
+
+import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.models.MigrationScript;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptCacheTest {
+
+    @TempDir
+    Path scriptRoot;
+
+    @Test
+    void cachedScriptsSurviveReload() {
+        Script view = ScriptFactory.getStateScript("db1/schema1/VIEWS/VIEW1.SQL", "DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "create or replace view db1.schema1.view1 as select * from table1;");
+        view.setReferencedIdentifiers(Set.of("table1"));
+        MigrationScript table = ScriptFactory.getMigrationScript("DB1", "SCHEMA1", ScriptObjectType.TABLES, "TABLE1", "create or replace table db1.schema1.table1(id varchar);", 1L, "junit", "drop table db1.schema1.table1;", null);
+
+        ScriptCache scriptCache = new ScriptCache(scriptRoot.toString());
+        scriptCache.put("VIEW1.SQL", "hash1", Set.of(view));
+        scriptCache.put("TABLE1.SQL", "hash2", Set.of(table));
+        scriptCache.save(Set.of("VIEW1.SQL", "TABLE1.SQL"));
+
+        ScriptCache reloaded = new ScriptCache(scriptRoot.toString());
+        Set<Script> views = reloaded.get("VIEW1.SQL", "hash1");
+        assertEquals(Set.of(view), views, "Cached state script mismatch.");
+        Script cachedView = views.iterator().next();
+        assertEquals(view.getContent(), cachedView.getContent(), "Cached content mismatch.");
+        assertEquals(view.getHash(), cachedView.getHash(), "Cached hash mismatch.");
+        assertEquals(Set.of("table1"), cachedView.getReferencedIdentifiers(), "Cached identifiers mismatch.");
+
+        MigrationScript cachedTable = (MigrationScript) reloaded.get("TABLE1.SQL", "hash2").iterator().next();
+        assertEquals(table.getId(), cachedTable.getId(), "Cached migration mismatch.");
+        assertEquals(table.getRollback(), cachedTable.getRollback(), "Cached rollback mismatch.");
+        assertNull(cachedTable.getVerify(), "Cached verify should be null.");
+        assertNull(cachedTable.getReferencedIdentifiers(), "Identifiers should not be extracted.");
+    }
+
+    @Test
+    void changedOrRemovedFilesAreNotReturned() {
+        Script view = ScriptFactory.getStateScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "create or replace view db1.schema1.view1 as select 1;");
+        ScriptCache scriptCache = new ScriptCache(scriptRoot.toString());
+        scriptCache.put("VIEW1.SQL", "hash1", Set.of(view));
+        scriptCache.save(Set.of("VIEW1.SQL"));
+
+        ScriptCache reloaded = new ScriptCache(scriptRoot.toString());
+        assertNull(reloaded.get("VIEW1.SQL", "hash2"), "Changed file should not be cached.");
+        reloaded.save(Set.of("VIEW2.SQL"));
+        assertNull(new ScriptCache(scriptRoot.toString()).get("VIEW1.SQL", "hash1"), "Removed file should be dropped.");
+    }
+}
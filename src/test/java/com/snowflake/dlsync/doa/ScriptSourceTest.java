@@ -0,0 +1,96 @@
+package com.snowflake.dlsync.doa;
+
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptSourceTest {
+
+    @TempDir
+    Path scriptRoot;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        writeScript("VIEWS", "VIEW1.SQL", "create or replace view db1.schema1.view1 as select * from db1.schema1.table1;");
+        writeScript("TABLES", "TABLE1.SQL", "---version: 1, author: junit\ncreate or replace table db1.schema1.table1(id varchar);\n---version: 0, author: junit\ncreate or replace table db1.schema1.table1(id number);");
+    }
+
+    private Path writeScript(String type, String name, String content) throws IOException {
+        return writeScript("DB1", "SCHEMA1", type, name, content);
+    }
+
+    private Path writeScript(String database, String schema, String type, String name, String content) throws IOException {
+        Path directory = scriptRoot.resolve("main").resolve(database).resolve(schema).resolve(type);
+        Files.createDirectories(directory);
+        return Files.writeString(directory.resolve(name), content);
+    }
+
+    @Test
+    void getAllScriptsReadsScriptsInPathOrder() throws IOException {
+        writeScript("DB2", "SCHEMA1", "VIEWS", "VIEW3.SQL", "create or replace view db2.schema1.view3 as select 1 as id;");
+        writeScript("DB1", "SCHEMA2", "VIEWS", "VIEW2.SQL", "create or replace view db1.schema2.view2 as select 1 as id;");
+        writeScript("DB1", "SCHEMA2", "FUNCTIONS", "FUNCTION1.SQL", "create or replace function db1.schema2.function1() returns number as '1';");
+        writeScript(".HIDDEN", "SCHEMA1", "VIEWS", "VIEW4.SQL", "create or replace view hidden.schema1.view4 as select 1 as id;");
+        for(int i = 0; i < 3; i++) {
+            List<String> ids = new ScriptSource(scriptRoot.toString()).getAllScripts().stream().map(Script::getId).collect(Collectors.toList());
+            assertEquals(List.of("DB1.SCHEMA1.TABLE1:0", "DB1.SCHEMA1.TABLE1:1", "DB1.SCHEMA1.VIEW1", "DB1.SCHEMA2.FUNCTION1", "DB1.SCHEMA2.VIEW2", "DB2.SCHEMA1.VIEW3"), ids,
+                    "Scripts should be read in the order of their database, schema, type and file, without hidden directories.");
+        }
+    }
+
+    @Test
+    void getAllScriptsReportsAllParseErrors() throws IOException {
+        Path broken1 = writeScript("VIEWS", "BROKEN1.SQL", "create or replace view db1.schema1.other1 as select 1 as id;");
+        Path broken2 = writeScript("DB2", "SCHEMA1", "VIEWS", "BROKEN2.SQL", "create or replace view db2.schema1.other2 as select 1 as id;");
+        RuntimeException error = assertThrows(RuntimeException.class, () -> new ScriptSource(scriptRoot.toString()).getAllScripts());
+        assertTrue(error.getMessage().contains(broken1.toString()), "Error should name the first broken file: " + error.getMessage());
+        assertTrue(error.getMessage().contains(broken2.toString()), "Error should name the second broken file: " + error.getMessage());
+        assertEquals(2, error.getSuppressed().length, "Both parse errors should be suppressed.");
+    }
+
+    @Test
+    void getSnapshotIndexesScriptsInFileOrder() throws IOException {
+        ScriptSnapshot snapshot = new ScriptSource(scriptRoot.toString()).getSnapshot();
+        List<String> ids = snapshot.getScripts().stream().map(Script::getId).collect(Collectors.toList());
+        assertEquals(List.of("DB1.SCHEMA1.TABLE1:0", "DB1.SCHEMA1.TABLE1:1", "DB1.SCHEMA1.VIEW1"), ids, "Scripts should be sorted by file and version.");
+        assertEquals(2, snapshot.getByFullObjectName("DB1.SCHEMA1.TABLE1").size(), "Lookup by full object name failed.");
+        assertEquals(1, snapshot.getByObjectType(ScriptObjectType.VIEWS).size(), "Lookup by object type failed.");
+        assertNotNull(snapshot.getById("DB1.SCHEMA1.TABLE1:1"), "Lookup by id failed.");
+        assertNull(snapshot.getById("DB1.SCHEMA1.TABLE2"), "Lookup of missing id should be null.");
+    }
+
+    @Test
+    void getSnapshotReturnsCopies() throws IOException {
+        ScriptSnapshot snapshot = new ScriptSource(scriptRoot.toString()).getSnapshot();
+        Script view = snapshot.getById("DB1.SCHEMA1.VIEW1");
+        view.setContent("changed");
+        assertNotEquals("changed", snapshot.getById("DB1.SCHEMA1.VIEW1").getContent(), "Snapshot should not change with returned scripts.");
+    }
+
+    @Test
+    void getSnapshotIsInvalidatedByChangedFiles() throws IOException {
+        ScriptSource scriptSource = new ScriptSource(scriptRoot.toString());
+        ScriptSnapshot snapshot = scriptSource.getSnapshot();
+        assertSame(snapshot, scriptSource.getSnapshot(), "Unchanged tree should reuse the snapshot.");
+
+        Path view = writeScript("VIEWS", "VIEW1.SQL", "create or replace view db1.schema1.view1 as select 2 as id;");
+        Files.setLastModifiedTime(view, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+        ScriptSnapshot changed = scriptSource.getSnapshot();
+        assertNotSame(snapshot, changed, "Changed file should invalidate the snapshot.");
+        assertTrue(changed.getById("DB1.SCHEMA1.VIEW1").getContent().contains("select 2"), "Changed file should be read again.");
+
+        writeScript("VIEWS", "VIEW2.SQL", "create or replace view db1.schema1.view2 as select 1 as id;");
+        assertEquals(4, scriptSource.getSnapshot().size(), "Added file should be read.");
+    }
+}
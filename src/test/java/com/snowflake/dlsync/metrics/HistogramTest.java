@@ -0,0 +1,55 @@
+package com.snowflake.dlsync.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    @Test
+    void emptyHistogram() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for(int value = 1; value <= 10; value++) {
+            histogram.record(value);
+        }
+        assertEquals(10, histogram.getCount());
+        assertEquals(55, histogram.getSum());
+        assertEquals(1, histogram.getMin());
+        assertEquals(10, histogram.getMax());
+        assertEquals(5, histogram.getPercentile(50));
+        assertEquals(9, histogram.getPercentile(90));
+        assertEquals(10, histogram.getPercentile(100));
+    }
+
+    @Test
+    void largeValuesAreWithinBucketPrecision() {
+        Histogram histogram = new Histogram();
+        for(long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1_000_000);
+        }
+        assertEquals(1_000_000, histogram.getMin());
+        assertEquals(1_000_000_000, histogram.getMax());
+        assertTrue(Math.abs(histogram.getPercentile(50) - 500_000_000) <= 500_000_000 / 16);
+        assertTrue(Math.abs(histogram.getPercentile(99) - 990_000_000) <= 990_000_000 / 16);
+        assertEquals(1_000_000_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    void bucketsCoverAllValues() {
+        long[] values = {0, 15, 16, 17, 31, 32, 33, 1000, 123456789, Long.MAX_VALUE};
+        for(long value: values) {
+            int bucket = Histogram.bucketOf(value);
+            assertTrue(Histogram.highestValueOf(bucket) >= value, "value " + value);
+            assertTrue(bucket == 0 || Histogram.highestValueOf(bucket - 1) < value, "value " + value);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.snowflake.dlsync.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.models.ChangeType;
+import com.snowflake.dlsync.models.Script;
+import com.snowflake.dlsync.models.ScriptObjectType;
+import com.snowflake.dlsync.models.Status;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+
+    @Test
+    void scriptTimerRecordsPhaseAndObjectType() {
+        Metrics metrics = new Metrics();
+        Script view = ScriptFactory.getStateScript("DB1", "SCHEMA1", ScriptObjectType.VIEWS, "VIEW1", "create or replace view db1.schema1.view1 as select 1 as id;");
+        metrics.time(Metrics.DDL, view, () -> metrics.increment(Metrics.SCRIPTS_DEPLOYED));
+        metrics.recordNanos(Metrics.DDL, view, 2_000_000);
+        assertEquals(2, metrics.getTimer(Metrics.DDL).getCount());
+        assertEquals(2, metrics.getTimer("ddl.VIEWS").getCount());
+        assertEquals(1, metrics.getCount(Metrics.SCRIPTS_DEPLOYED));
+        assertEquals(0, metrics.getCount(Metrics.SCRIPTS_FAILED));
+    }
+
+    @Test
+    void timeRecordsFailedCalls() {
+        Metrics metrics = new Metrics();
+        assertEquals("done", metrics.time(Metrics.PARSE, () -> "done"));
+        assertThrows(IOException.class, () -> metrics.time(Metrics.PARSE, () -> {
+            throw new IOException("unreadable");
+        }));
+        assertEquals(2, metrics.getTimer(Metrics.PARSE).getCount());
+    }
+
+    @Test
+    void reportContainsCountersAndPercentiles() throws IOException {
+        Metrics metrics = new Metrics();
+        metrics.add(Metrics.SCRIPT_FILES, 3);
+        metrics.recordNanos(Metrics.HISTORY_WRITE, 1_000_000);
+        metrics.recordNanos(Metrics.HISTORY_WRITE, 3_000_000);
+
+        JsonNode report = new ObjectMapper().readTree(metrics.toJson(ChangeType.DEPLOY, Status.SUCCESS));
+        assertEquals("DEPLOY", report.get("changeType").asText());
+        assertEquals("SUCCESS", report.get("status").asText());
+        assertTrue(report.get("durationMillis").asLong() >= 0);
+        assertEquals(3, report.get("counters").get(Metrics.SCRIPT_FILES).asLong());
+        JsonNode historyWrite = report.get("timers").get(Metrics.HISTORY_WRITE);
+        assertEquals(2, historyWrite.get("count").asLong());
+        assertEquals(4.0, historyWrite.get("totalMillis").asDouble());
+        assertTrue(Math.abs(historyWrite.get("p50Millis").asDouble() - 1.0) <= 1.0 / 16);
+        assertEquals(3.0, historyWrite.get("maxMillis").asDouble());
+    }
+
+    @Test
+    void summaryHasTotalsOnly() throws IOException {
+        Metrics metrics = new Metrics();
+        metrics.increment(Metrics.SCRIPTS_FAILED);
+        metrics.recordNanos(Metrics.DISCOVERY, 5_000_000);
+
+        JsonNode summary = new ObjectMapper().readTree(metrics.toSummary());
+        assertEquals(5, summary.get("totalMillis").get(Metrics.DISCOVERY).asLong());
+        assertEquals(1, summary.get("counters").get(Metrics.SCRIPTS_FAILED).asLong());
+        assertNull(summary.get("timers"));
+    }
+}
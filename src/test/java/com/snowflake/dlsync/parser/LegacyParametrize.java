@@ -0,0 +1,51 @@
+package com.snowflake.dlsync.parser;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * The previous parametrization, which ran one boundary delimited regex per parameter over the whole ddl, kept as the
+ * reference for {@link ParameterTemplate} in tests and benchmarks, together with generated parameters and ddl.
+ */
+public class LegacyParametrize {
+    private static final String LEGACY_START_REGEX = "([(),\\.\\s\\'\\\"@])";
+    private static final String LEGACY_END_REGEX = "([(),;\\.\\s\\'\\\"])";
+
+    public static String parametrize(Properties parameters, String content) {
+        List<String> parameterKeys = parameters.stringPropertyNames().stream().sorted().collect(Collectors.toList());
+        for(String parameter: parameterKeys) {
+            String parameterPlaceholder = String.format("${%s}", parameter);
+            String regex = LEGACY_START_REGEX + "(?i)" + Pattern.quote(parameters.getProperty(parameter)) + LEGACY_END_REGEX;
+            String replacement = "$1" + Matcher.quoteReplacement(parameterPlaceholder) + "$2";
+            content = content.replaceAll(regex, replacement);
+        }
+        return content;
+    }
+
+    public static Properties generateParameters(int count) {
+        Properties parameters = new Properties();
+        for(int i = 0; i < count; i++) {
+            parameters.put("param_" + i, "VALUE_" + i + "_DEV");
+        }
+        return parameters;
+    }
+
+    /**
+     * Ddl of views referencing tables in databases and schemas named after the parameter values.
+     */
+    public static String generateDdl(int parameterCount, int objectCount) {
+        StringBuilder ddl = new StringBuilder("create or replace schema core;\n");
+        for(int i = 0; i < objectCount; i++) {
+            String database = "VALUE_" + (i % parameterCount) + "_DEV";
+            String schema = "VALUE_" + ((i + 1) % parameterCount) + "_DEV";
+            ddl.append("create or replace view ").append(database).append(".CORE.VIEW_").append(i)
+                    .append(" as select id, name, 'value_").append(i % parameterCount).append("_dev' as env from ")
+                    .append(database).append(".").append(schema).append(".TABLE_").append(i)
+                    .append(" where tenant = 'TENANT_").append(i).append("';\n");
+        }
+        return ddl.toString();
+    }
+}
@@ -1,6 +1,7 @@
 package com.snowflake.dlsync.parser;
 
 import com.snowflake.dlsync.ScriptFactory;
+import com.snowflake.dlsync.models.MigrationScript;
 import com.snowflake.dlsync.models.Script;
 import com.snowflake.dlsync.models.ScriptObjectType;
 import org.junit.jupiter.api.AfterEach;
@@ -8,6 +9,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.Properties;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -50,6 +52,29 @@ class ParameterInjectorTest {
         assertEquals(expected, actual, "parameter injection test failed");
     }
 
+    @Test
+    void injectParametersIgnoresKeyCaseAndUnknownPlaceholders() {
+        String content = "select * from ${DB}.${Schema2}.table1 where col1 = '${unknown}' and col2 = '${' || '}'";
+        Script script = ScriptFactory.getStateScript("", "", ScriptObjectType.VIEWS, "VIEW1", content);
+        parameterInjector.injectParameters(script);
+        String expected = "select * from TEST_DB.test_schema_2.table1 where col1 = '${unknown}' and col2 = '${' || '}'";
+        assertEquals(expected, script.getContent(), "parameter injection test failed");
+    }
+
+    @Test
+    void injectParametersAllTest() {
+        Properties parameters = new Properties();
+        parameters.put("db", "TEST_DB");
+        parameters.put("price", "$1\\0");
+        ParameterInjector injector = new ParameterInjector(parameters);
+        MigrationScript migration = ScriptFactory.getMigrationScript("", "", ScriptObjectType.TABLES, "TABLE1", "insert into ${db}.s.table1 values('${price}');", 1L, "junit", "delete from ${db}.s.table1;", "select * from ${db}.s.table1;");
+        injector.injectParametersAll(migration);
+        assertEquals("insert into TEST_DB.s.table1 values('$1\\0');", migration.getContent(), "parameter injection of content failed");
+        assertEquals("delete from TEST_DB.s.table1;", migration.getRollback(), "parameter injection of rollback failed");
+        assertEquals("select * from TEST_DB.s.table1;", migration.getVerify(), "parameter injection of verify failed");
+        assertEquals(Set.of("TEST_DB.S.TABLE1", "TEST_DB.S.TABLE2"), injector.injectParameters(Set.of("${db}.S.TABLE1", "${DB}.S.TABLE2")), "parameter injection of configs failed");
+    }
+
     @Test
     void parametrizeScriptTest() {
         String content = "create or replace view as select * from TEST_DB.test_schema_1.table1 where tenant = 'test_tenant_id'";
@@ -60,6 +85,29 @@ class ParameterInjectorTest {
         assertEquals(expected, actual, "parameterize script test failed");
     }
 
+    @Test
+    void parametrizeScriptPrefersLongestValue() {
+        Properties parameters = new Properties();
+        parameters.put("db", "PROD_DB");
+        parameters.put("env", "prod");
+        parameters.put("core", "PROD_DB.CORE");
+        ParameterInjector injector = new ParameterInjector(parameters);
+        String content = "create or replace view PROD_DB.CORE.VIEW1 as select * from PROD_DB.CORE.t1 join PROD_DB.OTHER.t2 on t1.id=t2.id where env = 'PROD' and PROD_DB.OTHER.t2.c1 = 'PRODUCT'";
+        Script script = ScriptFactory.getStateScript("", "", ScriptObjectType.VIEWS, "VIEW1", content);
+        injector.parametrizeScript(script, false);
+        String expected = "create or replace view ${core}.VIEW1 as select * from ${core}.t1 join ${db}.OTHER.t2 on t1.id=t2.id where env = '${env}' and ${db}.OTHER.t2.c1 = 'PRODUCT'";
+        assertEquals(expected, script.getContent(), "parameterize script with overlapping values failed");
+    }
+
+    @Test
+    void parametrizeScriptMatchesLegacyImplementation() {
+        Properties parameters = LegacyParametrize.generateParameters(20);
+        String ddl = LegacyParametrize.generateDdl(20, 200);
+        Script script = ScriptFactory.getStateScript("", "", ScriptObjectType.VIEWS, "VIEW1", ddl);
+        new ParameterInjector(parameters).parametrizeScript(script, false);
+        assertEquals(LegacyParametrize.parametrize(parameters, ddl).trim(), script.getContent(), "parameterize script differs from legacy implementation");
+    }
+
     @Test
     void parameterizeObjectNameTest() {
         String content = "create or replace view as select * from TEST_DB.test_schema_1.table1 where tenant = 'test_tenant_id'";
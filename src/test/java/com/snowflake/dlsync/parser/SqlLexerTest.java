@@ -0,0 +1,60 @@
+package com.snowflake.dlsync.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlLexerTest {
+
+    private List<String> tokens(String sql) {
+        List<String> tokens = new ArrayList<>();
+        SqlLexer lexer = new SqlLexer(sql);
+        while(lexer.next()) {
+            tokens.add(lexer.getType() + ":" + lexer.getText());
+        }
+        return tokens;
+    }
+
+    @Test
+    void lexAllTokenTypes() {
+        String sql = "select \"Col1\", 'it''s' --line\nfrom db1.t1 /* block */ as $$ body $$;";
+        List<String> expected = List.of(
+                "WORD:select", "WHITESPACE: ", "QUOTED_IDENTIFIER:\"Col1\"", "PUNCTUATION:,", "WHITESPACE: ",
+                "STRING:'it''s'", "WHITESPACE: ", "LINE_COMMENT:--line", "WHITESPACE:\n",
+                "WORD:from", "WHITESPACE: ", "WORD:db1", "PUNCTUATION:.", "WORD:t1", "WHITESPACE: ",
+                "BLOCK_COMMENT:/* block */", "WHITESPACE: ", "WORD:as", "WHITESPACE: ", "DOLLAR_BODY:$$ body $$", "PUNCTUATION:;"
+        );
+        assertEquals(expected, tokens(sql), "Lexer failed to split tokens.");
+    }
+
+    @Test
+    void lexEscapedAndUnterminatedTokens() {
+        String sql = "'he said \\'hi\\'' ${db}.x 'open";
+        List<String> expected = List.of(
+                "STRING:'he said \\'hi\\''", "WHITESPACE: ", "WORD:${db}", "PUNCTUATION:.", "WORD:x", "WHITESPACE: ", "STRING:'open"
+        );
+        assertEquals(expected, tokens(sql), "Lexer failed to split escaped tokens.");
+    }
+
+    @Test
+    void lexDoubleQuotedText() {
+        String sql = "call x(\"select * from D.S.V2\", \"D.S.V2\", \"V2\")";
+        List<String> expected = List.of(
+                "WORD:call", "WHITESPACE: ", "WORD:x", "PUNCTUATION:(", "QUOTED_TEXT:\"select * from D.S.V2\"", "PUNCTUATION:,",
+                "WHITESPACE: ", "QUOTED_TEXT:\"D.S.V2\"", "PUNCTUATION:,", "WHITESPACE: ", "QUOTED_IDENTIFIER:\"V2\"", "PUNCTUATION:)"
+        );
+        assertEquals(expected, tokens(sql), "Lexer failed to split double quoted text.");
+    }
+
+    @Test
+    void quotedContentBounds() {
+        SqlLexer lexer = new SqlLexer("$$select 1$$");
+        assertTrue(lexer.next());
+        assertTrue(lexer.isClosed());
+        assertEquals("select 1", "$$select 1$$".substring(lexer.getContentStart(), lexer.getContentEnd()));
+        assertFalse(lexer.next());
+    }
+}
@@ -9,6 +9,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -194,6 +195,41 @@ class SqlTokenizerTest {
 
     }
 
+    @Test
+    void getFullIdentifiersInBodyTest() {
+        String content = "create or replace function db1.schema1.udf1() returns table(id varchar) as 'select * from schema2.table1 where id = ''schema3.table1''';\n" +
+                "create or replace procedure db1.schema1.proc1() returns varchar language sql as $$ -- schema4.table1\n select * from \"schema5\".table1; $$;";
+        assertEquals(Set.of("schema2.table1", "schema5.table1"), SqlTokenizer.getFullIdentifiers("table1", content), "Test failed to extract identifiers in body.");
+        assertEquals("db1.schema1.udf1", SqlTokenizer.getFirstFullIdentifier("UDF1", content), "Test failed to extract first identifier.");
+    }
+
+    @Test
+    void getFullIdentifiersInQuotedTextTest() {
+        String content = "call x(\"select * from D.S.V2\")";
+        assertEquals(Set.of("D.S.V2"), SqlTokenizer.getFullIdentifiers("V2", content), "Test failed to extract identifier in quoted text.");
+        assertEquals("D.S.V2", SqlTokenizer.getFirstFullIdentifier("V2", content), "Test failed to extract first identifier in quoted text.");
+        String body = "create or replace procedure db1.s1.p1() returns string language javascript as $$ var rs = snowflake.execute({sqlText: \"select * from db1.s2.v1 join s3.v1\"}); return \"Col 1\"; $$;";
+        assertEquals(Set.of("db1.s2.v1", "s3.v1"), SqlTokenizer.getFullIdentifiers("v1", body), "Test failed to extract identifiers in quoted text of body.");
+        assertEquals("db1.s2.v1", SqlTokenizer.getFirstFullIdentifier("v1", body), "Test failed to extract first identifier in quoted text of body.");
+        assertTrue(SqlTokenizer.getAllFullIdentifiers(body).containsAll(Set.of("db1.s2.v1", "s3.v1")), "Test failed to index identifiers in quoted text.");
+    }
+
+    @Test
+    void getAllFullIdentifiersTest() {
+        String content = "select t.col1 from db1.schema1.object_name1 t join \"schema2\".\"object_name2\" -- object_name3\n where col2 = 'object_name4' and col3::string = x;";
+        Set<String> actual = SqlTokenizer.getAllFullIdentifiers(content);
+        for(String expected: List.of("t", "t.col1", "db1", "db1.schema1", "db1.schema1.object_name1", "schema2.object_name2", "col2", "x")) {
+            assertTrue(actual.contains(expected), "Test failed to extract identifier " + expected);
+        }
+        assertFalse(actual.contains("object_name3"), "Test failed to skip identifier in comment.");
+        assertFalse(actual.contains("object_name4"), "Test failed to skip identifier in string literal.");
+        assertFalse(actual.contains("schema1.object_name1.t"), "Test failed to limit identifier to three parts.");
+        for(String name: List.of("object_name1", "object_name2")) {
+            Set<String> expected = SqlTokenizer.getFullIdentifiers(name, content);
+            assertTrue(actual.containsAll(expected), "Test failed to match full identifiers of " + name);
+        }
+    }
+
     @Test
     void parseDdlScriptsTest() {
         String ddl = "create or replace schema schema1;\n\n" +
@@ -224,6 +260,44 @@ class SqlTokenizerTest {
         assertEquals(expected, actual, "Parse ddl failed");
     }
 
+    @Test
+    void parseDdlScriptsSkipsUnsupportedTypes() {
+        String ddl = "create or replace schema schema1;\n\n" +
+                "create or replace materialized view db1.schema1.mview1 as select * from table1;\n" +
+                "create or replace file format db1.schema1.format1 type = csv;\n" +
+                "create or replace tag db1.schema1.tag1;\n" +
+                "create or replace secure view db1.schema1.view1 as select * from table1;\n" +
+                "create or replace procedure db1.schema1.procedure1()\n" +
+                "RETURNS VARCHAR\n" +
+                "LANGUAGE SQL\n" +
+                "AS '\nbegin\n return 1;\nend;\n';";
+        List<Script> actual = SqlTokenizer.parseDdlScripts(ddl, "db1", "schema1");
+        List<Script> expected = List.of(
+                ScriptFactory.getStateScript("db1", "schema1", ScriptObjectType.FILE_FORMATS, "format1", "create or replace file format db1.schema1.format1 type = csv;"),
+                ScriptFactory.getStateScript("db1", "schema1", ScriptObjectType.VIEWS, "view1", "create or replace secure view db1.schema1.view1 as select * from table1;"),
+                ScriptFactory.getStateScript("db1", "schema1", ScriptObjectType.PROCEDURES, "procedure1", "create or replace procedure db1.schema1.procedure1()")
+        );
+
+        assertEquals(expected, actual, "Parse ddl with unsupported types failed");
+    }
+
+    @Test
+    void isTerminatedDetectsDdlSplitInBody() {
+        String ddl = "create or replace schema schema1;\n\n" +
+                "create or replace procedure db1.schema1.procedure1()\n" +
+                "RETURNS VARCHAR\n" +
+                "LANGUAGE SQL\n" +
+                "AS $$\nbegin\n create or replace table t1 (c1 int);\ncreate or replace view db1.schema1.view2 as select 1;\n return 1;\nend;\n$$;\n" +
+                "create or replace view db1.schema1.view1 as select 'a;b' as c1;";
+        List<Script> scripts = SqlTokenizer.parseDdlScripts(ddl, "db1", "schema1");
+        assertEquals(List.of("DB1.SCHEMA1.PROCEDURE1", "DB1.SCHEMA1.VIEW2", "DB1.SCHEMA1.VIEW1"), scripts.stream().map(Script::getId).collect(Collectors.toList()));
+        assertFalse(SqlTokenizer.isTerminated(scripts.get(0).getContent()), "Procedure split in its body should not be terminated.");
+        assertFalse(SqlTokenizer.isTerminated(scripts.get(1).getContent()), "View inside the procedure body should not be terminated.");
+        assertTrue(SqlTokenizer.isTerminated(scripts.get(2).getContent()));
+        assertFalse(SqlTokenizer.isTerminated("select 'abc"));
+        assertFalse(SqlTokenizer.isTerminated("select 1 /* comment"));
+    }
+
     @Test
     void removeSqlStringLiteralsWithSimpleLiterals() {
         String sql = "insert into table1 values('tabl2', 'table3', 'table4')";
@@ -555,4 +629,12 @@ class SqlTokenizerTest {
     
 
 
+
+    @Test
+    void getFirstKeywordSkipsComments() {
+        assertEquals("CREATE", SqlTokenizer.getFirstKeyword("-- table\n/* migration */\n  create table t1 as select 1;"));
+        assertEquals("INSERT", SqlTokenizer.getFirstKeyword("insert into t1 values (1);"));
+        assertNull(SqlTokenizer.getFirstKeyword("  -- only a comment"));
+        assertNull(SqlTokenizer.getFirstKeyword("(select 1);"));
+    }
 }
\ No newline at end of file